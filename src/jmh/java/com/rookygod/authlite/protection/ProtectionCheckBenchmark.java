@@ -0,0 +1,154 @@
+package com.rookygod.authlite.protection;
+
+import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.config.ConfigManager;
+import com.rookygod.authlite.session.AuthState;
+import com.rookygod.authlite.session.SessionManager;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the protection check every {@code PlayerMoveEvent} runs, before and after the
+ * protection of each state was precomputed into a bitmask.
+ * <p>
+ * The plugin cannot be enabled outside a server, so its managers are allocated without
+ * running their constructors and given only the fields the checks read. The checks
+ * themselves are the shipped {@link ProtectionManager}, {@link SessionManager} and
+ * {@link ConfigManager} methods; only the check before, whose set of authenticated
+ * players no longer exists, is spelled out here. Run with
+ * {@code mvn -P benchmark test-compile exec:java}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ProtectionCheckBenchmark {
+
+    @Param({"100", "1000"})
+    int players;
+
+    private Player[] online;
+    private int next;
+
+    private AuthLite plugin;
+    private ProtectionManager protectionManager;
+    // The SessionManager state before the auth state machine: the set of logged in players
+    private Set<UUID> authenticatedPlayers;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        ConfigManager config = allocate(ConfigManager.class);
+        set(config, "blockMovement", true);
+        set(config, "blockChat", true);
+        set(config, "blockCommands", true);
+        set(config, "blockInteraction", true);
+
+        // One in ten players online is not logged in
+        Map<UUID, AuthState> states = new ConcurrentHashMap<>();
+        authenticatedPlayers = new HashSet<>();
+        online = new Player[players];
+        for (int i = 0; i < players; i++) {
+            UUID uuid = UUID.randomUUID();
+            online[i] = player(uuid);
+            boolean authenticated = i % 10 != 0;
+            states.put(uuid, authenticated ? AuthState.AUTHENTICATED : AuthState.PENDING_LOGIN);
+            if (authenticated) {
+                authenticatedPlayers.add(uuid);
+            }
+        }
+
+        plugin = allocate(AuthLite.class);
+        SessionManager sessionManager = allocate(SessionManager.class);
+        set(sessionManager, "plugin", plugin);
+        set(sessionManager, "states", states);
+        set(plugin, "configManager", config);
+        set(plugin, "sessionManager", sessionManager);
+
+        // Applying the config asks the limbo manager, which is unavailable without a world
+        set(plugin, "limboManager", allocate(LimboManager.class));
+
+        protectionManager = allocate(ProtectionManager.class);
+        set(protectionManager, "plugin", plugin);
+        protectionManager.applyConfig();
+    }
+
+    /**
+     * Before the auth state machine:
+     * {@code !authenticatedPlayers.contains(uuid) && config.isBlockMovement()}.
+     */
+    @Benchmark
+    public boolean authenticatedSetAndConfig() {
+        Player player = nextPlayer();
+        return !authenticatedPlayers.contains(player.getUniqueId()) && plugin.getConfigManager().isBlockMovement();
+    }
+
+    /**
+     * Before the masks: {@code !isAuthenticated(player) && config.isBlockMovement()}.
+     */
+    @Benchmark
+    public boolean isAuthenticatedAndConfig() {
+        Player player = nextPlayer();
+        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlockMovement();
+    }
+
+    /**
+     * After: {@link ProtectionManager#shouldBlockMovement(Player)}, a state lookup, a
+     * mask read and a bit test.
+     */
+    @Benchmark
+    public boolean shouldBlockMovement() {
+        return protectionManager.shouldBlockMovement(nextPlayer());
+    }
+
+    private Player nextPlayer() {
+        // Cycle through the players so the branch predictor cannot learn a single answer
+        int index = next;
+        next = index + 1 == online.length ? 0 : index + 1;
+        return online[index];
+    }
+
+    private static Player player(UUID uuid) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] {Player.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getUniqueId")) {
+                        return uuid;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static <T> T allocate(Class<T> type) throws ReflectiveOperationException {
+        Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        Object unsafe = field.get(null);
+        return type.cast(unsafe.getClass().getMethod("allocateInstance", Class.class).invoke(unsafe, type));
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
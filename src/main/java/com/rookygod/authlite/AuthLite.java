@@ -4,13 +4,29 @@ import com.rookygod.authlite.commands.*;
 import com.rookygod.authlite.config.ConfigManager;
 import com.rookygod.authlite.config.MessageManager;
 import com.rookygod.authlite.data.DataManager;
+import com.rookygod.authlite.listeners.AccountLoadListener;
 import com.rookygod.authlite.listeners.CommandSecurityListener;
+import com.rookygod.authlite.listeners.ConnectionThrottleListener;
+import com.rookygod.authlite.listeners.LockoutListener;
 import com.rookygod.authlite.listeners.PlayerProtectionListener;
+import com.rookygod.authlite.protection.LimboManager;
 import com.rookygod.authlite.protection.ProtectionManager;
+import com.rookygod.authlite.protection.VisibilityManager;
+import com.rookygod.authlite.security.ConnectionThrottle;
+import com.rookygod.authlite.security.LockoutManager;
+import com.rookygod.authlite.security.PasswordManager;
+import com.rookygod.authlite.security.PasswordMigrator;
+import com.rookygod.authlite.security.RateLimiter;
 import com.rookygod.authlite.session.SessionManager;
+import com.rookygod.authlite.utils.Ticker;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 public final class AuthLite extends JavaPlugin {
@@ -18,9 +34,18 @@ public final class AuthLite extends JavaPlugin {
     private static AuthLite instance;
     private ConfigManager configManager;
     private MessageManager messageManager;
+    private PasswordManager passwordManager;
+    private RateLimiter rateLimiter;
+    private LockoutManager lockoutManager;
+    private ConnectionThrottle connectionThrottle;
     private DataManager dataManager;
+    private PasswordMigrator passwordMigrator;
+    private Ticker ticker;
     private SessionManager sessionManager;
+    private LimboManager limboManager;
     private ProtectionManager protectionManager;
+    private VisibilityManager visibilityManager;
+    private CompletableFuture<Void> pendingReload;
 
     @Override
     public void onEnable() {
@@ -29,9 +54,17 @@ public final class AuthLite extends JavaPlugin {
         // Initialize managers
         this.configManager = new ConfigManager(this);
         this.messageManager = new MessageManager(this);
+        this.passwordManager = new PasswordManager(this);
+        this.rateLimiter = new RateLimiter(this);
+        this.lockoutManager = new LockoutManager(this);
+        this.connectionThrottle = new ConnectionThrottle(this);
         this.dataManager = new DataManager(this);
+        this.passwordMigrator = new PasswordMigrator(this);
+        this.ticker = new Ticker(this);
         this.sessionManager = new SessionManager(this);
+        this.limboManager = new LimboManager(this);
         this.protectionManager = new ProtectionManager(this);
+        this.visibilityManager = new VisibilityManager(this);
         
         // Register commands
         registerCommands();
@@ -39,19 +72,64 @@ public final class AuthLite extends JavaPlugin {
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerProtectionListener(this), this);
         getServer().getPluginManager().registerEvents(new CommandSecurityListener(this), this);
+        getServer().getPluginManager().registerEvents(new AccountLoadListener(this), this);
+        getServer().getPluginManager().registerEvents(new LockoutListener(this), this);
+        getServer().getPluginManager().registerEvents(new ConnectionThrottleListener(this), this);
+        
+        // Players online before the plugin was enabled have to log in again
+        for (Player player : getServer().getOnlinePlayers()) {
+            sessionManager.startSession(player);
+        }
+        
+        // Hash remaining plaintext passwords in the background
+        passwordMigrator.start();
         
         getLogger().info("AuthLite has been enabled!");
     }
 
     @Override
     public void onDisable() {
+        // Stop hashing plaintext passwords, the migration resumes on the next start
+        if (passwordMigrator != null) {
+            passwordMigrator.stop();
+        }
+        
+        if (rateLimiter != null) {
+            rateLimiter.shutdown();
+        }
+        
+        if (connectionThrottle != null) {
+            connectionThrottle.shutdown();
+        }
+        
+        // Save lockouts
+        if (lockoutManager != null) {
+            lockoutManager.shutdown();
+        }
+        
+        // Finish queued password hashing
+        if (passwordManager != null) {
+            passwordManager.shutdown();
+        }
+        
         // Save all data
         if (dataManager != null) {
-            dataManager.saveAllData();
+            dataManager.shutdown();
         }
         
-        // Clear sessions
+        // Stop timeouts, reminders and session expiries
+        if (ticker != null) {
+            ticker.shutdown();
+        }
+        
+        // Return players waiting in limbo
+        if (limboManager != null) {
+            limboManager.shutdown();
+        }
+        
+        // Save and clear sessions
         if (sessionManager != null) {
+            sessionManager.shutdown();
             sessionManager.clearSessions();
         }
         
@@ -67,15 +145,39 @@ public final class AuthLite extends JavaPlugin {
         Objects.requireNonNull(getCommand("authlite")).setExecutor(new AuthLiteCommand(this));
     }
     
-    public void reload() {
-        // Reload configuration
-        configManager.reloadConfig();
-        messageManager.reloadMessages();
+    /**
+     * Reloads the configuration, messages and accounts. Files are parsed and accounts
+     * loaded off the main thread, then swapped in on the main thread, so players keep
+     * using the previous settings and accounts until the new ones are complete.
+     *
+     * @return A future completed on the main thread once the reload is done
+     */
+    public CompletableFuture<Void> reload() {
+        Executor asyncExecutor = task -> getServer().getScheduler().runTaskAsynchronously(this, task);
+        Executor mainExecutor = task -> getServer().getScheduler().runTask(this, task);
         
-        // Reload data
-        dataManager.reloadData();
+        // Parse configuration and messages
+        CompletableFuture<FileConfiguration> config = CompletableFuture.supplyAsync(configManager::readConfig, asyncExecutor);
+        CompletableFuture<Map<String, String>> messages = CompletableFuture.supplyAsync(messageManager::readMessages, asyncExecutor);
         
-        getLogger().info("AuthLite has been reloaded!");
+        pendingReload = config.thenAcceptBothAsync(messages, (newConfig, newMessages) -> {
+                    configManager.applyConfig(newConfig);
+                    messageManager.applyMessages(newMessages);
+                    rateLimiter.applyConfig();
+                    lockoutManager.applyConfig();
+                    connectionThrottle.applyConfig();
+                    sessionManager.applyConfig();
+                    limboManager.applyConfig();
+                    protectionManager.applyConfig();
+                }, mainExecutor)
+                // Reload data, and recalibrate password hashing if its settings changed
+                .thenCompose(ignored -> CompletableFuture.allOf(dataManager.reloadData(), passwordManager.applyConfig()))
+                .thenRunAsync(() -> getLogger().info("AuthLite has been reloaded!"), mainExecutor);
+        return pendingReload;
+    }
+    
+    public boolean isReloading() {
+        return pendingReload != null && !pendingReload.isDone();
     }
     
     public static AuthLite getInstance() {
@@ -90,15 +192,47 @@ public final class AuthLite extends JavaPlugin {
         return messageManager;
     }
     
+    public PasswordManager getPasswordManager() {
+        return passwordManager;
+    }
+    
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+    
+    public LockoutManager getLockoutManager() {
+        return lockoutManager;
+    }
+    
+    public ConnectionThrottle getConnectionThrottle() {
+        return connectionThrottle;
+    }
+    
+    public PasswordMigrator getPasswordMigrator() {
+        return passwordMigrator;
+    }
+    
     public DataManager getDataManager() {
         return dataManager;
     }
     
+    public Ticker getTicker() {
+        return ticker;
+    }
+    
     public SessionManager getSessionManager() {
         return sessionManager;
     }
     
+    public LimboManager getLimboManager() {
+        return limboManager;
+    }
+    
     public ProtectionManager getProtectionManager() {
         return protectionManager;
     }
+    
+    public VisibilityManager getVisibilityManager() {
+        return visibilityManager;
+    }
 }
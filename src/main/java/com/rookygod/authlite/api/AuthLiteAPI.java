@@ -2,9 +2,11 @@ package com.rookygod.authlite.api;
 
 import com.rookygod.authlite.AuthLite;
 import com.rookygod.authlite.data.PlayerData;
+import com.rookygod.authlite.session.AuthState;
 import org.bukkit.entity.Player;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * API for other plugins to interact with AuthLite.
@@ -71,7 +73,18 @@ public class AuthLiteAPI {
     }
     
     /**
-     * Register a player.
+     * Get the authentication state of a player.
+     *
+     * @param player The player to check
+     * @return The state of the player, or null if they are not online
+     */
+    public AuthState getAuthState(Player player) {
+        return plugin.getSessionManager().getState(player);
+    }
+    
+    /**
+     * Register a player. The password is hashed on the calling thread, so avoid
+     * calling this on the main thread; see {@link #registerPlayerAsync(Player, String)}.
      *
      * @param player The player to register
      * @param password The password to register with
@@ -81,6 +94,18 @@ public class AuthLiteAPI {
         return plugin.getDataManager().registerPlayer(player, password);
     }
     
+    /**
+     * Register a player without blocking the calling thread.
+     *
+     * @param player The player to register
+     * @param password The password to register with
+     * @return A future completed on the main thread with true if the player was registered,
+     *         or failed with a RejectedExecutionException if the server is too busy to hash
+     */
+    public CompletableFuture<Boolean> registerPlayerAsync(Player player, String password) {
+        return plugin.getDataManager().registerPlayerAsync(player, password);
+    }
+    
     /**
      * Unregister a player.
      *
@@ -92,18 +117,32 @@ public class AuthLiteAPI {
     }
     
     /**
-     * Authenticate a player.
+     * Authenticate a player. The password is hashed on the calling thread, so avoid
+     * calling this on the main thread; see {@link #authenticatePlayerAsync(Player, String)}.
      *
      * @param player The player to authenticate
      * @param password The password to authenticate with
-     * @return True if the player was authenticated, false if the password is incorrect
+     * @return True if the player was authenticated, false if the password is incorrect or
+     *         the player is locked out, already authenticated or offline
      */
     public boolean authenticatePlayer(Player player, String password) {
-        if (plugin.getDataManager().authenticate(player, password)) {
-            plugin.getSessionManager().authenticatePlayer(player);
-            return true;
-        }
-        return false;
+        return plugin.getDataManager().authenticate(player, password)
+                && plugin.getSessionManager().authenticatePlayer(player);
+    }
+    
+    /**
+     * Authenticate a player without blocking the calling thread.
+     *
+     * @param player The player to authenticate
+     * @param password The password to authenticate with
+     * @return A future completed on the main thread with true if the player was authenticated
+     *         (false if the password is incorrect or the player is locked out, already
+     *         authenticated or offline), or failed with a RejectedExecutionException if the
+     *         server is too busy to hash
+     */
+    public CompletableFuture<Boolean> authenticatePlayerAsync(Player player, String password) {
+        return plugin.getDataManager().authenticateAsync(player, password).thenApply(authenticated ->
+                authenticated && plugin.getSessionManager().authenticatePlayer(player));
     }
     
     /**
@@ -116,7 +155,8 @@ public class AuthLiteAPI {
     }
     
     /**
-     * Change a player's password.
+     * Change a player's password. The password is hashed on the calling thread, so avoid
+     * calling this on the main thread; see {@link #changePasswordAsync(Player, String)}.
      *
      * @param player The player to change the password for
      * @param newPassword The new password
@@ -126,6 +166,18 @@ public class AuthLiteAPI {
         return plugin.getDataManager().changePassword(player.getUniqueId(), newPassword);
     }
     
+    /**
+     * Change a player's password without blocking the calling thread.
+     *
+     * @param player The player to change the password for
+     * @param newPassword The new password
+     * @return A future completed on the main thread with true if the password was changed,
+     *         or failed with a RejectedExecutionException if the server is too busy to hash
+     */
+    public CompletableFuture<Boolean> changePasswordAsync(Player player, String newPassword) {
+        return plugin.getDataManager().changePasswordAsync(player.getUniqueId(), newPassword);
+    }
+    
     /**
      * Get a player's last login time.
      *
@@ -147,5 +199,39 @@ public class AuthLiteAPI {
         PlayerData playerData = plugin.getDataManager().getPlayerData(player.getUniqueId());
         return playerData != null ? playerData.getLastIp() : "";
     }
+    
+    /**
+     * Get a player's account data without blocking the calling thread.
+     * Accounts of offline players may have to be read from storage, in which case the
+     * future completes on an asynchronous thread.
+     *
+     * @param uuid The UUID of the player
+     * @return A future completed with the player data, or null if the player is not registered
+     */
+    public CompletableFuture<PlayerData> getPlayerDataAsync(UUID uuid) {
+        return plugin.getDataManager().loadPlayerData(uuid);
+    }
+    
+    /**
+     * Get a player's account data without blocking the calling thread.
+     * Accounts of offline players may have to be read from storage, in which case the
+     * future completes on an asynchronous thread.
+     *
+     * @param username The username of the player
+     * @return A future completed with the player data, or null if the player is not registered
+     */
+    public CompletableFuture<PlayerData> getPlayerDataAsync(String username) {
+        return plugin.getDataManager().loadPlayerData(username);
+    }
+    
+    /**
+     * Get the last login time of a possibly offline player without blocking the calling thread.
+     *
+     * @param uuid The UUID of the player
+     * @return A future completed with the last login time in seconds since epoch, or 0 if the player is not registered
+     */
+    public CompletableFuture<Long> getLastLoginTimeAsync(UUID uuid) {
+        return plugin.getDataManager().loadPlayerData(uuid)
+                .thenApply(playerData -> playerData != null ? playerData.getLastLogin() : 0L);
+    }
 }
-
@@ -1,6 +1,15 @@
 package com.rookygod.authlite.commands;
 
 import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.data.AccountCache;
+import com.rookygod.authlite.data.WriteBehindQueue;
+import com.rookygod.authlite.data.YamlAccountStore;
+import com.rookygod.authlite.protection.VisibilityManager;
+import com.rookygod.authlite.security.ConnectionThrottle;
+import com.rookygod.authlite.security.HashingExecutor;
+import com.rookygod.authlite.security.PasswordMigrator;
+import com.rookygod.authlite.security.RateLimiter;
+import com.rookygod.authlite.utils.MessageUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
@@ -8,9 +17,11 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.logging.Level;
 
 public class AuthLiteCommand implements CommandExecutor {
 
@@ -37,7 +48,7 @@ public class AuthLiteCommand implements CommandExecutor {
             if (sender instanceof Player player) {
                 plugin.getMessageManager().sendMessage(player, "admin.usage");
             } else {
-                sender.sendMessage("Usage: /authlite <reload|register|changepassword|unregister> [player] [password]");
+                sender.sendMessage("Usage: /authlite <reload|register|changepassword|unregister|stats|memory|convert|import|migration> [player] [password]");
             }
             return true;
         }
@@ -56,16 +67,19 @@ public class AuthLiteCommand implements CommandExecutor {
                     return true;
                 }
                 
-                // Reload plugin
-                plugin.reload();
-                
-                // Send success message
-                if (sender instanceof Player player) {
-                    plugin.getMessageManager().sendMessage(player, "admin.reload.success");
-                } else {
-                    sender.sendMessage("AuthLite has been reloaded!");
+                if (plugin.isReloading()) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "admin.reload.in_progress");
+                    } else {
+                        sender.sendMessage("AuthLite is already reloading");
+                    }
+                    return true;
                 }
                 
+                // Reload plugin off the main thread
+                plugin.reload().whenComplete((ignored, error) ->
+                        plugin.getServer().getScheduler().runTask(plugin, () -> sendReloadResult(sender, error)));
+                
                 return true;
             }
             case "register" -> {
@@ -108,29 +122,10 @@ public class AuthLiteCommand implements CommandExecutor {
                     return true;
                 }
                 
-                // Register player
-                if (plugin.getDataManager().registerPlayer(playerName, uuid, password)) {
-                    // Send success message
-                    if (sender instanceof Player player) {
-                        Map<String, String> placeholders = new HashMap<>();
-                        placeholders.put("player", playerName);
-                        plugin.getMessageManager().sendMessage(player, "admin.register.success", placeholders);
-                    } else {
-                        sender.sendMessage("Player " + playerName + " has been registered!");
-                    }
-                    
-                    return true;
-                } else {
-                    // This should not happen, but just in case
-                    if (sender instanceof Player player) {
-                        Map<String, String> placeholders = new HashMap<>();
-                        placeholders.put("player", playerName);
-                        plugin.getMessageManager().sendMessage(player, "admin.register.already_registered", placeholders);
-                    } else {
-                        sender.sendMessage("Player " + playerName + " is already registered!");
-                    }
-                    return true;
-                }
+                // Register player once the password is hashed off the main thread
+                plugin.getDataManager().registerPlayerAsync(playerName, uuid, password)
+                        .whenComplete((registered, error) -> sendRegisterResult(sender, playerName, uuid, registered, error));
+                return true;
             }
             case "changepassword" -> {
                 // Check if sender has changepassword permission
@@ -172,29 +167,12 @@ public class AuthLiteCommand implements CommandExecutor {
                     return true;
                 }
                 
-                // Change password
-                if (plugin.getDataManager().changePassword(uuid, newPassword)) {
-                    // Send success message
-                    if (sender instanceof Player player) {
-                        Map<String, String> placeholders = new HashMap<>();
-                        placeholders.put("player", playerName);
-                        plugin.getMessageManager().sendMessage(player, "admin.change_password.success", placeholders);
-                    } else {
-                        sender.sendMessage("Password for player " + playerName + " has been changed!");
-                    }
-                    
-                    return true;
-                } else {
-                    // This should not happen, but just in case
-                    if (sender instanceof Player player) {
-                        Map<String, String> placeholders = new HashMap<>();
-                        placeholders.put("player", playerName);
-                        plugin.getMessageManager().sendMessage(player, "admin.change_password.not_registered", placeholders);
-                    } else {
-                        sender.sendMessage("Player " + playerName + " is not registered!");
-                    }
-                    return true;
-                }
+                // Load the account and hash the new password off the main thread, then report on the main thread
+                plugin.getDataManager().loadPlayerData(uuid)
+                        .thenCompose(ignored -> plugin.getDataManager().changePasswordAsync(uuid, newPassword))
+                        .whenComplete((changed, error) -> plugin.getServer().getScheduler().runTask(plugin,
+                                () -> sendChangePasswordResult(sender, playerName, changed, error)));
+                return true;
             }
             case "unregister" -> {
                 // Check if sender has unregister permission
@@ -235,46 +213,425 @@ public class AuthLiteCommand implements CommandExecutor {
                     return true;
                 }
                 
-                // Unregister player
-                if (plugin.getDataManager().unregisterPlayer(uuid)) {
-                    // Deauthenticate player if online
-                    Player targetPlayer = Bukkit.getPlayer(uuid);
-                    if (targetPlayer != null && targetPlayer.isOnline()) {
-                        plugin.getSessionManager().deauthenticatePlayer(targetPlayer);
+                // Load the account off the main thread if needed, then unregister on the main thread
+                plugin.getDataManager().loadPlayerData(uuid).thenRun(() -> plugin.getServer().getScheduler().runTask(plugin,
+                        () -> unregister(sender, playerName, uuid)));
+                return true;
+            }
+            case "memory" -> {
+                // Check if sender has memory permission
+                if (!sender.hasPermission("authlite.admin.memory")) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "protection.no_permission");
+                    } else {
+                        sender.sendMessage("You don't have permission to use this command");
+                    }
+                    return true;
+                }
+                
+                // Walking every cached account takes a while on large servers, so estimate off the main thread
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                    long cacheBytes = plugin.getDataManager().getCache().estimateMemory();
+                    long indexBytes = plugin.getDataManager().estimateIndexMemory();
+                    plugin.getServer().getScheduler().runTask(plugin, () -> sendMemory(sender, cacheBytes, indexBytes));
+                });
+                return true;
+            }
+            case "migration" -> {
+                // Check if sender has migration permission
+                if (!sender.hasPermission("authlite.admin.migration")) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "protection.no_permission");
+                    } else {
+                        sender.sendMessage("You don't have permission to use this command");
                     }
-                    
-                    // Send success message
+                    return true;
+                }
+                
+                sendMigration(sender);
+                return true;
+            }
+            case "convert" -> {
+                // Check if sender has convert permission
+                if (!sender.hasPermission("authlite.admin.convert")) {
                     if (sender instanceof Player player) {
-                        Map<String, String> placeholders = new HashMap<>();
-                        placeholders.put("player", playerName);
-                        plugin.getMessageManager().sendMessage(player, "admin.unregister.success", placeholders);
+                        plugin.getMessageManager().sendMessage(player, "protection.no_permission");
+                    } else {
+                        sender.sendMessage("You don't have permission to use this command");
+                    }
+                    return true;
+                }
+                
+                // Check command usage
+                if (args.length < 2 || !(args[1].equalsIgnoreCase("binary") || args[1].equalsIgnoreCase("yaml"))) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "admin.convert.usage");
+                    } else {
+                        sender.sendMessage("Usage: /authlite convert <binary|yaml>");
+                    }
+                    return true;
+                }
+                
+                // Check if the storage backend keeps snapshots
+                if (!(plugin.getDataManager().getStore() instanceof YamlAccountStore)) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "admin.convert.unsupported");
+                    } else {
+                        sender.sendMessage("Snapshots can only be converted with the yaml storage backend!");
+                    }
+                    return true;
+                }
+                
+                String format = args[1].toLowerCase();
+                
+                // Convert off the main thread, then report back on the main thread
+                plugin.getDataManager().convertSnapshot(format.equals("binary")).whenComplete((count, error) ->
+                        plugin.getServer().getScheduler().runTask(plugin, () -> sendConvertResult(sender, format, count, error)));
+                return true;
+            }
+            case "import" -> {
+                // Check if sender has import permission
+                if (!sender.hasPermission("authlite.admin.import")) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "protection.no_permission");
+                    } else {
+                        sender.sendMessage("You don't have permission to use this command");
+                    }
+                    return true;
+                }
+                
+                String fileName = args.length >= 2 ? args[1] : "players.yml";
+                File file = new File(plugin.getDataFolder(), fileName);
+                
+                Map<String, String> placeholders = new HashMap<>();
+                placeholders.put("file", fileName);
+                
+                // Check if the file exists
+                if (!file.isFile()) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "admin.import.not_found", placeholders);
+                    } else {
+                        sender.sendMessage("File " + fileName + " does not exist!");
+                    }
+                    return true;
+                }
+                
+                // The yaml backend already reads its own players.yml
+                if (plugin.getDataManager().getStore() instanceof YamlAccountStore && fileName.equals("players.yml")) {
+                    if (sender instanceof Player player) {
+                        plugin.getMessageManager().sendMessage(player, "admin.import.in_use", placeholders);
                     } else {
-                        sender.sendMessage("Player " + playerName + " has been unregistered!");
+                        sender.sendMessage("File " + fileName + " is already used by the yaml storage backend!");
                     }
-                    
                     return true;
+                }
+                
+                if (sender instanceof Player player) {
+                    plugin.getMessageManager().sendMessage(player, "admin.import.started", placeholders);
                 } else {
-                    // This should not happen, but just in case
+                    sender.sendMessage("Importing accounts from " + fileName + ", progress is logged to the console...");
+                }
+                
+                // Import off the main thread, then report back on the main thread
+                plugin.getDataManager().importLegacyAccounts(file).whenComplete((count, error) ->
+                        plugin.getServer().getScheduler().runTask(plugin, () -> sendImportResult(sender, fileName, count, error)));
+                return true;
+            }
+            case "stats" -> {
+                // Check if sender has stats permission
+                if (!sender.hasPermission("authlite.admin.stats")) {
                     if (sender instanceof Player player) {
-                        Map<String, String> placeholders = new HashMap<>();
-                        placeholders.put("player", playerName);
-                        plugin.getMessageManager().sendMessage(player, "admin.unregister.not_registered", placeholders);
+                        plugin.getMessageManager().sendMessage(player, "protection.no_permission");
                     } else {
-                        sender.sendMessage("Player " + playerName + " is not registered!");
+                        sender.sendMessage("You don't have permission to use this command");
                     }
                     return true;
                 }
+                
+                sendStats(sender);
+                return true;
             }
             default -> {
                 // Unknown subcommand
                 if (sender instanceof Player player) {
                     plugin.getMessageManager().sendMessage(player, "admin.usage");
                 } else {
-                    sender.sendMessage("Usage: /authlite <reload|register|changepassword|unregister> [player] [password]");
+                    sender.sendMessage("Usage: /authlite <reload|register|changepassword|unregister|stats|memory|convert|import|migration> [player] [password]");
                 }
                 return true;
             }
         }
     }
+    
+    /**
+     * Sends runtime statistics of the storage layer to the sender.
+     *
+     * @param sender The sender to send the statistics to
+     */
+    private void sendStats(CommandSender sender) {
+        WriteBehindQueue writeQueue = plugin.getDataManager().getWriteQueue();
+        
+        Map<String, String> storagePlaceholders = new HashMap<>();
+        storagePlaceholders.put("backend", plugin.getDataManager().getStore().getName());
+        storagePlaceholders.put("loaded", String.valueOf(plugin.getDataManager().getLoadedCount()));
+        storagePlaceholders.put("registered", String.valueOf(plugin.getDataManager().getRegisteredCount()));
+        
+        AccountCache cache = plugin.getDataManager().getCache();
+        Map<String, String> cachePlaceholders = new HashMap<>();
+        cachePlaceholders.put("size", String.valueOf(cache.size()));
+        cachePlaceholders.put("pinned", String.valueOf(cache.getPinnedCount()));
+        cachePlaceholders.put("hits", String.valueOf(cache.getHitCount()));
+        cachePlaceholders.put("misses", String.valueOf(cache.getMissCount()));
+        cachePlaceholders.put("evictions", String.valueOf(cache.getEvictionCount()));
+        
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("depth", String.valueOf(writeQueue.getQueueDepth()));
+        placeholders.put("written", String.valueOf(writeQueue.getWrittenCount()));
+        placeholders.put("coalesced", String.valueOf(writeQueue.getCoalescedCount()));
+        placeholders.put("last", String.format("%.2f", writeQueue.getLastFlushMillis()));
+        placeholders.put("avg", String.format("%.2f", writeQueue.getAverageFlushMillis()));
+        
+        HashingExecutor hashing = plugin.getPasswordManager().getExecutor();
+        Map<String, String> hashingPlaceholders = new HashMap<>();
+        hashingPlaceholders.put("iterations", String.valueOf(plugin.getPasswordManager().getIterations()));
+        hashingPlaceholders.put("active", String.valueOf(hashing.getActiveCount()));
+        hashingPlaceholders.put("threads", String.valueOf(hashing.getThreadCount()));
+        hashingPlaceholders.put("depth", String.valueOf(hashing.getQueueDepth()));
+        hashingPlaceholders.put("completed", String.valueOf(hashing.getCompletedCount()));
+        hashingPlaceholders.put("rejected", String.valueOf(hashing.getRejectedCount()));
+        hashingPlaceholders.put("wait", String.format("%.2f", hashing.getAverageWaitMillis()));
+        hashingPlaceholders.put("run", String.format("%.2f", hashing.getAverageRunMillis()));
+        hashingPlaceholders.put("max", String.format("%.2f", hashing.getMaxLatencyMillis()));
+        
+        ConnectionThrottle throttle = plugin.getConnectionThrottle();
+        Map<String, String> throttlePlaceholders = new HashMap<>();
+        throttlePlaceholders.put("allowed", String.valueOf(throttle.getAllowedCount()));
+        throttlePlaceholders.put("bypassed", String.valueOf(throttle.getBypassedCount()));
+        throttlePlaceholders.put("ip", String.valueOf(throttle.getAddressRejections()));
+        throttlePlaceholders.put("subnet", String.valueOf(throttle.getSubnetRejections()));
+        throttlePlaceholders.put("global", String.valueOf(throttle.getGlobalRejections()));
+        throttlePlaceholders.put("limit", String.valueOf(throttle.getGlobalLimit()));
+        throttlePlaceholders.put("attack", throttle.isUnderAttack() ? MessageUtils.colorize(", &cunder attack") : "");
+        
+        RateLimiter rateLimiter = plugin.getRateLimiter();
+        Map<String, String> rateLimitPlaceholders = new HashMap<>();
+        rateLimitPlaceholders.put("tracked", String.valueOf(rateLimiter.getTrackedCount()));
+        rateLimitPlaceholders.put("ip", String.valueOf(rateLimiter.getAddressRejections()));
+        rateLimitPlaceholders.put("account", String.valueOf(rateLimiter.getAccountRejections()));
+        rateLimitPlaceholders.put("global", String.valueOf(rateLimiter.getGlobalRejections()));
+        
+        VisibilityManager visibility = plugin.getVisibilityManager();
+        Map<String, String> visibilityPlaceholders = new HashMap<>();
+        visibilityPlaceholders.put("hidden", String.valueOf(visibility.getHiddenCount()));
+        visibilityPlaceholders.put("sent", String.valueOf(visibility.getSentCount()));
+        visibilityPlaceholders.put("saved", String.valueOf(visibility.getSavedCount()));
+        
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.header"));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.storage", storagePlaceholders));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.cache", cachePlaceholders));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.write_queue", placeholders));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.hashing", hashingPlaceholders));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.throttle", throttlePlaceholders));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.rate_limit", rateLimitPlaceholders));
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.stats.visibility", visibilityPlaceholders));
+    }
+    
+    /**
+     * Sends the progress of the background migration of plaintext passwords to the sender.
+     *
+     * @param sender The sender to send the progress to
+     */
+    private void sendMigration(CommandSender sender) {
+        PasswordMigrator migrator = plugin.getPasswordMigrator();
+        long remaining = migrator.getRemainingCount();
+        double rate = migrator.getThroughput();
+        
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("status", migrator.getStatus().name().toLowerCase());
+        placeholders.put("migrated", String.valueOf(migrator.getMigratedCount()));
+        placeholders.put("remaining", String.valueOf(remaining));
+        placeholders.put("rate", String.format("%.1f", rate));
+        placeholders.put("eta", remaining > 0 && rate > 0 ? (long) Math.ceil(remaining / rate) + "s" : "-");
+        
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.migration", placeholders));
+    }
+    
+    /**
+     * Sends the estimated memory footprint of the account store to the sender.
+     *
+     * @param sender The sender to send the estimate to
+     * @param cacheBytes The estimated size of the cached accounts
+     * @param indexBytes The estimated size of the username and UUID indexes
+     */
+    private void sendMemory(CommandSender sender, long cacheBytes, long indexBytes) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("accounts", String.valueOf(plugin.getDataManager().getRegisteredCount()));
+        placeholders.put("loaded", String.valueOf(plugin.getDataManager().getLoadedCount()));
+        placeholders.put("cache", String.format("%.1f", cacheBytes / 1048576.0));
+        placeholders.put("index", String.format("%.1f", indexBytes / 1048576.0));
+        placeholders.put("total", String.format("%.1f", (cacheBytes + indexBytes) / 1048576.0));
+        
+        sender.sendMessage(plugin.getMessageManager().getMessage("admin.memory", placeholders));
+    }
+    
+    private void sendConvertResult(CommandSender sender, String format, Integer count, Throwable error) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("format", format);
+        
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            plugin.getLogger().log(Level.SEVERE, "Could not convert account snapshot to " + format, cause);
+            
+            placeholders.put("error", String.valueOf(cause.getMessage()));
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.convert.failed", placeholders);
+            } else {
+                sender.sendMessage("Could not convert accounts to " + format + ": " + cause.getMessage());
+            }
+            return;
+        }
+        
+        placeholders.put("count", String.valueOf(count));
+        if (sender instanceof Player player) {
+            plugin.getMessageManager().sendMessage(player, "admin.convert.success", placeholders);
+        } else {
+            sender.sendMessage("Converted " + count + " accounts to " + format + "!");
+        }
+    }
+    
+    private void sendReloadResult(CommandSender sender, Throwable error) {
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            plugin.getLogger().log(Level.SEVERE, "Could not reload AuthLite", cause);
+            
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("error", String.valueOf(cause.getMessage()));
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.reload.failed", placeholders);
+            } else {
+                sender.sendMessage("Could not reload AuthLite: " + cause.getMessage());
+            }
+            return;
+        }
+        
+        // Send success message
+        if (sender instanceof Player player) {
+            plugin.getMessageManager().sendMessage(player, "admin.reload.success");
+        } else {
+            sender.sendMessage("AuthLite has been reloaded!");
+        }
+    }
+    
+    private void sendImportResult(CommandSender sender, String fileName, Integer count, Throwable error) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("file", fileName);
+        
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            plugin.getLogger().log(Level.SEVERE, "Could not import accounts from " + fileName, cause);
+            
+            placeholders.put("error", String.valueOf(cause.getMessage()));
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.import.failed", placeholders);
+            } else {
+                sender.sendMessage("Could not import accounts from " + fileName + ": " + cause.getMessage());
+            }
+            return;
+        }
+        
+        placeholders.put("count", String.valueOf(count));
+        if (sender instanceof Player player) {
+            plugin.getMessageManager().sendMessage(player, "admin.import.success", placeholders);
+        } else {
+            sender.sendMessage("Imported " + count + " accounts from " + fileName + "!");
+        }
+    }
+    
+    private void sendRegisterResult(CommandSender sender, String playerName, UUID uuid, Boolean registered, Throwable error) {
+        if (error != null) {
+            plugin.getPasswordManager().sendFailure(sender, error);
+            return;
+        }
+        
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("player", playerName);
+        
+        if (registered) {
+            // An online player now has to log in instead of registering
+            Player targetPlayer = Bukkit.getPlayer(uuid);
+            if (targetPlayer != null && targetPlayer.isOnline()) {
+                plugin.getSessionManager().registerPlayer(targetPlayer);
+            }
+            
+            // Send success message
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.register.success", placeholders);
+            } else {
+                sender.sendMessage("Player " + playerName + " has been registered!");
+            }
+        } else {
+            // The player registered while the password was being hashed
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.register.already_registered", placeholders);
+            } else {
+                sender.sendMessage("Player " + playerName + " is already registered!");
+            }
+        }
+    }
+    
+    private void sendChangePasswordResult(CommandSender sender, String playerName, Boolean changed, Throwable error) {
+        if (error != null) {
+            plugin.getPasswordManager().sendFailure(sender, error);
+            return;
+        }
+        
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("player", playerName);
+        
+        if (changed) {
+            // Send success message
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.change_password.success", placeholders);
+            } else {
+                sender.sendMessage("Password for player " + playerName + " has been changed!");
+            }
+        } else {
+            // The account was removed while it was being loaded
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.change_password.not_registered", placeholders);
+            } else {
+                sender.sendMessage("Player " + playerName + " is not registered!");
+            }
+        }
+    }
+    
+    private void unregister(CommandSender sender, String playerName, UUID uuid) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("player", playerName);
+        
+        // Unregister player
+        if (plugin.getDataManager().unregisterPlayer(uuid)) {
+            plugin.getSessionManager().invalidateSession(uuid);
+            
+            // Make the player register again if online
+            Player targetPlayer = Bukkit.getPlayer(uuid);
+            if (targetPlayer != null && targetPlayer.isOnline()) {
+                plugin.getSessionManager().unregisterPlayer(targetPlayer);
+            }
+            
+            // Send success message
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.unregister.success", placeholders);
+            } else {
+                sender.sendMessage("Player " + playerName + " has been unregistered!");
+            }
+        } else {
+            // The account was removed while it was being loaded
+            if (sender instanceof Player player) {
+                plugin.getMessageManager().sendMessage(player, "admin.unregister.not_registered", placeholders);
+            } else {
+                sender.sendMessage("Player " + playerName + " is not registered!");
+            }
+        }
+    }
 }
-
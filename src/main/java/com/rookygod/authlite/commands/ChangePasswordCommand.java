@@ -50,12 +50,6 @@ public class ChangePasswordCommand implements CommandExecutor {
         String oldPassword = args[0];
         String newPassword = args[1];
         
-        // Check if old password is correct
-        if (!plugin.getDataManager().authenticate(player, oldPassword)) {
-            plugin.getMessageManager().sendMessage(player, "change_password.wrong_password");
-            return true;
-        }
-        
         // Check password length
         int minLength = plugin.getConfigManager().getMinPasswordLength();
         int maxLength = plugin.getConfigManager().getMaxPasswordLength();
@@ -74,15 +68,47 @@ public class ChangePasswordCommand implements CommandExecutor {
             return true;
         }
         
-        // Change password
-        if (plugin.getDataManager().changePassword(player.getUniqueId(), newPassword)) {
-            // Send success message
-            plugin.getMessageManager().sendMessage(player, "change_password.success");
-            return true;
-        } else {
-            // This should not happen, but just in case
-            plugin.getMessageManager().sendMessage(player, "change_password.not_logged_in");
+        // Refuse password checks beyond the rate limits before any hashing
+        if (!plugin.getRateLimiter().tryAcquire(player)) {
+            plugin.getMessageManager().sendMessage(player, "security.rate_limited");
             return true;
         }
+        
+        // Check the old password, then hash the new one, both on the hashing pool
+        plugin.getDataManager().authenticateAsync(player, oldPassword).whenComplete((authenticated, error) -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            
+            if (error != null) {
+                plugin.getPasswordManager().sendFailure(player, error);
+                return;
+            }
+            
+            // Check if old password is correct
+            if (!authenticated) {
+                plugin.getMessageManager().sendMessage(player, "change_password.wrong_password");
+                return;
+            }
+            
+            // Change password
+            plugin.getDataManager().changePasswordAsync(player.getUniqueId(), newPassword).whenComplete((changed, changeError) -> {
+                if (!player.isOnline()) {
+                    return;
+                }
+                
+                if (changeError != null) {
+                    plugin.getPasswordManager().sendFailure(player, changeError);
+                } else if (changed) {
+                    // Send success message
+                    plugin.getMessageManager().sendMessage(player, "change_password.success");
+                } else {
+                    // The account was removed meanwhile
+                    plugin.getMessageManager().sendMessage(player, "change_password.not_logged_in");
+                }
+            });
+        });
+        
+        return true;
     }
 }
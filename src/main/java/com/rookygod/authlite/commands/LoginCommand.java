@@ -1,8 +1,8 @@
 package com.rookygod.authlite.commands;
 
 import com.rookygod.authlite.AuthLite;
-import com.rookygod.authlite.data.PlayerData;
 import com.rookygod.authlite.events.LoginEvent;
+import com.rookygod.authlite.utils.MessageUtils;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -57,43 +57,72 @@ public class LoginCommand implements CommandExecutor {
         
         String password = args[0];
         
-        // Get player data
-        PlayerData playerData = plugin.getDataManager().getPlayerData(player.getUniqueId());
-        
-        // Check if player has exceeded max login attempts
-        if (playerData.getLoginAttempts() >= plugin.getConfigManager().getMaxLoginAttempts()) {
-            if (plugin.getConfigManager().isKickOnWrongPassword()) {
-                player.kickPlayer(plugin.getMessageManager().getMessage("login.max_attempts"));
-            } else {
-                plugin.getMessageManager().sendMessage(player, "login.max_attempts");
-            }
+        // Check if the account or address is locked out after earlier wrong passwords
+        long lockout = plugin.getLockoutManager().getRemainingMillis(player);
+        if (lockout > 0) {
+            sendLockout(player, lockout);
             return true;
         }
         
-        // Authenticate player
-        if (plugin.getDataManager().authenticate(player, password)) {
-            // Set player as authenticated
-            plugin.getSessionManager().authenticatePlayer(player);
-            
-            // Send success message
-            plugin.getMessageManager().sendMessage(player, "login.success");
-            
-            // Call login event
-            LoginEvent loginEvent = new LoginEvent(player);
-            plugin.getServer().getPluginManager().callEvent(loginEvent);
-            
+        // The lockout is over
+        plugin.getSessionManager().unlockPlayer(player);
+        
+        // Refuse password checks beyond the rate limits before any hashing
+        if (!plugin.getRateLimiter().tryAcquire(player)) {
+            plugin.getMessageManager().sendMessage(player, "security.rate_limited");
             return true;
-        } else {
-            // Send wrong password message
-            plugin.getMessageManager().sendMessage(player, "login.wrong_password");
+        }
+        
+        // Authenticate player on the hashing pool, the result comes back on the main thread
+        plugin.getDataManager().authenticateAsync(player, password).whenComplete((authenticated, error) -> {
+            if (!player.isOnline()) {
+                return;
+            }
             
-            // Check if player should be kicked
-            if (plugin.getConfigManager().isKickOnWrongPassword() && 
-                    playerData.getLoginAttempts() >= plugin.getConfigManager().getMaxLoginAttempts()) {
-                player.kickPlayer(plugin.getMessageManager().getMessage("login.max_attempts"));
+            if (error != null) {
+                plugin.getPasswordManager().sendFailure(player, error);
+                return;
             }
             
-            return true;
+            if (authenticated) {
+                plugin.getLockoutManager().recordSuccess(player);
+                
+                // Set player as authenticated, unless a concurrent login already did
+                if (!plugin.getSessionManager().authenticatePlayer(player)) {
+                    return;
+                }
+                
+                // Send success message
+                plugin.getMessageManager().sendMessage(player, "login.success");
+                
+                // Call login event
+                LoginEvent loginEvent = new LoginEvent(player);
+                plugin.getServer().getPluginManager().callEvent(loginEvent);
+            } else {
+                // Lock the account and address out once they reach their limit
+                long locked = plugin.getLockoutManager().recordFailure(player);
+                if (locked > 0) {
+                    plugin.getSessionManager().lockPlayer(player);
+                    sendLockout(player, locked);
+                    return;
+                }
+                
+                // Send wrong password message
+                plugin.getMessageManager().sendMessage(player, "login.wrong_password");
+            }
+        });
+        
+        return true;
+    }
+    
+    private void sendLockout(Player player, long millis) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("time", MessageUtils.formatDuration(millis));
+        
+        if (plugin.getConfigManager().isKickOnWrongPassword()) {
+            player.kickPlayer(plugin.getMessageManager().getMessage("login.locked_out", placeholders));
+        } else {
+            plugin.getMessageManager().sendMessage(player, "login.locked_out", placeholders);
         }
     }
 }
@@ -28,15 +28,12 @@ public class LogoutCommand implements CommandExecutor {
             return true;
         }
         
-        // Check if player is logged in
-        if (!plugin.getSessionManager().isAuthenticated(player)) {
+        // Logout player, unless they are not logged in
+        if (!plugin.getSessionManager().deauthenticatePlayer(player)) {
             plugin.getMessageManager().sendMessage(player, "logout.not_logged_in");
             return true;
         }
         
-        // Logout player
-        plugin.getSessionManager().deauthenticatePlayer(player);
-        
         // Send success message
         plugin.getMessageManager().sendMessage(player, "logout.success");
         
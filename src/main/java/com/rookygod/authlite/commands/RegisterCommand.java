@@ -75,23 +75,41 @@ public class RegisterCommand implements CommandExecutor {
             return true;
         }
         
-        // Register player
-        if (plugin.getDataManager().registerPlayer(player, password)) {
-            // Set player as authenticated
-            plugin.getSessionManager().authenticatePlayer(player);
-            
-            // Send success message
-            plugin.getMessageManager().sendMessage(player, "register.success");
-            
-            // Call register event
-            RegisterEvent registerEvent = new RegisterEvent(player);
-            plugin.getServer().getPluginManager().callEvent(registerEvent);
-            
-            return true;
-        } else {
-            // This should not happen, but just in case
-            plugin.getMessageManager().sendMessage(player, "register.already_registered");
+        // Refuse password checks beyond the rate limits before any hashing
+        if (!plugin.getRateLimiter().tryAcquire(player)) {
+            plugin.getMessageManager().sendMessage(player, "security.rate_limited");
             return true;
         }
+        
+        // Register player once the password is hashed on the hashing pool
+        plugin.getDataManager().registerPlayerAsync(player, password).whenComplete((registered, error) -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            
+            if (error != null) {
+                plugin.getPasswordManager().sendFailure(player, error);
+                return;
+            }
+            
+            if (registered) {
+                // Set player as authenticated, unless a concurrent registration already did
+                if (!plugin.getSessionManager().authenticatePlayer(player)) {
+                    return;
+                }
+                
+                // Send success message
+                plugin.getMessageManager().sendMessage(player, "register.success");
+                
+                // Call register event
+                RegisterEvent registerEvent = new RegisterEvent(player);
+                plugin.getServer().getPluginManager().callEvent(registerEvent);
+            } else {
+                // Registered twice while the first password was being hashed
+                plugin.getMessageManager().sendMessage(player, "register.already_registered");
+            }
+        });
+        
+        return true;
     }
 }
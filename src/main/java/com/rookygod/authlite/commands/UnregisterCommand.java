@@ -3,6 +3,7 @@ package com.rookygod.authlite.commands;
 import com.rookygod.authlite.AuthLite;
 import com.rookygod.authlite.events.RegisterEvent;
 import com.rookygod.authlite.events.UnregisterEvent;
+import com.rookygod.authlite.utils.TimerWheel;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -10,7 +11,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -19,29 +19,22 @@ import java.util.UUID;
 public class UnregisterCommand implements CommandExecutor {
 
     private final AuthLite plugin;
-    private final Map<UUID, BukkitTask> registrationPromptTasks = new HashMap<>();
+    // Deadlines on the plugin's ticker, only used on the main thread
+    private final Map<UUID, TimerWheel.Timeout> registrationPrompts = new HashMap<>();
     
     public UnregisterCommand(AuthLite plugin) {
         this.plugin = plugin;
         
-        // Register player quit event to clean up tasks
+        // Register player quit event to clean up prompts
         plugin.getServer().getPluginManager().registerEvents(new Listener() {
             @EventHandler
             public void onPlayerQuit(PlayerQuitEvent event) {
-                UUID uuid = event.getPlayer().getUniqueId();
-                if (registrationPromptTasks.containsKey(uuid)) {
-                    registrationPromptTasks.get(uuid).cancel();
-                    registrationPromptTasks.remove(uuid);
-                }
+                cancelRegistrationPrompt(event.getPlayer().getUniqueId());
             }
             
             @EventHandler
             public void onPlayerRegister(RegisterEvent event) {
-                UUID uuid = event.getPlayer().getUniqueId();
-                if (registrationPromptTasks.containsKey(uuid)) {
-                    registrationPromptTasks.get(uuid).cancel();
-                    registrationPromptTasks.remove(uuid);
-                }
+                cancelRegistrationPrompt(event.getPlayer().getUniqueId());
             }
         }, plugin);
     }
@@ -78,37 +71,54 @@ public class UnregisterCommand implements CommandExecutor {
         
         String password = args[0];
         
-        // Check if password is correct
-        if (!plugin.getDataManager().authenticate(player, password)) {
-            plugin.getMessageManager().sendMessage(player, "unregister.wrong_password");
+        // Refuse password checks beyond the rate limits before any hashing
+        if (!plugin.getRateLimiter().tryAcquire(player)) {
+            plugin.getMessageManager().sendMessage(player, "security.rate_limited");
             return true;
         }
         
-        // Unregister player
-        if (plugin.getDataManager().unregisterPlayer(player.getUniqueId())) {
-            // Deauthenticate player
-            plugin.getSessionManager().deauthenticatePlayer(player);
-            
-            // Send success message
-            plugin.getMessageManager().sendMessage(player, "unregister.success");
+        // Check the password on the hashing pool, the result comes back on the main thread
+        plugin.getDataManager().authenticateAsync(player, password).whenComplete((authenticated, error) -> {
+            if (!player.isOnline()) {
+                return;
+            }
             
-            // Call unregister event
-            UnregisterEvent unregisterEvent = new UnregisterEvent(player);
-            plugin.getServer().getPluginManager().callEvent(unregisterEvent);
+            if (error != null) {
+                plugin.getPasswordManager().sendFailure(player, error);
+                return;
+            }
             
-            // Start registration prompt task
-            startRegistrationPromptTask(player);
+            // Check if password is correct
+            if (!authenticated) {
+                plugin.getMessageManager().sendMessage(player, "unregister.wrong_password");
+                return;
+            }
             
-            return true;
-        } else {
-            // This should not happen, but just in case
-            plugin.getMessageManager().sendMessage(player, "unregister.not_registered");
-            return true;
-        }
+            // Unregister player
+            if (plugin.getDataManager().unregisterPlayer(player.getUniqueId())) {
+                // Make the player register again
+                plugin.getSessionManager().unregisterPlayer(player);
+                
+                // Send success message
+                plugin.getMessageManager().sendMessage(player, "unregister.success");
+                
+                // Call unregister event
+                UnregisterEvent unregisterEvent = new UnregisterEvent(player);
+                plugin.getServer().getPluginManager().callEvent(unregisterEvent);
+                
+                // Start registration prompt task
+                startRegistrationPromptTask(player);
+            } else {
+                // This should not happen, but just in case
+                plugin.getMessageManager().sendMessage(player, "unregister.not_registered");
+            }
+        });
+        
+        return true;
     }
     
     /**
-     * Starts a task to periodically remind the player to register after unregistering
+     * Starts periodically reminding the player to register after unregistering
      * 
      * @param player The player to remind
      */
@@ -120,27 +130,35 @@ public class UnregisterCommand implements CommandExecutor {
         }
         
         UUID uuid = player.getUniqueId();
+        long interval = reminderInterval * 1000L;
         
-        // Cancel any existing reminder task for this player
-        if (registrationPromptTasks.containsKey(uuid)) {
-            registrationPromptTasks.get(uuid).cancel();
-            registrationPromptTasks.remove(uuid);
-        }
+        // Cancel any existing prompt for this player
+        cancelRegistrationPrompt(uuid);
         
-        // Create a new reminder task
-        BukkitTask task = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
+        // The prompt moves its own timeout to the next interval until the player registers
+        TimerWheel.Timeout[] prompt = new TimerWheel.Timeout[1];
+        prompt[0] = plugin.getTicker().schedule(() -> {
+            // A replaced prompt may still run in the tick it was replaced
+            if (registrationPrompts.get(uuid) != prompt[0]) {
+                return;
+            }
+            
             // Only send reminder if player is still online and not registered
             if (player.isOnline() && !plugin.getDataManager().isRegistered(player.getUniqueId())) {
                 plugin.getMessageManager().sendMessage(player, "register.prompt_after_unregister");
+                plugin.getTicker().reschedule(prompt[0], System.currentTimeMillis() + interval);
             } else {
-                // Cancel task if player is offline or registered
-                if (registrationPromptTasks.containsKey(uuid)) {
-                    registrationPromptTasks.get(uuid).cancel();
-                    registrationPromptTasks.remove(uuid);
-                }
+                registrationPrompts.remove(uuid);
             }
-        }, reminderInterval * 20L, reminderInterval * 20L); // Convert seconds to ticks
+        }, System.currentTimeMillis() + interval);
         
-        registrationPromptTasks.put(uuid, task);
+        registrationPrompts.put(uuid, prompt[0]);
+    }
+    
+    private void cancelRegistrationPrompt(UUID uuid) {
+        TimerWheel.Timeout prompt = registrationPrompts.remove(uuid);
+        if (prompt != null) {
+            prompt.cancel();
+        }
     }
 }
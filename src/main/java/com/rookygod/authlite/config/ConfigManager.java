@@ -2,7 +2,12 @@ package com.rookygod.authlite.config;
 
 import com.rookygod.authlite.AuthLite;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class ConfigManager {
@@ -26,6 +31,11 @@ public class ConfigManager {
     private boolean enableSessions;
     private int sessionTimeout;
     private boolean sessionCheckIP;
+    private boolean sessionSliding;
+    private int sessionExpiryNotice;
+    private int sessionIpv4Prefix;
+    private int sessionIpv6Prefix;
+    private List<String> sessionTrustedNetworks;
     
     // Protection settings
     private boolean blockMovement;
@@ -38,6 +48,48 @@ public class ConfigManager {
     private boolean teleportToSpawn;
     private boolean hideFromPlayerList;
     private boolean blindEffect;
+    private boolean limboEnabled;
+    private String limboWorld;
+    
+    // Storage settings
+    private String storageBackend;
+    private int sqlPoolSize;
+    private boolean lazyLoading;
+    private int unloadDelay;
+    private int cacheMaxSize;
+    private double cacheHeapThreshold;
+    private int compactionInterval;
+    private int compactionThreshold;
+    private boolean journalFsync;
+    private int writeBatchSize;
+    private int writeFlushInterval;
+    
+    // Security settings
+    private int hashIterations;
+    private int hashLatencyBudget;
+    private int hashMinIterations;
+    private int hashThreads;
+    private int hashQueueSize;
+    private boolean migrationEnabled;
+    private int migrationBatchSize;
+    private double migrationCpuBudget;
+    private int rateLimitIpPerMinute;
+    private int rateLimitIpBurst;
+    private int rateLimitAccountPerMinute;
+    private int rateLimitAccountBurst;
+    private int rateLimitGlobalPerSecond;
+    private int rateLimitGlobalBurst;
+    private boolean lockoutEnabled;
+    private int lockoutIpMaxAttempts;
+    private int lockoutDuration;
+    private int lockoutMaxDuration;
+    private int lockoutDecay;
+    private boolean throttleEnabled;
+    private int throttleWindow;
+    private int throttleIpLimit;
+    private int throttleSubnetLimit;
+    private int throttleGlobalMin;
+    private double throttleSurgeFactor;
     
     public ConfigManager(AuthLite plugin) {
         this.plugin = plugin;
@@ -57,8 +109,40 @@ public class ConfigManager {
     }
     
     public void reloadConfig() {
-        plugin.reloadConfig();
-        config = plugin.getConfig();
+        applyConfig(readConfig());
+    }
+    
+    /**
+     * Parses config.yml without touching the settings in use, so a reload can do it off
+     * the main thread.
+     *
+     * @return The configuration, with the defaults of the jar
+     */
+    public FileConfiguration readConfig() {
+        File configFile = new File(plugin.getDataFolder(), "config.yml");
+        if (!configFile.exists()) {
+            plugin.saveResource("config.yml", false);
+        }
+        
+        YamlConfiguration loaded = YamlConfiguration.loadConfiguration(configFile);
+        
+        // Load default config from jar
+        InputStream defaultConfigStream = plugin.getResource("config.yml");
+        if (defaultConfigStream != null) {
+            loaded.setDefaults(YamlConfiguration.loadConfiguration(
+                    new InputStreamReader(defaultConfigStream, StandardCharsets.UTF_8)));
+        }
+        return loaded;
+    }
+    
+    /**
+     * Replaces the settings in use with a configuration returned by {@link #readConfig()}.
+     * Called on the main thread.
+     *
+     * @param config The new configuration
+     */
+    public void applyConfig(FileConfiguration config) {
+        this.config = config;
         loadSettings();
     }
     
@@ -79,6 +163,11 @@ public class ConfigManager {
         enableSessions = config.getBoolean("session.enable", true);
         sessionTimeout = config.getInt("session.timeout", 1440); // 24 hours in minutes
         sessionCheckIP = config.getBoolean("session.check-ip", true);
+        sessionSliding = config.getBoolean("session.sliding", false);
+        sessionExpiryNotice = config.getInt("session.expiry-notice", 0);
+        sessionIpv4Prefix = config.getInt("session.ipv4-prefix", 32);
+        sessionIpv6Prefix = config.getInt("session.ipv6-prefix", 64);
+        sessionTrustedNetworks = config.getStringList("session.trusted-networks");
         
         // Protection settings
         blockMovement = config.getBoolean("protection.block-movement", true);
@@ -91,6 +180,48 @@ public class ConfigManager {
         teleportToSpawn = config.getBoolean("protection.teleport-to-spawn", true);
         hideFromPlayerList = config.getBoolean("protection.hide-from-player-list", false);
         blindEffect = config.getBoolean("protection.blind-effect", false);
+        limboEnabled = config.getBoolean("protection.limbo.enabled", false);
+        limboWorld = config.getString("protection.limbo.world", "authlite_limbo");
+        
+        // Storage settings
+        storageBackend = config.getString("storage.backend", "yaml");
+        sqlPoolSize = config.getInt("storage.sqlite.pool-size", 4);
+        lazyLoading = config.getBoolean("storage.lazy-loading", false);
+        unloadDelay = config.getInt("storage.unload-delay", 300);
+        cacheMaxSize = config.getInt("storage.cache.max-size", 10000);
+        cacheHeapThreshold = config.getDouble("storage.cache.heap-threshold", 0.85);
+        compactionInterval = config.getInt("storage.compaction-interval", 300);
+        compactionThreshold = config.getInt("storage.compaction-threshold", 10000);
+        journalFsync = config.getBoolean("storage.journal-fsync", false);
+        writeBatchSize = config.getInt("storage.write-behind.batch-size", 256);
+        writeFlushInterval = config.getInt("storage.write-behind.flush-interval", 1000);
+        
+        // Security settings
+        hashIterations = Math.max(0, config.getInt("security.hashing.iterations", 0));
+        hashLatencyBudget = config.getInt("security.hashing.latency-budget", 50);
+        hashMinIterations = Math.max(1, config.getInt("security.hashing.min-iterations", 10000));
+        hashThreads = config.getInt("security.hashing.threads", 0);
+        hashQueueSize = config.getInt("security.hashing.queue-size", 64);
+        migrationEnabled = config.getBoolean("security.migration.enabled", true);
+        migrationBatchSize = config.getInt("security.migration.batch-size", 16);
+        migrationCpuBudget = config.getDouble("security.migration.cpu-budget", 0.25);
+        rateLimitIpPerMinute = config.getInt("security.rate-limit.ip.per-minute", 10);
+        rateLimitIpBurst = config.getInt("security.rate-limit.ip.burst", 5);
+        rateLimitAccountPerMinute = config.getInt("security.rate-limit.account.per-minute", 6);
+        rateLimitAccountBurst = config.getInt("security.rate-limit.account.burst", 3);
+        rateLimitGlobalPerSecond = config.getInt("security.rate-limit.global.per-second", 50);
+        rateLimitGlobalBurst = config.getInt("security.rate-limit.global.burst", 100);
+        lockoutEnabled = config.getBoolean("security.lockout.enabled", true);
+        lockoutIpMaxAttempts = config.getInt("security.lockout.ip-max-attempts", 10);
+        lockoutDuration = config.getInt("security.lockout.duration", 60);
+        lockoutMaxDuration = config.getInt("security.lockout.max-duration", 3600);
+        lockoutDecay = config.getInt("security.lockout.decay", 600);
+        throttleEnabled = config.getBoolean("security.throttle.enabled", true);
+        throttleWindow = config.getInt("security.throttle.window", 10);
+        throttleIpLimit = config.getInt("security.throttle.ip", 3);
+        throttleSubnetLimit = config.getInt("security.throttle.subnet", 10);
+        throttleGlobalMin = config.getInt("security.throttle.global-min", 30);
+        throttleSurgeFactor = config.getDouble("security.throttle.surge-factor", 4.0);
     }
     
     // Getters for all settings
@@ -146,6 +277,26 @@ public class ConfigManager {
         return sessionCheckIP;
     }
     
+    public boolean isSessionSliding() {
+        return sessionSliding;
+    }
+    
+    public int getSessionExpiryNotice() {
+        return sessionExpiryNotice;
+    }
+    
+    public int getSessionIpv4Prefix() {
+        return sessionIpv4Prefix;
+    }
+    
+    public int getSessionIpv6Prefix() {
+        return sessionIpv6Prefix;
+    }
+    
+    public List<String> getSessionTrustedNetworks() {
+        return sessionTrustedNetworks;
+    }
+    
     public boolean isBlockMovement() {
         return blockMovement;
     }
@@ -185,4 +336,156 @@ public class ConfigManager {
     public boolean isBlindEffect() {
         return blindEffect;
     }
+    
+    public boolean isLimboEnabled() {
+        return limboEnabled;
+    }
+    
+    public String getLimboWorld() {
+        return limboWorld;
+    }
+    
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+    
+    public int getSqlPoolSize() {
+        return sqlPoolSize;
+    }
+    
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+    
+    public int getUnloadDelay() {
+        return unloadDelay;
+    }
+    
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+    
+    public double getCacheHeapThreshold() {
+        return cacheHeapThreshold;
+    }
+    
+    public int getCompactionInterval() {
+        return compactionInterval;
+    }
+    
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+    
+    public boolean isJournalFsync() {
+        return journalFsync;
+    }
+    
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+    
+    public int getWriteFlushInterval() {
+        return writeFlushInterval;
+    }
+    
+    public int getHashIterations() {
+        return hashIterations;
+    }
+    
+    public int getHashLatencyBudget() {
+        return hashLatencyBudget;
+    }
+    
+    public int getHashMinIterations() {
+        return hashMinIterations;
+    }
+    
+    public int getHashThreads() {
+        return hashThreads;
+    }
+    
+    public int getHashQueueSize() {
+        return hashQueueSize;
+    }
+    
+    public boolean isMigrationEnabled() {
+        return migrationEnabled;
+    }
+    
+    public int getMigrationBatchSize() {
+        return migrationBatchSize;
+    }
+    
+    public double getMigrationCpuBudget() {
+        return migrationCpuBudget;
+    }
+    
+    public int getRateLimitIpPerMinute() {
+        return rateLimitIpPerMinute;
+    }
+    
+    public int getRateLimitIpBurst() {
+        return rateLimitIpBurst;
+    }
+    
+    public int getRateLimitAccountPerMinute() {
+        return rateLimitAccountPerMinute;
+    }
+    
+    public int getRateLimitAccountBurst() {
+        return rateLimitAccountBurst;
+    }
+    
+    public int getRateLimitGlobalPerSecond() {
+        return rateLimitGlobalPerSecond;
+    }
+    
+    public int getRateLimitGlobalBurst() {
+        return rateLimitGlobalBurst;
+    }
+    
+    public boolean isLockoutEnabled() {
+        return lockoutEnabled;
+    }
+    
+    public int getLockoutIpMaxAttempts() {
+        return lockoutIpMaxAttempts;
+    }
+    
+    public int getLockoutDuration() {
+        return lockoutDuration;
+    }
+    
+    public int getLockoutMaxDuration() {
+        return lockoutMaxDuration;
+    }
+    
+    public int getLockoutDecay() {
+        return lockoutDecay;
+    }
+    
+    public boolean isThrottleEnabled() {
+        return throttleEnabled;
+    }
+    
+    public int getThrottleWindow() {
+        return throttleWindow;
+    }
+    
+    public int getThrottleIpLimit() {
+        return throttleIpLimit;
+    }
+    
+    public int getThrottleSubnetLimit() {
+        return throttleSubnetLimit;
+    }
+    
+    public int getThrottleGlobalMin() {
+        return throttleGlobalMin;
+    }
+    
+    public double getThrottleSurgeFactor() {
+        return throttleSurgeFactor;
+    }
 }
@@ -7,7 +7,6 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
@@ -17,9 +16,8 @@ import java.util.Map;
 public class MessageManager {
 
     private final AuthLite plugin;
-    private FileConfiguration messagesConfig;
     private File messagesFile;
-    private final Map<String, String> messages = new HashMap<>();
+    private volatile Map<String, String> messages = new HashMap<>();
     
     public MessageManager(AuthLite plugin) {
         this.plugin = plugin;
@@ -33,27 +31,21 @@ public class MessageManager {
             plugin.saveResource("messages.yml", false);
         }
         
-        messagesConfig = YamlConfiguration.loadConfiguration(messagesFile);
-        
-        // Load default messages from jar
-        InputStream defaultMessagesStream = plugin.getResource("messages.yml");
-        if (defaultMessagesStream != null) {
-            YamlConfiguration defaultMessages = YamlConfiguration.loadConfiguration(
-                    new InputStreamReader(defaultMessagesStream, StandardCharsets.UTF_8));
-            messagesConfig.setDefaults(defaultMessages);
-        }
-        
-        // Load all messages into memory
-        for (String key : messagesConfig.getKeys(true)) {
-            if (messagesConfig.isString(key)) {
-                messages.put(key, ChatColor.translateAlternateColorCodes('&', messagesConfig.getString(key, "")));
-            }
-        }
+        messages = readMessages();
     }
     
     public void reloadMessages() {
-        messagesConfig = YamlConfiguration.loadConfiguration(messagesFile);
-        messages.clear();
+        applyMessages(readMessages());
+    }
+    
+    /**
+     * Parses messages.yml without touching the messages in use, so a reload can do it
+     * off the main thread.
+     *
+     * @return The colorized messages by key
+     */
+    public Map<String, String> readMessages() {
+        FileConfiguration messagesConfig = YamlConfiguration.loadConfiguration(messagesFile);
         
         // Load default messages from jar
         InputStream defaultMessagesStream = plugin.getResource("messages.yml");
@@ -64,11 +56,22 @@ public class MessageManager {
         }
         
         // Load all messages into memory
+        Map<String, String> loaded = new HashMap<>();
         for (String key : messagesConfig.getKeys(true)) {
             if (messagesConfig.isString(key)) {
-                messages.put(key, ChatColor.translateAlternateColorCodes('&', messagesConfig.getString(key, "")));
+                loaded.put(key, ChatColor.translateAlternateColorCodes('&', messagesConfig.getString(key, "")));
             }
         }
+        return loaded;
+    }
+    
+    /**
+     * Replaces the messages in use with ones returned by {@link #readMessages()}.
+     *
+     * @param messages The new messages
+     */
+    public void applyMessages(Map<String, String> messages) {
+        this.messages = messages;
     }
     
     public String getMessage(String key) {
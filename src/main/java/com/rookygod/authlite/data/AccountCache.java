@@ -0,0 +1,324 @@
+package com.rookygod.authlite.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Size-bounded, lock-striped cache of loaded accounts.
+ * <p>
+ * The cache is split into segments, each an access-ordered {@link LinkedHashMap} guarded
+ * by its own lock, so lookups for different players rarely contend. Entries of online
+ * players are pinned and never evicted; every other entry is evicted least recently used
+ * first once its segment is full, after it has not been accessed for the configured time,
+ * or when {@link #evictFraction(double)} is called under heap pressure.
+ */
+public class AccountCache {
+
+    private static final int SEGMENT_COUNT = 16;
+    // Map entry, cache entry, UUID key and table slot of an entry
+    private static final int ENTRY_OVERHEAD = 112;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final int maxSegmentSize;
+    private final long expireAfterAccessMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Entry {
+
+        final PlayerData playerData;
+        long lastAccess;
+        boolean pinned;
+
+        Entry(PlayerData playerData, long lastAccess) {
+            this.playerData = playerData;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class Segment {
+
+        final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        int pinned;
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize The maximum number of entries, or 0 for no limit
+     * @param expireAfterAccessMillis The time after the last access at which unpinned entries expire, or 0 to never expire
+     */
+    public AccountCache(int maxSize, long expireAfterAccessMillis) {
+        this.maxSegmentSize = maxSize > 0 ? Math.max(1, maxSize / SEGMENT_COUNT) : 0;
+        this.expireAfterAccessMillis = expireAfterAccessMillis;
+
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment segmentFor(UUID uuid) {
+        int hash = uuid.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Gets a cached account and records a hit or a miss.
+     *
+     * @param uuid The UUID of the account
+     * @return The cached account, or null if it is not cached
+     */
+    public PlayerData get(UUID uuid) {
+        Segment segment = segmentFor(uuid);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(uuid);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+
+            entry.lastAccess = System.currentTimeMillis();
+            hits.increment();
+            return entry.playerData;
+        }
+    }
+
+    /**
+     * Checks whether an account is cached without counting it as an access.
+     *
+     * @param uuid The UUID of the account
+     * @return True if the account is cached
+     */
+    public boolean contains(UUID uuid) {
+        Segment segment = segmentFor(uuid);
+        synchronized (segment) {
+            return segment.entries.containsKey(uuid);
+        }
+    }
+
+    /**
+     * Caches an account, replacing any cached entry while keeping its pin.
+     *
+     * @param playerData The account to cache
+     */
+    public void put(PlayerData playerData) {
+        Segment segment = segmentFor(playerData.getUuid());
+        synchronized (segment) {
+            Entry entry = new Entry(playerData, System.currentTimeMillis());
+            Entry previous = segment.entries.put(playerData.getUuid(), entry);
+            if (previous != null) {
+                entry.pinned = previous.pinned;
+            }
+            evictOverflow(segment);
+        }
+    }
+
+    /**
+     * Caches an account unless one is already cached for its UUID.
+     *
+     * @param playerData The account to cache
+     * @return The account that is cached after the call
+     */
+    public PlayerData putIfAbsent(PlayerData playerData) {
+        Segment segment = segmentFor(playerData.getUuid());
+        synchronized (segment) {
+            Entry existing = segment.entries.get(playerData.getUuid());
+            if (existing != null) {
+                return existing.playerData;
+            }
+
+            segment.entries.put(playerData.getUuid(), new Entry(playerData, System.currentTimeMillis()));
+            evictOverflow(segment);
+            return playerData;
+        }
+    }
+
+    public PlayerData remove(UUID uuid) {
+        Segment segment = segmentFor(uuid);
+        synchronized (segment) {
+            Entry entry = segment.entries.remove(uuid);
+            if (entry == null) {
+                return null;
+            }
+
+            if (entry.pinned) {
+                segment.pinned--;
+            }
+            return entry.playerData;
+        }
+    }
+
+    /**
+     * Pins a cached account so it is never evicted, for example while its player is online.
+     *
+     * @param uuid The UUID of the account
+     * @return True if the account was cached
+     */
+    public boolean pin(UUID uuid) {
+        Segment segment = segmentFor(uuid);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(uuid);
+            if (entry == null) {
+                return false;
+            }
+
+            if (!entry.pinned) {
+                entry.pinned = true;
+                segment.pinned++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Unpins an account, after which it expires like any other entry.
+     *
+     * @param uuid The UUID of the account
+     */
+    public void unpin(UUID uuid) {
+        Segment segment = segmentFor(uuid);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(uuid);
+            if (entry != null && entry.pinned) {
+                entry.pinned = false;
+                entry.lastAccess = System.currentTimeMillis();
+                segment.pinned--;
+            }
+        }
+    }
+
+    /**
+     * Evicts every unpinned entry that has not been accessed within the expiry time.
+     */
+    public void evictExpired() {
+        if (expireAfterAccessMillis <= 0) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - expireAfterAccessMillis;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Entry> iterator = segment.entries.values().iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (!entry.pinned && entry.lastAccess < cutoff) {
+                        iterator.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used share of the unpinned entries of every segment.
+     *
+     * @param fraction The share of unpinned entries to evict, between 0 and 1
+     */
+    public void evictFraction(double fraction) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                int toEvict = (int) Math.ceil((segment.entries.size() - segment.pinned) * fraction);
+                evictEldest(segment, toEvict);
+            }
+        }
+    }
+
+    /**
+     * Passes every cached account to a consumer, one segment at a time. The consumer runs
+     * while the segment is locked, so it should be quick and must not use the cache.
+     *
+     * @param consumer The consumer of the accounts
+     */
+    public void forEach(Consumer<PlayerData> consumer) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry entry : segment.entries.values()) {
+                    consumer.accept(entry.playerData);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.pinned = 0;
+            }
+        }
+    }
+
+    private void evictOverflow(Segment segment) {
+        if (maxSegmentSize > 0 && segment.entries.size() > maxSegmentSize) {
+            evictEldest(segment, segment.entries.size() - maxSegmentSize);
+        }
+    }
+
+    private void evictEldest(Segment segment, int count) {
+        Iterator<Map.Entry<UUID, Entry>> iterator = segment.entries.entrySet().iterator();
+        while (count > 0 && iterator.hasNext()) {
+            if (!iterator.next().getValue().pinned) {
+                iterator.remove();
+                evictions.increment();
+                count--;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the heap used by the cache and the accounts it holds.
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateMemory() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += (long) segment.entries.size() * ENTRY_OVERHEAD;
+                for (Entry entry : segment.entries.values()) {
+                    bytes += entry.playerData.estimateSize();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public int getPinnedCount() {
+        int pinned = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                pinned += segment.pinned;
+            }
+        }
+        return pinned;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,171 @@
+package com.rookygod.authlite.data;
+
+import com.rookygod.authlite.utils.LongPairMap;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of every registered account by UUID and by username, ignoring case.
+ * <p>
+ * Usernames of up to 16 ASCII characters, which covers every Minecraft name, are packed
+ * lowercased into two longs, one byte per character, so both directions fit in
+ * {@link LongPairMap}s without a single object per account. Lookups pack the name on
+ * the fly and never allocate. Other names, for example from proxies that prefix
+ * Bedrock players, are kept in a regular map.
+ */
+public class AccountIndex {
+
+    private static final int PACKED_LENGTH = 16;
+
+    // Packed username to UUID
+    private final LongPairMap usernames;
+    // UUID to packed username, or zero if the username could not be packed
+    private final LongPairMap uuids;
+    // Lowercased usernames that could not be packed
+    private final Map<String, UUID> otherUsernames = new ConcurrentHashMap<>();
+
+    public AccountIndex(int expectedSize) {
+        this.usernames = new LongPairMap(expectedSize);
+        this.uuids = new LongPairMap(expectedSize);
+    }
+
+    /**
+     * Adds an account, replacing the previous username of the same UUID.
+     *
+     * @param uuid The UUID of the account
+     * @param username The username of the account
+     */
+    public synchronized void add(UUID uuid, String username) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        // Drop the previous name if the account was renamed
+        long[] previous = new long[2];
+        if (uuids.get(most, least, previous)) {
+            if (previous[0] != 0 || previous[1] != 0) {
+                removeUsername(previous[0], previous[1], most, least);
+            } else {
+                otherUsernames.values().remove(uuid);
+            }
+        }
+
+        if (isPackable(username)) {
+            long high = pack(username, 0);
+            long low = pack(username, 8);
+            usernames.put(high, low, most, least);
+            uuids.put(most, least, high, low);
+        } else {
+            otherUsernames.put(username.toLowerCase(), uuid);
+            uuids.put(most, least, 0, 0);
+        }
+    }
+
+    /**
+     * Removes an account.
+     *
+     * @param uuid The UUID of the account
+     */
+    public synchronized void remove(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        long[] packed = new long[2];
+        if (!uuids.get(most, least, packed)) {
+            return;
+        }
+
+        if (packed[0] != 0 || packed[1] != 0) {
+            removeUsername(packed[0], packed[1], most, least);
+        } else {
+            otherUsernames.values().remove(uuid);
+        }
+        uuids.remove(most, least);
+    }
+
+    public boolean contains(UUID uuid) {
+        return uuids.containsKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public boolean contains(String username) {
+        if (isPackable(username)) {
+            return usernames.containsKey(pack(username, 0), pack(username, 8));
+        }
+        return otherUsernames.containsKey(username.toLowerCase());
+    }
+
+    /**
+     * Gets the UUID of the account with a username, ignoring case.
+     *
+     * @param username The username of the account
+     * @return The UUID, or null if no account has this username
+     */
+    public UUID get(String username) {
+        if (!isPackable(username)) {
+            return otherUsernames.get(username.toLowerCase());
+        }
+
+        return usernames.get(pack(username, 0), pack(username, 8), UUID::new);
+    }
+
+    public int size() {
+        return uuids.size();
+    }
+
+    public synchronized void clear() {
+        usernames.clear();
+        uuids.clear();
+        otherUsernames.clear();
+    }
+
+    /**
+     * Estimates the heap used by the index.
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateMemory() {
+        // Map node, UUID and lowercased name of each name that could not be packed
+        return usernames.estimateMemory() + uuids.estimateMemory() + otherUsernames.size() * 128L;
+    }
+
+    /**
+     * Removes a packed username unless it has been taken over by another account.
+     */
+    private void removeUsername(long high, long low, long most, long least) {
+        long[] owner = new long[2];
+        if (usernames.get(high, low, owner) && owner[0] == most && owner[1] == least) {
+            usernames.remove(high, low);
+        }
+    }
+
+    private static boolean isPackable(String username) {
+        int length = username.length();
+        if (length == 0 || length > PACKED_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = username.charAt(i);
+            if (c == 0 || c > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs eight lowercased characters of a username, starting at an offset, into a long.
+     */
+    private static long pack(String username, int offset) {
+        long packed = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            char c = i < username.length() ? username.charAt(i) : 0;
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            packed = (packed << 8) | c;
+        }
+        return packed;
+    }
+}
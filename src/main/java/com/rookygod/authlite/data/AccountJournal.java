@@ -0,0 +1,341 @@
+package com.rookygod.authlite.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of account mutations.
+ * <p>
+ * Every change to an account is written as one small, checksummed record instead of
+ * rewriting the whole players file. The log is periodically folded into a snapshot by
+ * {@link DataManager}, using {@link #rotate()} and {@link #discardRotated()} so that
+ * appends never have to wait for the snapshot to be written.
+ * <p>
+ * Record layout: {@code [int length][int crc32][payload]}. A bad record that runs to
+ * the end of the file is a torn write from a crash and is dropped. A bad record with
+ * valid records after it means the file itself is damaged: the replay stops there, a
+ * copy of the whole file is kept next to it for recovery, and the loss is logged.
+ */
+public class AccountJournal {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private final File file;
+    private final File rotatedFile;
+    private final Logger logger;
+    private volatile boolean fsync;
+    private FileChannel channel;
+    private int recordCount;
+
+    /**
+     * Receives the records of a journal during replay.
+     */
+    public interface Visitor {
+
+        void put(PlayerData playerData);
+
+        void delete(UUID uuid);
+    }
+
+    public AccountJournal(File file, boolean fsync, Logger logger) {
+        this.file = file;
+        this.rotatedFile = new File(file.getParentFile(), file.getName() + ".old");
+        this.logger = logger;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replays the rotated journal (left behind by an interrupted compaction) and the
+     * active journal, then opens the active journal for appending.
+     *
+     * @param visitor The visitor receiving every valid record, oldest first
+     * @return The number of records replayed
+     * @throws IOException If the journal cannot be read or opened
+     */
+    public synchronized int open(Visitor visitor) throws IOException {
+        int replayed = 0;
+
+        if (rotatedFile.exists()) {
+            replayed += replay(rotatedFile, visitor);
+        }
+
+        if (file.exists()) {
+            recordCount = replay(file, visitor);
+            replayed += recordCount;
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+
+        return replayed;
+    }
+
+    /**
+     * Appends the current state of an account.
+     *
+     * @param playerData The account to record
+     * @throws IOException If the record cannot be written
+     */
+    public void appendPut(PlayerData playerData) throws IOException {
+        append(Collections.singletonList(encodePut(playerData)));
+    }
+
+    /**
+     * Appends the removal of an account.
+     *
+     * @param uuid The UUID of the removed account
+     * @throws IOException If the record cannot be written
+     */
+    public void appendDelete(UUID uuid) throws IOException {
+        append(Collections.singletonList(encodeDelete(uuid)));
+    }
+
+    /**
+     * Appends a batch of changes with a single write.
+     *
+     * @param changes The changes keyed by UUID, where a null value records a removal
+     * @throws IOException If the records cannot be written
+     */
+    public void appendAll(Map<UUID, PlayerData> changes) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(changes.size());
+        for (Map.Entry<UUID, PlayerData> entry : changes.entrySet()) {
+            payloads.add(entry.getValue() != null ? encodePut(entry.getValue()) : encodeDelete(entry.getKey()));
+        }
+        append(payloads);
+    }
+
+    private byte[] encodePut(PlayerData playerData) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_PUT);
+        out.writeLong(playerData.getUuid().getMostSignificantBits());
+        out.writeLong(playerData.getUuid().getLeastSignificantBits());
+        out.writeUTF(Objects.requireNonNullElse(playerData.getUsername(), ""));
+        out.writeUTF(Objects.requireNonNullElse(playerData.getPassword(), ""));
+        out.writeUTF(Objects.requireNonNullElse(playerData.getLastIp(), ""));
+        out.writeLong(playerData.getLastLogin());
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeDelete(UUID uuid) {
+        ByteBuffer payload = ByteBuffer.allocate(17);
+        payload.put(OP_DELETE);
+        payload.putLong(uuid.getMostSignificantBits());
+        payload.putLong(uuid.getLeastSignificantBits());
+        return payload.array();
+    }
+
+    private synchronized void append(List<byte[]> payloads) throws IOException {
+        if (channel == null) {
+            throw new IOException("Journal " + file.getName() + " is not open");
+        }
+
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += 8 + payload.length;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer records = ByteBuffer.allocate(size);
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            records.putInt(payload.length);
+            records.putInt((int) crc.getValue());
+            records.put(payload);
+        }
+        records.flip();
+
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+
+        recordCount += payloads.size();
+    }
+
+    /**
+     * Moves the active journal aside so a snapshot can be written without blocking
+     * appends. Records appended afterwards go to a fresh journal and are replayed on
+     * top of the snapshot. If a previous compaction never finished, the active journal
+     * is appended to the already rotated one instead.
+     *
+     * @throws IOException If the journal cannot be rotated
+     */
+    public synchronized void rotate() throws IOException {
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+            channel = null;
+        }
+
+        if (rotatedFile.exists()) {
+            try (FileChannel target = FileChannel.open(rotatedFile.toPath(), StandardOpenOption.APPEND);
+                 FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long position = 0;
+                long size = source.size();
+                while (position < size) {
+                    position += source.transferTo(position, size - position, target);
+                }
+                target.force(true);
+            }
+            Files.deleteIfExists(file.toPath());
+        } else if (file.exists()) {
+            Files.move(file.toPath(), rotatedFile.toPath());
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        recordCount = 0;
+    }
+
+    /**
+     * Deletes the rotated journal once its records are contained in a snapshot.
+     *
+     * @throws IOException If the rotated journal cannot be deleted
+     */
+    public synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedFile.toPath());
+    }
+
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to do with a channel that cannot be flushed while shutting down
+        }
+        channel = null;
+    }
+
+    /**
+     * Gets the number of records in the active journal since the last rotation.
+     *
+     * @return The number of records
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Sets whether appends are forced to disk before they return.
+     *
+     * @param fsync True to fsync every append
+     */
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    private int replay(File source, Visitor visitor) throws IOException {
+        long size = source.length();
+        long validLength = 0;
+        boolean corrupt = false;
+        int records = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+            CRC32 crc = new CRC32();
+            // Fewer bytes than a header left means a torn header
+            while (size - validLength >= 8) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    // A crash can leave zeroes where the record was going to be written
+                    corrupt = length != 0 || checksum != 0 || !isZeroFilled(in);
+                    break;
+                }
+
+                long end = validLength + 8 + length;
+                if (end > size) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    corrupt = end < size;
+                    break;
+                }
+
+                apply(payload, visitor);
+                validLength = end;
+                records++;
+            }
+        }
+
+        if (corrupt) {
+            File copy = new File(source.getParentFile(), source.getName() + ".corrupt-" + System.currentTimeMillis());
+            Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.severe("Journal " + source.getName() + " is damaged at byte " + validLength + " of " + size
+                    + ": replayed " + records + " records before it, the changes after it are lost."
+                    + " A copy of the whole file was kept as " + copy.getName());
+        }
+
+        // Cut the file after the last valid record so later appends start on a record boundary
+        try (FileChannel out = FileChannel.open(source.toPath(), StandardOpenOption.WRITE)) {
+            if (out.size() > validLength) {
+                out.truncate(validLength);
+            }
+        }
+
+        return records;
+    }
+
+    private static boolean isZeroFilled(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void apply(byte[] payload, Visitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        UUID uuid = new UUID(in.readLong(), in.readLong());
+
+        if (op == OP_PUT) {
+            String username = in.readUTF();
+            String password = in.readUTF();
+            String lastIp = in.readUTF();
+            long lastLogin = in.readLong();
+            visitor.put(new PlayerData(uuid, username, password, lastIp, lastLogin));
+        } else if (op == OP_DELETE) {
+            visitor.delete(uuid);
+        }
+    }
+}
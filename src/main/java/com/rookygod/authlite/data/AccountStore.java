@@ -0,0 +1,96 @@
+package com.rookygod.authlite.data;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Persistent storage for player accounts.
+ * <p>
+ * Implementations are selected with {@code storage.backend} in config.yml and only
+ * depend on a data folder and a logger, so each one can be exercised on its own
+ * against a temporary directory. All methods may be called from any thread; returned
+ * {@link PlayerData} instances are never shared with the store.
+ */
+public interface AccountStore {
+
+    /**
+     * Gets the name of this backend as used in config.yml.
+     *
+     * @return The backend name
+     */
+    String getName();
+
+    /**
+     * Opens the store, creating its files or schema if needed.
+     *
+     * @throws IOException If the store cannot be opened
+     */
+    void open() throws IOException;
+
+    /**
+     * Passes every stored account to the consumer.
+     *
+     * @param consumer The consumer receiving each account
+     * @throws IOException If the accounts cannot be read
+     */
+    void loadAll(Consumer<PlayerData> consumer) throws IOException;
+
+    /**
+     * Passes the UUID and username of every stored account to the consumer. Backends
+     * that can read these columns alone should override this to skip the rest.
+     *
+     * @param consumer The consumer receiving each UUID and username
+     * @throws IOException If the accounts cannot be read
+     */
+    default void loadIndex(BiConsumer<UUID, String> consumer) throws IOException {
+        loadAll(playerData -> consumer.accept(playerData.getUuid(), playerData.getUsername()));
+    }
+
+    /**
+     * Loads a single account.
+     *
+     * @param uuid The UUID of the account
+     * @return The account, or null if it does not exist
+     * @throws IOException If the account cannot be read
+     */
+    PlayerData load(UUID uuid) throws IOException;
+
+    /**
+     * Loads a single account by username, ignoring case.
+     *
+     * @param username The username of the account
+     * @return The account, or null if it does not exist
+     * @throws IOException If the account cannot be read
+     */
+    PlayerData loadByUsername(String username) throws IOException;
+
+    /**
+     * Writes a batch of changes.
+     *
+     * @param changes The changes keyed by UUID, where a null value removes the account
+     * @throws IOException If the changes cannot be written
+     */
+    void saveAll(Map<UUID, PlayerData> changes) throws IOException;
+
+    /**
+     * Checks whether the store would benefit from {@link #compact()}.
+     *
+     * @return True if the store should be compacted
+     */
+    boolean needsCompaction();
+
+    /**
+     * Reorganizes the stored data, for example by folding a journal into a snapshot.
+     *
+     * @throws IOException If the store cannot be compacted
+     */
+    void compact() throws IOException;
+
+    /**
+     * Closes the store. Pending changes must have been passed to {@link #saveAll(Map)}.
+     */
+    void close();
+}
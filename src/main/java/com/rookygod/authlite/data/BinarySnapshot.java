@@ -0,0 +1,397 @@
+package com.rookygod.authlite.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary copy of the players.yml snapshot (players.dat).
+ * <p>
+ * Layout, all big-endian:
+ * <pre>
+ * header   int magic, int version, long source length, long source modified,
+ *          int count, long uuid index offset, long username index offset
+ * records  long uuid msb, long uuid lsb, u16-prefixed UTF-8 username, password
+ *          and last ip, long last login
+ * indexes  count x (long msb, long lsb, int offset) sorted by UUID, then
+ *          count x (long username hash, int offset) sorted by hash
+ * </pre>
+ * The header records the size and modification time of the players.yml it was written
+ * from, so a hand-edited or newer YAML file makes the snapshot stale instead of silently
+ * being ignored. Bulk reads load the file into one heap buffer rather than mapping it,
+ * since a mapping keeps the file open until it is garbage collected and Windows refuses
+ * to replace a mapped file; single lookups binary search the sorted indexes with
+ * positional reads and never load the whole file.
+ */
+public class BinarySnapshot {
+
+    private static final int MAGIC = 0x414C534E; // "ALSN"
+    // Version 2 hashes usernames lowercased with the root locale
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 44;
+    private static final int UUID_INDEX_ENTRY_SIZE = 20;
+    private static final int USERNAME_INDEX_ENTRY_SIZE = 12;
+
+    private final File file;
+    private FileChannel lookupChannel;
+
+    public BinarySnapshot(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks whether this snapshot exists and was written from the current version of the source file.
+     *
+     * @param source The YAML file the snapshot was written from
+     * @return True if the snapshot can be used instead of the source
+     */
+    public boolean isFreshFor(File source) {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+
+            return header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && header.getLong() == source.length()
+                    && header.getLong() == source.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads every record, loading the whole file with a single read.
+     *
+     * @param consumer The consumer receiving each account
+     * @return The number of accounts read
+     * @throws IOException If the snapshot cannot be read or is corrupt
+     */
+    public int read(Consumer<PlayerData> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file.getName() + " is too large to be read");
+            }
+
+            ByteBuffer buffer = readAt(channel, 0, (int) channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file.getName() + " is not a supported account snapshot");
+            }
+
+            buffer.position(24);
+            int count = buffer.getInt();
+            long uuidIndexOffset = buffer.getLong();
+
+            // Check the bounds of every record first, so a corrupt snapshot fails before anything is passed on
+            long position = HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                position += recordLength(buffer, (int) position);
+                if (position > uuidIndexOffset) {
+                    throw new IOException(file.getName() + " is truncated");
+                }
+            }
+
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < count; i++) {
+                consumer.accept(readRecord(buffer));
+            }
+
+            return count;
+        } catch (RuntimeException e) {
+            throw new IOException(file.getName() + " is corrupt", e);
+        }
+    }
+
+    /**
+     * Writes a new snapshot next to the live file and swaps it in atomically.
+     *
+     * @param records The accounts to write
+     * @param source The YAML file the accounts were read from, or written to
+     * @throws IOException If the snapshot cannot be written
+     */
+    public synchronized void write(Collection<PlayerData> records, File source) throws IOException {
+        int count = records.size();
+        long[][] uuidIndex = new long[count][];
+        long[][] usernameIndex = new long[count][];
+
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            out.writeInt(count);
+            out.writeLong(0); // Index offsets are filled in below
+            out.writeLong(0);
+
+            long offset = HEADER_SIZE;
+            int i = 0;
+            for (PlayerData playerData : records) {
+                UUID uuid = playerData.getUuid();
+                uuidIndex[i] = new long[] {uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset};
+                usernameIndex[i] = new long[] {hashUsername(playerData.getUsername()), offset};
+                i++;
+
+                int start = out.size();
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+                writeString(out, playerData.getUsername());
+                writeString(out, playerData.getPassword());
+                writeString(out, playerData.getLastIp());
+                out.writeLong(playerData.getLastLogin());
+                offset += out.size() - start;
+            }
+
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Too many accounts for a single " + file.getName());
+            }
+
+            Arrays.sort(uuidIndex, Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]));
+            for (long[] entry : uuidIndex) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+
+            Arrays.sort(usernameIndex, Comparator.comparingLong(entry -> entry[0]));
+            for (long[] entry : usernameIndex) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+            }
+
+            out.flush();
+
+            // Patch the index offsets into the header
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer offsets = ByteBuffer.allocate(16);
+                offsets.putLong(offset);
+                offsets.putLong(offset + (long) count * UUID_INDEX_ENTRY_SIZE);
+                offsets.flip();
+                channel.write(offsets, 28);
+                channel.force(true);
+            }
+        }
+
+        closeLookups();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Looks up a single account by UUID without reading the rest of the snapshot.
+     *
+     * @param uuid The UUID of the account
+     * @return The account, or null if it is not in the snapshot
+     * @throws IOException If the snapshot cannot be read
+     */
+    public synchronized PlayerData find(UUID uuid) throws IOException {
+        FileChannel channel = lookupChannel();
+        ByteBuffer header = readAt(channel, 24, 20);
+        int count = header.getInt();
+        long indexOffset = header.getLong();
+
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        ByteBuffer entry = ByteBuffer.allocate(UUID_INDEX_ENTRY_SIZE);
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            entry.clear();
+            readFully(channel, entry, indexOffset + (long) mid * UUID_INDEX_ENTRY_SIZE);
+            entry.flip();
+
+            int compare = Long.compare(entry.getLong(), msb);
+            if (compare == 0) {
+                compare = Long.compare(entry.getLong(), lsb);
+            }
+
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return readRecordAt(channel, entry.getInt(16));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks up a single account by username, ignoring case, without reading the rest of the snapshot.
+     *
+     * @param username The username of the account
+     * @return The account, or null if it is not in the snapshot
+     * @throws IOException If the snapshot cannot be read
+     */
+    public synchronized PlayerData findByUsername(String username) throws IOException {
+        FileChannel channel = lookupChannel();
+        ByteBuffer header = readAt(channel, 24, 20);
+        int count = header.getInt();
+        header.getLong();
+        long indexOffset = header.getLong();
+
+        long hash = hashUsername(username);
+        ByteBuffer entry = ByteBuffer.allocate(USERNAME_INDEX_ENTRY_SIZE);
+
+        // Find the first entry with this hash, then check each colliding entry
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            entry.clear();
+            readFully(channel, entry, indexOffset + (long) mid * USERNAME_INDEX_ENTRY_SIZE);
+            if (entry.getLong(0) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int i = low; i < count; i++) {
+            entry.clear();
+            readFully(channel, entry, indexOffset + (long) i * USERNAME_INDEX_ENTRY_SIZE);
+            if (entry.getLong(0) != hash) {
+                break;
+            }
+
+            PlayerData playerData = readRecordAt(channel, entry.getInt(8));
+            if (playerData.getUsername().toLowerCase(Locale.ROOT).equals(username.toLowerCase(Locale.ROOT))) {
+                return playerData;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Closes the channel used for single lookups. It is reopened on the next lookup.
+     */
+    public synchronized void closeLookups() {
+        if (lookupChannel == null) {
+            return;
+        }
+
+        try {
+            lookupChannel.close();
+        } catch (IOException ignored) {
+            // The channel is only read from
+        }
+        lookupChannel = null;
+    }
+
+    private FileChannel lookupChannel() throws IOException {
+        if (lookupChannel == null) {
+            lookupChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return lookupChannel;
+    }
+
+    private PlayerData readRecordAt(FileChannel channel, int offset) throws IOException {
+        // Most records fit in the first read; longer ones are read again once their length is known
+        int size = 512;
+        while (true) {
+            ByteBuffer buffer = readAt(channel, offset, (int) Math.min(size, channel.size() - offset));
+            int length = recordLength(buffer, 0);
+            if (length <= buffer.limit()) {
+                return readRecord(buffer);
+            }
+            if (buffer.limit() < size) {
+                throw new IOException("Unexpected end of account snapshot");
+            }
+            size = length != Integer.MAX_VALUE ? length : size * 2;
+        }
+    }
+
+    private static int recordLength(ByteBuffer buffer, int start) {
+        int position = start + 16;
+        for (int i = 0; i < 3; i++) {
+            if (position + 2 > buffer.limit()) {
+                return Integer.MAX_VALUE;
+            }
+            position += 2 + (buffer.getShort(position) & 0xFFFF);
+        }
+        return position + 8 - start;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of account snapshot");
+            }
+        }
+    }
+
+    private static PlayerData readRecord(ByteBuffer buffer) {
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        String username = readString(buffer);
+        String password = readString(buffer);
+        String lastIp = readString(buffer);
+        long lastLogin = buffer.getLong();
+        return new PlayerData(uuid, username, password, lastIp, lastLogin);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Value too long for an account snapshot");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Hashes a username case-insensitively with 64-bit FNV-1a. The username is lowercased
+     * with the root locale, the same way lookups compare it.
+     *
+     * @param username The username to hash
+     * @return The hash
+     */
+    static long hashUsername(String username) {
+        String lowerCase = username.toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < lowerCase.length(); i++) {
+            hash ^= lowerCase.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -1,161 +1,721 @@
 package com.rookygod.authlite.data;
 
 import com.rookygod.authlite.AuthLite;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
+import com.rookygod.authlite.config.ConfigManager;
+import com.rookygod.authlite.security.PasswordHasher;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 
 public class DataManager {
 
+    private static final int IMPORT_BATCH_SIZE = 10_000;
+
     private final AuthLite plugin;
-    private final Map<UUID, PlayerData> playerDataMap = new ConcurrentHashMap<>();
-    private final Map<String, UUID> usernameToUuidMap = new ConcurrentHashMap<>();
-    private File playersFile;
-    private FileConfiguration playersConfig;
+    private final Executor asyncExecutor;
+    private final Executor mainExecutor;
+    private volatile State state;
+    private BukkitTask compactionTask;
+    private BukkitTask cacheMaintenanceTask;
+    
+    // Changes made while a reload builds the next state, replayed into it before the swap.
+    // Guarded by "this" and null while no reload runs; a null value records a removal
+    private Map<UUID, PlayerData> reloadChanges;
+    // The state a running reload is building, and the drain its write queue waits for
+    private CompletableFuture<State> pendingReload;
+    private CompletableFuture<Void> pendingDrain;
+    
+    /**
+     * Everything a reload replaces. It is swapped as a whole, so code that reads it once
+     * per operation sees either the old or the new accounts, never a mix of both.
+     */
+    private static final class State {
+        
+        final AccountStore store;
+        final AccountCache cache;
+        final AccountIndex index;
+        final WriteBehindQueue writeQueue;
+        final boolean lazyLoading;
+        
+        State(AccountStore store, AccountCache cache, AccountIndex index, WriteBehindQueue writeQueue, boolean lazyLoading) {
+            this.store = store;
+            this.cache = cache;
+            this.index = index;
+            this.writeQueue = writeQueue;
+            this.lazyLoading = lazyLoading;
+        }
+    }
+    
+    /**
+     * A source of accounts to migrate into a store.
+     */
+    @FunctionalInterface
+    private interface AccountSource {
+        
+        void forEach(Consumer<PlayerData> consumer) throws IOException;
+    }
     
     public DataManager(AuthLite plugin) {
         this.plugin = plugin;
+        this.asyncExecutor = task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+        this.mainExecutor = task -> plugin.getServer().getScheduler().runTask(plugin, task);
         loadData();
     }
     
     public void loadData() {
-        // Create players.yml file if it doesn't exist
-        playersFile = new File(plugin.getDataFolder(), "players.yml");
-        if (!playersFile.exists()) {
+        state = buildState(null, CompletableFuture.completedFuture(null));
+        startTasks();
+    }
+    
+    /**
+     * Opens the configured store and loads a new account state from it.
+     *
+     * @param previous The state being replaced by a reload, or null on startup
+     * @param previousDrained Completes once the write queue of the previous state has drained
+     * @return The new state
+     */
+    private State buildState(State previous, CompletableFuture<?> previousDrained) {
+        ConfigManager config = plugin.getConfigManager();
+        String backend = resolveBackend(config.getStorageBackend());
+        boolean lazyLoading = config.isLazyLoading();
+        
+        // Two stores on the same files would corrupt them, so an unchanged backend keeps its open store
+        boolean reuseStore = previous != null && previous.store.getName().equals(backend);
+        AccountStore store = reuseStore ? previous.store : createStore(backend);
+        if (reuseStore && store instanceof YamlAccountStore yamlStore) {
+            yamlStore.configure(config.isJournalFsync(), config.getCompactionThreshold());
+        }
+        
+        // Without lazy loading every account stays in memory, so the cache is unbounded
+        AccountCache cache = lazyLoading
+                ? new AccountCache(config.getCacheMaxSize(), config.getUnloadDelay() * 1000L)
+                : new AccountCache(0, 0);
+        AccountIndex index = new AccountIndex(previous != null ? previous.index.size() : 1024);
+        
+        try {
+            if (!reuseStore) {
+                store.open();
+            }
+            
+            if (lazyLoading) {
+                // Only index names and UUIDs, accounts are loaded when their player connects
+                store.loadIndex(index::add);
+            } else {
+                // Load player data
+                store.loadAll(playerData -> {
+                    cache.put(playerData);
+                    index.add(playerData.getUuid(), playerData.getUsername());
+                });
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not load accounts from " + store.getName() + " storage", e);
+        }
+        
+        if (lazyLoading) {
+            plugin.getLogger().info("Indexed " + index.size() + " player accounts (loaded on demand)");
+        } else {
+            plugin.getLogger().info("Loaded " + cache.size() + " player data entries");
+        }
+        
+        WriteBehindQueue writeQueue = new WriteBehindQueue(store, plugin.getLogger(),
+                config.getWriteBatchSize(), config.getWriteFlushInterval(), previousDrained);
+        State next = new State(store, cache, index, writeQueue, lazyLoading);
+        
+        // Fill a new store that starts out empty, from the previous backend or from a legacy players.yml
+        if (index.size() == 0 && !reuseStore) {
+            File legacyFile = new File(plugin.getDataFolder(), "players.yml");
             try {
-                playersFile.getParentFile().mkdirs();
-                playersFile.createNewFile();
+                if (previous != null) {
+                    plugin.getLogger().info("Copying accounts from " + previous.store.getName() + " storage into " + backend + " storage...");
+                    plugin.getLogger().info("Copied " + migrateAccounts(next, previous.store::loadAll) + " accounts");
+                } else if (!(store instanceof YamlAccountStore) && legacyFile.length() > 0) {
+                    plugin.getLogger().info("Importing accounts from players.yml into " + backend + " storage...");
+                    plugin.getLogger().info("Imported " + importAccounts(next, legacyFile) + " accounts from players.yml");
+                }
             } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Could not create players.yml file", e);
+                plugin.getLogger().log(Level.SEVERE, "Could not migrate accounts into " + backend + " storage", e);
             }
         }
         
-        // Load players.yml
-        playersConfig = YamlConfiguration.loadConfiguration(playersFile);
-        
-        // Load player data
-        ConfigurationSection playersSection = playersConfig.getConfigurationSection("players");
-        if (playersSection != null) {
-            for (String uuidString : playersSection.getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidString);
-                    ConfigurationSection playerSection = playersSection.getConfigurationSection(uuidString);
-                    
-                    if (playerSection != null) {
-                        String username = playerSection.getString("username");
-                        String password = playerSection.getString("password");
-                        String lastIp = playerSection.getString("last-ip", "");
-                        long lastLogin = playerSection.getLong("last-login", 0);
-                        
-                        PlayerData playerData = new PlayerData(uuid, username, password, lastIp, lastLogin);
-                        playerDataMap.put(uuid, playerData);
-                        usernameToUuidMap.put(username.toLowerCase(), uuid);
-                    }
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid UUID in players.yml: " + uuidString);
-                }
+        return next;
+    }
+    
+    /**
+     * Resolves storage.backend in config.yml to a supported backend name.
+     *
+     * @param backend The configured backend
+     * @return "sqlite" or "yaml"
+     */
+    private String resolveBackend(String backend) {
+        switch (backend.toLowerCase()) {
+            case "sqlite", "yaml" -> {
+                return backend.toLowerCase();
+            }
+            default -> {
+                plugin.getLogger().warning("Unknown storage backend '" + backend + "', using yaml");
+                return "yaml";
             }
         }
+    }
+    
+    /**
+     * Creates the account store for a backend.
+     *
+     * @param backend The backend name, as returned by {@link #resolveBackend(String)}
+     * @return The account store
+     */
+    private AccountStore createStore(String backend) {
+        ConfigManager config = plugin.getConfigManager();
         
-        plugin.getLogger().info("Loaded " + playerDataMap.size() + " player data entries");
+        if (backend.equals("sqlite")) {
+            return new SqliteAccountStore(plugin.getDataFolder(), config.getSqlPoolSize(), plugin.getLogger());
+        }
+        return new YamlAccountStore(plugin.getDataFolder(), config.isJournalFsync(),
+                config.getCompactionThreshold(), plugin.getLogger());
     }
     
-    public void saveAllData() {
-        // Clear existing data
-        playersConfig.set("players", null);
+    private void startTasks() {
+        startCompactionTask();
+        if (state.lazyLoading) {
+            startCacheMaintenanceTask();
+        }
+    }
+    
+    private void stopTasks() {
+        if (compactionTask != null) {
+            compactionTask.cancel();
+            compactionTask = null;
+        }
         
-        // Save all player data
-        for (Map.Entry<UUID, PlayerData> entry : playerDataMap.entrySet()) {
-            UUID uuid = entry.getKey();
-            PlayerData playerData = entry.getValue();
-            
-            String path = "players." + uuid.toString();
-            playersConfig.set(path + ".username", playerData.getUsername());
-            playersConfig.set(path + ".password", playerData.getPassword());
-            playersConfig.set(path + ".last-ip", playerData.getLastIp());
-            playersConfig.set(path + ".last-login", playerData.getLastLogin());
+        if (cacheMaintenanceTask != null) {
+            cacheMaintenanceTask.cancel();
+            cacheMaintenanceTask = null;
+        }
+    }
+    
+    /**
+     * Periodically lets the store compact itself, for example by folding the YAML
+     * journal into a fresh players.yml snapshot.
+     */
+    private void startCompactionTask() {
+        int interval = plugin.getConfigManager().getCompactionInterval();
+        if (interval <= 0) {
+            return;
         }
         
-        // Save to file
+        compactionTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            if (state.store.needsCompaction()) {
+                compact();
+            }
+        }, interval * 20L, interval * 20L); // Convert seconds to ticks
+    }
+    
+    /**
+     * Evicts cached accounts that expired, and sheds a quarter of the unpinned ones
+     * whenever heap usage goes above storage.cache.heap-threshold.
+     */
+    private void startCacheMaintenanceTask() {
+        cacheMaintenanceTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            AccountCache cache = state.cache;
+            cache.evictExpired();
+            
+            Runtime runtime = Runtime.getRuntime();
+            double heapUsage = (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+            if (heapUsage > plugin.getConfigManager().getCacheHeapThreshold()) {
+                cache.evictFraction(0.25);
+            }
+        }, 20L * 30, 20L * 30); // Check every 30 seconds
+    }
+    
+    public void compact() {
+        compact(state.store);
+    }
+    
+    private void compact(AccountStore store) {
         try {
-            playersConfig.save(playersFile);
+            store.compact();
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save players.yml file", e);
+            plugin.getLogger().log(Level.SEVERE, "Could not compact " + store.getName() + " storage", e);
         }
     }
     
-    public void savePlayerData(PlayerData playerData) {
-        UUID uuid = playerData.getUuid();
+    public void saveAllData() {
+        compact();
+    }
+    
+    /**
+     * Drains pending writes, compacts the store and closes it. Called when the plugin
+     * is disabled.
+     */
+    public void shutdown() {
+        stopTasks();
         
-        String path = "players." + uuid.toString();
-        playersConfig.set(path + ".username", playerData.getUsername());
-        playersConfig.set(path + ".password", playerData.getPassword());
-        playersConfig.set(path + ".last-ip", playerData.getLastIp());
-        playersConfig.set(path + ".last-login", playerData.getLastLogin());
+        State current = state;
+        current.writeQueue.close();
+        compact(current.store);
+        
+        // Discard the state of a reload that has not been swapped in yet
+        if (pendingReload != null) {
+            pendingDrain.complete(null);
+            State next = pendingReload.exceptionally(error -> null).join();
+            if (next != null) {
+                next.writeQueue.close();
+                if (next.store != current.store) {
+                    next.store.close();
+                }
+            }
+            pendingReload = null;
+        }
+        
+        current.store.close();
+    }
+    
+    /**
+     * Converts the snapshot of the YAML backend between players.yml and players.dat
+     * off the main thread.
+     *
+     * @param toBinary True to rewrite players.dat from players.yml, false for the reverse
+     * @return A future completed with the number of accounts converted
+     */
+    public CompletableFuture<Integer> convertSnapshot(boolean toBinary) {
+        if (!(state.store instanceof YamlAccountStore yamlStore)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Only the yaml backend keeps snapshots"));
+        }
+        
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return toBinary ? yamlStore.convertToBinary() : yamlStore.convertToYaml();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+    
+    /**
+     * Imports the accounts of a players.yml file into the current store off the main thread.
+     *
+     * @param file The file to import
+     * @return A future completed with the number of accounts imported
+     */
+    public CompletableFuture<Integer> importLegacyAccounts(File file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                int imported = importAccounts(state, file);
+                
+                // Imported accounts may have plaintext passwords
+                if (imported > 0) {
+                    plugin.getPasswordMigrator().restart();
+                }
+                return imported;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+    
+    /**
+     * Streams the accounts of a players.yml file into the store of a state in batches.
+     * Accounts that are already registered are kept as they are.
+     *
+     * @param target The state to import into
+     * @param file The file to import
+     * @return The number of accounts imported
+     * @throws IOException If the file cannot be read or the accounts cannot be stored
+     */
+    private int importAccounts(State target, File file) throws IOException {
+        PlayersYamlReader reader = new PlayersYamlReader(plugin.getLogger());
+        return migrateAccounts(target, consumer -> reader.read(file, consumer));
+    }
+    
+    /**
+     * Copies accounts into the store of a state in batches. Accounts that are already
+     * registered are kept as they are.
+     *
+     * @param target The state to copy into
+     * @param source The accounts to copy
+     * @return The number of accounts copied
+     * @throws IOException If the accounts cannot be read or stored
+     */
+    private int migrateAccounts(State target, AccountSource source) throws IOException {
+        Map<UUID, PlayerData> batch = new HashMap<>();
+        int[] migrated = {0};
         
-        // Save to file
         try {
-            playersConfig.save(playersFile);
+            source.forEach(playerData -> {
+                if (playerData.getUsername() == null || target.index.contains(playerData.getUuid())) {
+                    return;
+                }
+                
+                batch.put(playerData.getUuid(), playerData);
+                if (batch.size() >= IMPORT_BATCH_SIZE) {
+                    migrated[0] += storeImported(target, batch);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        migrated[0] += storeImported(target, batch);
+        
+        return migrated[0];
+    }
+    
+    private int storeImported(State target, Map<UUID, PlayerData> batch) {
+        try {
+            target.store.saveAll(batch);
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save players.yml file", e);
+            throw new UncheckedIOException(e);
+        }
+        
+        for (PlayerData playerData : batch.values()) {
+            if (!target.lazyLoading) {
+                // The store may keep the instance it was given
+                target.cache.put(playerData.copy());
+            }
+            target.index.add(playerData.getUuid(), playerData.getUsername());
+            
+            if (target == state) {
+                recordChange(playerData.getUuid(), playerData);
+            }
+        }
+        
+        int stored = batch.size();
+        batch.clear();
+        return stored;
+    }
+    
+    public void savePlayerData(PlayerData playerData) {
+        state.writeQueue.enqueuePut(playerData);
+        recordChange(playerData.getUuid(), playerData);
+    }
+    
+    /**
+     * Remembers a change made while a reload is running, so it can be replayed into the
+     * new state.
+     *
+     * @param uuid The UUID of the account
+     * @param playerData The new data of the account, or null if it was removed
+     */
+    private void recordChange(UUID uuid, PlayerData playerData) {
+        synchronized (this) {
+            if (reloadChanges != null) {
+                reloadChanges.put(uuid, playerData != null ? playerData.copy() : null);
+            }
         }
     }
     
-    public void reloadData() {
-        // Save current data
-        saveAllData();
+    /**
+     * Reloads the accounts without blocking the main thread. The next state is loaded
+     * from storage off the main thread while every operation keeps using the current
+     * one, then swapped in on the main thread together with the changes made meanwhile.
+     *
+     * @return A future completed on the main thread once the new state is in use
+     */
+    public CompletableFuture<Void> reloadData() {
+        if (pendingReload != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A reload is already running"));
+        }
         
-        // Clear maps
-        playerDataMap.clear();
-        usernameToUuidMap.clear();
+        State previous = state;
+        synchronized (this) {
+            reloadChanges = new HashMap<>();
+        }
         
-        // Reload data
-        loadData();
+        // The new write queue holds back its writes until the old one has drained
+        CompletableFuture<Void> previousDrained = new CompletableFuture<>();
+        CompletableFuture<State> reload = CompletableFuture.supplyAsync(() -> buildState(previous, previousDrained), asyncExecutor);
+        pendingReload = reload;
+        pendingDrain = previousDrained;
+        
+        return reload.handleAsync((next, error) -> {
+            // The plugin was disabled meanwhile and has discarded this reload
+            if (pendingReload != reload) {
+                throw new CancellationException("The plugin was disabled");
+            }
+            pendingReload = null;
+            pendingDrain = null;
+            
+            if (error != null) {
+                synchronized (this) {
+                    reloadChanges = null;
+                }
+                throw new CompletionException(error);
+            }
+            
+            swapState(previous, next, previousDrained);
+            return null;
+        }, mainExecutor);
+    }
+    
+    /**
+     * Puts a state built by a reload in use. Called on the main thread.
+     *
+     * @param previous The state in use when the reload started
+     * @param next The new state
+     * @param previousDrained Completed once the write queue of the previous state has drained
+     */
+    private void swapState(State previous, State next, CompletableFuture<Void> previousDrained) {
+        Map<UUID, PlayerData> changes;
+        synchronized (this) {
+            changes = reloadChanges;
+            reloadChanges = null;
+        }
+        
+        // Changes reached the previous store already, a new store still needs them
+        boolean newStore = next.store != previous.store;
+        for (Map.Entry<UUID, PlayerData> change : changes.entrySet()) {
+            UUID uuid = change.getKey();
+            PlayerData playerData = change.getValue();
+            
+            if (playerData == null) {
+                next.cache.remove(uuid);
+                next.index.remove(uuid);
+                if (newStore) {
+                    next.writeQueue.enqueueDelete(uuid);
+                }
+            } else {
+                if (!next.lazyLoading || next.cache.contains(uuid)) {
+                    next.cache.put(playerData);
+                }
+                next.index.add(uuid, playerData.getUsername());
+                if (newStore) {
+                    next.writeQueue.enqueuePut(playerData);
+                }
+            }
+        }
+        
+        // Online players keep their live accounts, including unsaved login attempts
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            UUID uuid = player.getUniqueId();
+            PlayerData playerData = previous.cache.get(uuid);
+            if (playerData != null && next.index.contains(uuid)) {
+                next.cache.put(playerData);
+                next.cache.pin(uuid);
+            }
+        }
+        
+        stopTasks();
+        state = next;
+        startTasks();
+        
+        // Drain and release the previous state off the main thread
+        asyncExecutor.execute(() -> {
+            previous.writeQueue.close();
+            previousDrained.complete(null);
+            
+            if (newStore) {
+                compact(previous.store);
+                previous.store.close();
+            }
+        });
+    }
+    
+    public AccountStore getStore() {
+        return state.store;
+    }
+    
+    public WriteBehindQueue getWriteQueue() {
+        return state.writeQueue;
+    }
+    
+    /**
+     * Gets the number of accounts currently held in memory.
+     *
+     * @return The number of loaded accounts
+     */
+    public int getLoadedCount() {
+        return state.cache.size();
+    }
+    
+    public AccountCache getCache() {
+        return state.cache;
+    }
+    
+    /**
+     * Gets the number of registered accounts, whether loaded or not.
+     *
+     * @return The number of registered accounts
+     */
+    public int getRegisteredCount() {
+        return state.index.size();
+    }
+    
+    /**
+     * Estimates the heap used by the index of registered UUIDs and usernames.
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateIndexMemory() {
+        return state.index.estimateMemory();
+    }
+    
+    public boolean isLazyLoading() {
+        return state.lazyLoading;
     }
     
     public boolean isRegistered(UUID uuid) {
-        return playerDataMap.containsKey(uuid);
+        return state.index.contains(uuid);
     }
     
     public boolean isRegistered(String username) {
-        return usernameToUuidMap.containsKey(username.toLowerCase());
+        return state.index.contains(username);
     }
     
+    /**
+     * Gets the data of a registered player. With lazy loading, an account that is not
+     * cached is read from storage on the calling thread; use
+     * {@link #loadPlayerData(UUID)} to avoid blocking.
+     *
+     * @param uuid The UUID of the player
+     * @return The player data, or null if the player is not registered
+     */
     public PlayerData getPlayerData(UUID uuid) {
-        return playerDataMap.get(uuid);
+        State state = this.state;
+        PlayerData playerData = state.cache.get(uuid);
+        if (playerData != null || !state.lazyLoading || !state.index.contains(uuid)) {
+            return playerData;
+        }
+        
+        return loadThrough(state, uuid);
     }
     
     public PlayerData getPlayerData(String username) {
-        UUID uuid = usernameToUuidMap.get(username.toLowerCase());
-        return uuid != null ? playerDataMap.get(uuid) : null;
+        UUID uuid = state.index.get(username);
+        return uuid != null ? getPlayerData(uuid) : null;
     }
     
+    /**
+     * Gets the data of a player without blocking the calling thread. Accounts that are
+     * not cached are read from storage asynchronously.
+     *
+     * @param uuid The UUID of the player
+     * @return A future completed with the player data, or null if the player is not registered
+     */
+    public CompletableFuture<PlayerData> loadPlayerData(UUID uuid) {
+        State state = this.state;
+        PlayerData playerData = state.cache.get(uuid);
+        if (playerData != null || !state.lazyLoading || !state.index.contains(uuid)) {
+            return CompletableFuture.completedFuture(playerData);
+        }
+        
+        return CompletableFuture.supplyAsync(() -> loadThrough(state, uuid), asyncExecutor);
+    }
+    
+    public CompletableFuture<PlayerData> loadPlayerData(String username) {
+        UUID uuid = state.index.get(username);
+        return uuid != null ? loadPlayerData(uuid) : CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Loads the account of a connecting player so it is cached before they join.
+     * Called from AsyncPlayerPreLoginEvent, off the main thread.
+     *
+     * @param uuid The UUID of the connecting player
+     */
+    public void preparePlayer(UUID uuid) {
+        State state = this.state;
+        if (state.lazyLoading && state.index.contains(uuid) && !state.cache.contains(uuid)) {
+            loadThrough(state, uuid);
+        }
+    }
+    
+    /**
+     * Keeps the account of an online player cached until {@link #unpinPlayer(UUID)}.
+     *
+     * @param uuid The UUID of the player
+     */
+    public void pinPlayer(UUID uuid) {
+        State state = this.state;
+        if (state.index.contains(uuid) && !state.cache.pin(uuid)) {
+            // The account was evicted between pre-login and join
+            getPlayerData(uuid);
+            state.cache.pin(uuid);
+        }
+    }
+    
+    /**
+     * Lets the account of a player who left expire after storage.unload-delay seconds.
+     *
+     * @param uuid The UUID of the player
+     */
+    public void unpinPlayer(UUID uuid) {
+        state.cache.unpin(uuid);
+    }
+    
+    private PlayerData loadThrough(State state, UUID uuid) {
+        // An evicted account may have a write the store has not seen yet
+        PlayerData[] pending = new PlayerData[1];
+        if (state.writeQueue.getPending(uuid, pending)) {
+            return pending[0] != null ? state.cache.putIfAbsent(pending[0]) : null;
+        }
+        
+        PlayerData loaded;
+        try {
+            loaded = state.store.load(uuid);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not load account " + uuid + " from " + state.store.getName() + " storage", e);
+            return null;
+        }
+        
+        return loaded != null ? state.cache.putIfAbsent(loaded) : null;
+    }
+    
+    /**
+     * Registers a player, hashing the password on the calling thread. Use
+     * {@link #registerPlayerAsync(Player, String)} on the main thread.
+     *
+     * @param player The player to register
+     * @param password The password to register with
+     * @return True if the player was registered, false if they are already registered
+     */
     public boolean registerPlayer(Player player, String password) {
+        return registerHashed(player, plugin.getPasswordManager().hashNow(password));
+    }
+    
+    /**
+     * Registers a player, hashing the password on the hashing pool.
+     *
+     * @param player The player to register
+     * @param password The password to register with
+     * @return A future completed on the main thread with true if the player was
+     *         registered, false if they registered meanwhile or left
+     */
+    public CompletableFuture<Boolean> registerPlayerAsync(Player player, String password) {
+        return onMainThread(plugin.getPasswordManager().hash(password),
+                hash -> player.isOnline() && registerHashed(player, hash));
+    }
+    
+    private boolean registerHashed(Player player, String passwordHash) {
+        State state = this.state;
         UUID uuid = player.getUniqueId();
         String username = player.getName();
         
         // Check if player is already registered
-        if (isRegistered(uuid)) {
+        if (state.index.contains(uuid)) {
             return false;
         }
         
         // Create new player data
-        PlayerData playerData = new PlayerData(uuid, username, password);
+        PlayerData playerData = new PlayerData(uuid, username, passwordHash);
         playerData.setLastIp(player.getAddress().getAddress().getHostAddress());
         playerData.updateLastLogin();
         
         // Add to maps
-        playerDataMap.put(uuid, playerData);
-        usernameToUuidMap.put(username.toLowerCase(), uuid);
+        state.cache.put(playerData);
+        state.cache.pin(uuid);
+        state.index.add(uuid, username);
         
         // Save to file
         savePlayerData(playerData);
@@ -163,18 +723,46 @@ public class DataManager {
         return true;
     }
     
+    /**
+     * Registers a possibly offline player, hashing the password on the calling thread.
+     * Use {@link #registerPlayerAsync(String, UUID, String)} on the main thread.
+     *
+     * @param username The username of the player
+     * @param uuid The UUID of the player
+     * @param password The password to register with
+     * @return True if the player was registered, false if they are already registered
+     */
     public boolean registerPlayer(String username, UUID uuid, String password) {
+        return registerHashed(username, uuid, plugin.getPasswordManager().hashNow(password));
+    }
+    
+    /**
+     * Registers a possibly offline player, hashing the password on the hashing pool.
+     *
+     * @param username The username of the player
+     * @param uuid The UUID of the player
+     * @param password The password to register with
+     * @return A future completed on the main thread with true if the player was
+     *         registered, false if they registered meanwhile
+     */
+    public CompletableFuture<Boolean> registerPlayerAsync(String username, UUID uuid, String password) {
+        return onMainThread(plugin.getPasswordManager().hash(password), hash -> registerHashed(username, uuid, hash));
+    }
+    
+    private boolean registerHashed(String username, UUID uuid, String passwordHash) {
+        State state = this.state;
+        
         // Check if player is already registered
-        if (isRegistered(uuid)) {
+        if (state.index.contains(uuid)) {
             return false;
         }
         
         // Create new player data
-        PlayerData playerData = new PlayerData(uuid, username, password);
+        PlayerData playerData = new PlayerData(uuid, username, passwordHash);
         
         // Add to maps
-        playerDataMap.put(uuid, playerData);
-        usernameToUuidMap.put(username.toLowerCase(), uuid);
+        state.cache.put(playerData);
+        state.index.add(uuid, username);
         
         // Save to file
         savePlayerData(playerData);
@@ -183,32 +771,50 @@ public class DataManager {
     }
     
     public boolean unregisterPlayer(UUID uuid) {
+        State state = this.state;
+        
         // Check if player is registered
-        if (!isRegistered(uuid)) {
+        if (!state.index.contains(uuid)) {
             return false;
         }
         
-        // Get player data
-        PlayerData playerData = getPlayerData(uuid);
-        
         // Remove from maps
-        playerDataMap.remove(uuid);
-        usernameToUuidMap.remove(playerData.getUsername().toLowerCase());
+        state.cache.remove(uuid);
+        state.index.remove(uuid);
         
         // Remove from file
-        playersConfig.set("players." + uuid.toString(), null);
-        
-        // Save to file
-        try {
-            playersConfig.save(playersFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save players.yml file", e);
-        }
+        state.writeQueue.enqueueDelete(uuid);
+        recordChange(uuid, null);
         
         return true;
     }
     
+    /**
+     * Changes the password of a player, hashing it on the calling thread. Use
+     * {@link #changePasswordAsync(UUID, String)} on the main thread.
+     *
+     * @param uuid The UUID of the player
+     * @param newPassword The new password
+     * @return True if the password was changed, false if the player is not registered
+     */
     public boolean changePassword(UUID uuid, String newPassword) {
+        return changePasswordHashed(uuid, plugin.getPasswordManager().hashNow(newPassword));
+    }
+    
+    /**
+     * Changes the password of a player, hashing it on the hashing pool. The account
+     * of an offline player should already be loaded, see {@link #loadPlayerData(UUID)}.
+     *
+     * @param uuid The UUID of the player
+     * @param newPassword The new password
+     * @return A future completed on the main thread with true if the password was
+     *         changed, false if the player is not registered
+     */
+    public CompletableFuture<Boolean> changePasswordAsync(UUID uuid, String newPassword) {
+        return onMainThread(plugin.getPasswordManager().hash(newPassword), hash -> changePasswordHashed(uuid, hash));
+    }
+    
+    private boolean changePasswordHashed(UUID uuid, String passwordHash) {
         // Check if player is registered
         if (!isRegistered(uuid)) {
             return false;
@@ -218,7 +824,7 @@ public class DataManager {
         PlayerData playerData = getPlayerData(uuid);
         
         // Change password
-        playerData.setPassword(newPassword);
+        playerData.setPassword(passwordHash);
         
         // Save to file
         savePlayerData(playerData);
@@ -226,6 +832,14 @@ public class DataManager {
         return true;
     }
     
+    /**
+     * Checks the password of a player on the calling thread and records the outcome.
+     * Use {@link #authenticateAsync(Player, String)} on the main thread.
+     *
+     * @param player The player to authenticate
+     * @param password The password to check
+     * @return True if the password is correct
+     */
     public boolean authenticate(Player player, String password) {
         UUID uuid = player.getUniqueId();
         
@@ -236,24 +850,127 @@ public class DataManager {
         
         // Get player data
         PlayerData playerData = getPlayerData(uuid);
+        String stored = playerData.getPassword();
         
+        return applyAuthentication(player, playerData, password, stored,
+                plugin.getPasswordManager().verifyNow(password, stored));
+    }
+    
+    /**
+     * Checks the password of a player on the hashing pool, then records the outcome on
+     * the main thread: a correct password updates the last login and IP. Wrong passwords
+     * are counted by the caller through the lockout manager.
+     *
+     * @param player The player to authenticate
+     * @param password The password to check
+     * @return A future completed on the main thread with true if the password is
+     *         correct, false if it is wrong, the player is not registered or left
+     */
+    public CompletableFuture<Boolean> authenticateAsync(Player player, String password) {
+        PlayerData playerData = getPlayerData(player.getUniqueId());
+        if (playerData == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        String stored = playerData.getPassword();
+        return onMainThread(plugin.getPasswordManager().verify(password, stored),
+                correct -> player.isOnline() && applyAuthentication(player, playerData, password, stored, correct));
+    }
+    
+    private boolean applyAuthentication(Player player, PlayerData playerData, String password, String stored, boolean correct) {
         // Check password
-        if (playerData.getPassword().equals(password)) {
+        if (correct) {
             // Update last login and IP
             playerData.setLastIp(player.getAddress().getAddress().getHostAddress());
             playerData.updateLastLogin();
-            playerData.resetLoginAttempts();
             
             // Save to file
             savePlayerData(playerData);
             
+            // Upgrade plaintext passwords and hashes of a different cost
+            if (plugin.getPasswordManager().needsRehash(stored)) {
+                rehash(playerData, password, stored);
+            }
+            
             return true;
-        } else {
-            // Increment login attempts
-            playerData.incrementLoginAttempts();
+        }
+        
+        // Failures are counted by the lockout manager
+        return false;
+    }
+    
+    private void rehash(PlayerData playerData, String password, String previous) {
+        // A busy pool just leaves the upgrade to the next login
+        plugin.getPasswordManager().hash(password).thenAcceptAsync(hash -> {
+            // Keep a password that was changed meanwhile
+            if (previous.equals(playerData.getPassword())) {
+                playerData.setPassword(hash);
+                savePlayerData(playerData);
+            }
+        }, mainExecutor);
+    }
+    
+    /**
+     * Hashes the password of an account that is still stored as plaintext. The account
+     * is loaded and hashed off the main thread and updated on the main thread.
+     *
+     * @param uuid The UUID of the account
+     * @return A future completed on the main thread with true if the password was hashed,
+     *         false if it was hashed already, changed meanwhile or the account is gone
+     */
+    public CompletableFuture<Boolean> upgradePassword(UUID uuid) {
+        return loadPlayerData(uuid).thenCompose(playerData -> {
+            if (playerData == null || PasswordHasher.isHashed(playerData.getPassword())) {
+                return CompletableFuture.completedFuture(false);
+            }
             
-            return false;
+            // A plaintext password is the password itself
+            String plaintext = playerData.getPassword();
+            return onMainThread(plugin.getPasswordManager().hash(plaintext), hash -> {
+                // Only update the live account, and keep a password that was changed meanwhile
+                PlayerData current = state.cache.get(uuid);
+                if (current == null || !plaintext.equals(current.getPassword())) {
+                    return false;
+                }
+                
+                current.setPassword(hash);
+                savePlayerData(current);
+                return true;
+            });
+        });
+    }
+    
+    /**
+     * Passes every registered account to a consumer: from memory without lazy loading,
+     * otherwise streamed from the store. Called off the main thread; the accounts must
+     * not be modified.
+     *
+     * @param consumer The consumer of the accounts
+     * @throws IOException If the store cannot be read
+     */
+    public void forEachAccount(Consumer<PlayerData> consumer) throws IOException {
+        State state = this.state;
+        if (state.lazyLoading) {
+            state.store.loadAll(consumer);
+        } else {
+            state.cache.forEach(consumer);
         }
     }
+    
+    /**
+     * Continues a hashing task on the main thread, whether it succeeded or failed.
+     *
+     * @param task The hashing task
+     * @param then The continuation, run on the main thread with the result of the task
+     * @return A future completed on the main thread with the result of the continuation
+     */
+    private <T, R> CompletableFuture<R> onMainThread(CompletableFuture<T> task, Function<T, R> then) {
+        return task.handleAsync((result, error) -> {
+            if (error != null) {
+                throw error instanceof CompletionException completionException
+                        ? completionException : new CompletionException(error);
+            }
+            return then.apply(result);
+        }, mainExecutor);
+    }
 }
-
@@ -1,37 +1,97 @@
 package com.rookygod.authlite.data;
 
+import com.rookygod.authlite.utils.AddressUtils;
+
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Account of a registered player.
+ * <p>
+ * Accounts of every registered player can be held in memory at once, so the fields are
+ * stored compactly: the UUID as two longs, the password as UTF-8 bytes and the last IP
+ * as a packed int for IPv4 or raw bytes for IPv6. The username is only held here; the
+ * username index of {@link DataManager} keeps packed copies in primitive arrays.
+ */
 public class PlayerData {
 
-    private final UUID uuid;
+    // Object header, fields and padding of an instance with compressed references
+    private static final int SHALLOW_SIZE = 64;
+
+    private static final byte IP_NONE = 0;
+    private static final byte IP_V4 = 1;
+    private static final byte IP_V6 = 2;
+    private static final byte IP_TEXT = 3;
+
+    private final long uuidMost;
+    private final long uuidLeast;
     private final String username;
-    private String password;
-    private String lastIp;
+    private byte[] password;
     private long lastLogin;
     private int loginAttempts;
+    // The last IP is lastIpv4 for IP_V4, otherwise the address or UTF-8 text in lastIpBytes
+    private int lastIpv4;
+    private byte lastIpType;
+    private byte[] lastIpBytes;
     
     public PlayerData(UUID uuid, String username, String password) {
-        this.uuid = uuid;
-        this.username = username;
-        this.password = password;
-        this.lastIp = "";
-        this.lastLogin = 0;
-        this.loginAttempts = 0;
+        this(uuid, username, password, "", 0);
     }
     
     public PlayerData(UUID uuid, String username, String password, String lastIp, long lastLogin) {
-        this.uuid = uuid;
+        this.uuidMost = uuid.getMostSignificantBits();
+        this.uuidLeast = uuid.getLeastSignificantBits();
         this.username = username;
-        this.password = password;
-        this.lastIp = lastIp;
+        setPassword(password);
+        setLastIp(lastIp);
         this.lastLogin = lastLogin;
         this.loginAttempts = 0;
     }
     
+    /**
+     * Creates a detached copy of the persistent fields, safe to hand to another thread.
+     *
+     * @return A copy of this player data
+     */
+    public PlayerData copy() {
+        return new PlayerData(this);
+    }
+    
+    private PlayerData(PlayerData other) {
+        // The arrays are replaced, never modified, so they can be shared
+        this.uuidMost = other.uuidMost;
+        this.uuidLeast = other.uuidLeast;
+        this.username = other.username;
+        this.password = other.password;
+        this.lastLogin = other.lastLogin;
+        this.lastIpv4 = other.lastIpv4;
+        this.lastIpType = other.lastIpType;
+        this.lastIpBytes = other.lastIpBytes;
+    }
+    
+    /**
+     * Estimates the heap used by this account, including its username and arrays.
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateSize() {
+        // A Latin-1 username is a String plus a byte array of its length
+        long usernameSize = username != null ? 24 + arraySize(username.length()) : 0;
+        return SHALLOW_SIZE + usernameSize + arraySize(password) + arraySize(lastIpBytes);
+    }
+    
+    private static long arraySize(byte[] array) {
+        return array != null ? arraySize(array.length) : 0;
+    }
+    
+    private static long arraySize(int length) {
+        // Array header plus contents, padded to 8 bytes
+        return (16 + length + 7) & ~7L;
+    }
+    
     public UUID getUuid() {
-        return uuid;
+        return new UUID(uuidMost, uuidLeast);
     }
     
     public String getUsername() {
@@ -39,19 +99,41 @@ public class PlayerData {
     }
     
     public String getPassword() {
-        return password;
+        return password != null ? new String(password, StandardCharsets.UTF_8) : null;
     }
     
     public void setPassword(String password) {
-        this.password = password;
+        this.password = password != null ? password.getBytes(StandardCharsets.UTF_8) : null;
     }
     
     public String getLastIp() {
-        return lastIp;
+        return switch (lastIpType) {
+            case IP_V4 -> AddressUtils.format(AddressUtils.fromInt(lastIpv4));
+            case IP_V6 -> AddressUtils.format(lastIpBytes);
+            case IP_TEXT -> new String(lastIpBytes, StandardCharsets.UTF_8);
+            default -> "";
+        };
     }
     
     public void setLastIp(String lastIp) {
-        this.lastIp = lastIp;
+        lastIpBytes = null;
+        if (lastIp == null || lastIp.isEmpty()) {
+            lastIpType = IP_NONE;
+            return;
+        }
+        
+        // Anything that is not an address, such as a zone-scoped IPv6 address, is kept as text
+        byte[] address = AddressUtils.parse(lastIp);
+        if (address == null) {
+            lastIpType = IP_TEXT;
+            lastIpBytes = lastIp.getBytes(StandardCharsets.UTF_8);
+        } else if (address.length == 4) {
+            lastIpType = IP_V4;
+            lastIpv4 = AddressUtils.toInt(address);
+        } else {
+            lastIpType = IP_V6;
+            lastIpBytes = address;
+        }
     }
     
     public long getLastLogin() {
@@ -0,0 +1,474 @@
+package com.rookygod.authlite.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Streaming reader for the players section of players.yml.
+ * <p>
+ * Instead of building a {@code YamlConfiguration} of the whole file, lines are read one
+ * at a time and split into chunks of whole entries, which are parsed in parallel on a
+ * fork-join pool. Accounts are passed to the consumer in file order, on the calling
+ * thread, and at most a few chunks are held in memory at once.
+ * <p>
+ * Only the subset of YAML that Bukkit writes for account entries is understood: block
+ * mappings with plain, single-quoted or double-quoted scalars. Anything else fails with
+ * an {@link IOException}, so callers can fall back to a full YAML parser.
+ */
+public class PlayersYamlReader {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final int INVALID_SAMPLES = 5;
+
+    private final Logger logger;
+
+    /**
+     * Outcome of a read.
+     */
+    public static final class Result {
+
+        private int accountCount;
+        private int invalidCount;
+        private final List<String> invalidSamples = new ArrayList<>();
+
+        public int getAccountCount() {
+            return accountCount;
+        }
+
+        public int getInvalidCount() {
+            return invalidCount;
+        }
+    }
+
+    private static final class Chunk {
+
+        final List<String> lines = new ArrayList<>();
+        final List<Integer> entryStarts = new ArrayList<>();
+    }
+
+    private static final class ParsedChunk {
+
+        final List<PlayerData> accounts = new ArrayList<>();
+        final List<String> invalid = new ArrayList<>();
+    }
+
+    public PlayersYamlReader(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Reads every account of a players.yml file, logging progress for large files and a
+     * single summary of entries with invalid UUIDs.
+     *
+     * @param file The file to read
+     * @param consumer The consumer receiving each account
+     * @return The number of accounts read and entries skipped
+     * @throws IOException If the file cannot be read or uses unsupported YAML
+     */
+    public Result read(File file, Consumer<PlayerData> consumer) throws IOException {
+        Result result = new Result();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        int maxInFlight = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<ParsedChunk>> inFlight = new ArrayDeque<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!seekPlayersSection(reader)) {
+                return result;
+            }
+
+            int entryIndent = -1;
+            Chunk chunk = new Chunk();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isBlankOrComment(line)) {
+                    continue;
+                }
+
+                int indent = indentOf(line);
+                if (indent == 0) {
+                    // The next top-level key ends the players section
+                    break;
+                }
+                if (entryIndent < 0) {
+                    entryIndent = indent;
+                }
+                if (indent < entryIndent) {
+                    throw new IOException("Unexpected indentation in players section: " + line.trim());
+                }
+
+                if (indent == entryIndent) {
+                    if (chunk.entryStarts.size() == CHUNK_SIZE) {
+                        inFlight.add(pool.submit(parseTask(chunk)));
+                        chunk = new Chunk();
+
+                        if (inFlight.size() >= maxInFlight) {
+                            deliver(inFlight.poll(), consumer, result);
+                        }
+                    }
+                    chunk.entryStarts.add(chunk.lines.size());
+                } else if (chunk.entryStarts.isEmpty()) {
+                    throw new IOException("Unexpected indentation in players section: " + line.trim());
+                }
+                chunk.lines.add(line);
+            }
+
+            if (!chunk.entryStarts.isEmpty()) {
+                inFlight.add(pool.submit(parseTask(chunk)));
+            }
+            while (!inFlight.isEmpty()) {
+                deliver(inFlight.poll(), consumer, result);
+            }
+        } catch (RuntimeException e) {
+            // Parse failures of worker tasks are rethrown by join(), wrapped once or twice
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (result.invalidCount > 0) {
+            logger.warning("Skipped " + result.invalidCount + " entries with invalid UUIDs in " + file.getName()
+                    + " (e.g. " + String.join(", ", result.invalidSamples) + ")");
+        }
+        return result;
+    }
+
+    private void deliver(ForkJoinTask<ParsedChunk> task, Consumer<PlayerData> consumer, Result result) {
+        ParsedChunk parsed = task.join();
+
+        int before = result.accountCount;
+        for (PlayerData playerData : parsed.accounts) {
+            consumer.accept(playerData);
+        }
+        result.accountCount += parsed.accounts.size();
+
+        result.invalidCount += parsed.invalid.size();
+        for (String key : parsed.invalid) {
+            if (result.invalidSamples.size() == INVALID_SAMPLES) {
+                break;
+            }
+            result.invalidSamples.add(key);
+        }
+
+        if (result.accountCount / PROGRESS_INTERVAL > before / PROGRESS_INTERVAL) {
+            logger.info("Read " + result.accountCount + " accounts...");
+        }
+    }
+
+    private static boolean seekPlayersSection(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (isBlankOrComment(line) || indentOf(line) > 0) {
+                continue;
+            }
+
+            String content = stripComment(line).trim();
+            if (content.equals("players:")) {
+                return true;
+            }
+            if (content.startsWith("players:")) {
+                String value = content.substring("players:".length()).trim();
+                if (value.equals("{}") || value.isEmpty()) {
+                    return false;
+                }
+                throw new IOException("Unsupported players section: " + content);
+            }
+        }
+        return false;
+    }
+
+    private static ForkJoinTask<ParsedChunk> parseTask(Chunk chunk) {
+        return ForkJoinTask.adapt(() -> parseChunk(chunk));
+    }
+
+    private static ParsedChunk parseChunk(Chunk chunk) throws IOException {
+        ParsedChunk parsed = new ParsedChunk();
+        for (int i = 0; i < chunk.entryStarts.size(); i++) {
+            int start = chunk.entryStarts.get(i);
+            int end = i + 1 < chunk.entryStarts.size() ? chunk.entryStarts.get(i + 1) : chunk.lines.size();
+            parseEntry(chunk.lines, start, end, parsed);
+        }
+        return parsed;
+    }
+
+    private static void parseEntry(List<String> lines, int start, int end, ParsedChunk parsed) throws IOException {
+        String keyLine = stripComment(lines.get(start)).trim();
+        int colon = findMappingColon(keyLine);
+        if (colon < 0) {
+            throw new IOException("Expected a mapping key in players section: " + keyLine);
+        }
+
+        String key = parseScalar(keyLine.substring(0, colon).trim());
+        String inlineValue = keyLine.substring(colon + 1).trim();
+        if (!inlineValue.isEmpty() || start + 1 == end) {
+            // Not a mapping, which Bukkit skips as well
+            return;
+        }
+
+        String username = null;
+        String password = null;
+        String lastIp = "";
+        long lastLogin = 0;
+
+        int fieldIndent = indentOf(lines.get(start + 1));
+        int i = start + 1;
+        while (i < end) {
+            String line = lines.get(i);
+            if (indentOf(line) != fieldIndent) {
+                throw new IOException("Unexpected indentation in players section: " + line.trim());
+            }
+
+            String content = line.trim();
+            int fieldColon = findMappingColon(content);
+            if (fieldColon < 0) {
+                throw new IOException("Expected a mapping key in players section: " + content);
+            }
+            String field = content.substring(0, fieldColon).trim();
+            StringBuilder value = new StringBuilder(content.substring(fieldColon + 1).trim());
+
+            // Long scalars may be folded onto more deeply indented lines
+            i++;
+            while (i < end && indentOf(lines.get(i)) > fieldIndent) {
+                if (value.isEmpty()) {
+                    throw new IOException("Unsupported nested value for " + field + " in players section");
+                }
+                appendFolded(value, lines.get(i).trim());
+                i++;
+            }
+
+            String scalar = parseScalar(value.toString());
+            switch (field) {
+                case "username" -> username = scalar;
+                case "password" -> password = scalar;
+                case "last-ip" -> lastIp = scalar != null ? scalar : "";
+                case "last-login" -> lastLogin = parseLong(scalar);
+                default -> {
+                    // Unknown fields are ignored, as they were before
+                }
+            }
+        }
+
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(key);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            parsed.invalid.add(key);
+            return;
+        }
+
+        parsed.accounts.add(new PlayerData(uuid, username, password, lastIp, lastLogin));
+    }
+
+    private static void appendFolded(StringBuilder value, String continuation) {
+        int last = value.length() - 1;
+        if (value.charAt(0) == '"' && value.charAt(last) == '\\') {
+            // An escaped line break joins the lines without a space
+            value.setLength(last);
+        } else {
+            value.append(' ');
+        }
+        value.append(continuation);
+    }
+
+    private static String parseScalar(String text) throws IOException {
+        text = stripComment(text).trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+
+        char first = text.charAt(0);
+        if (first == '\'') {
+            return parseSingleQuoted(text);
+        }
+        if (first == '"') {
+            return parseDoubleQuoted(text);
+        }
+        if ("|>&*!{[%@`".indexOf(first) >= 0) {
+            throw new IOException("Unsupported YAML value: " + text);
+        }
+
+        return switch (text) {
+            case "~", "null", "Null", "NULL" -> null;
+            default -> text;
+        };
+    }
+
+    private static String parseSingleQuoted(String text) throws IOException {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < text.length() && text.charAt(i + 1) == '\'') {
+                    builder.append('\'');
+                    i++;
+                } else if (i == text.length() - 1) {
+                    return builder.toString();
+                } else {
+                    break;
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        throw new IOException("Malformed single-quoted value: " + text);
+    }
+
+    private static String parseDoubleQuoted(String text) throws IOException {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                if (i == text.length() - 1) {
+                    return builder.toString();
+                }
+                break;
+            }
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            if (++i >= text.length()) {
+                break;
+            }
+            char escape = text.charAt(i);
+            switch (escape) {
+                case '0' -> builder.append('\0');
+                case 'a' -> builder.append('\u0007');
+                case 'b' -> builder.append('\b');
+                case 't', '\t' -> builder.append('\t');
+                case 'n' -> builder.append('\n');
+                case 'v' -> builder.append('\u000B');
+                case 'f' -> builder.append('\f');
+                case 'r' -> builder.append('\r');
+                case 'e' -> builder.append('\u001B');
+                case ' ' -> builder.append(' ');
+                case '"' -> builder.append('"');
+                case '/' -> builder.append('/');
+                case '\\' -> builder.append('\\');
+                case 'N' -> builder.append('\u0085');
+                case '_' -> builder.append('\u00A0');
+                case 'L' -> builder.append('\u2028');
+                case 'P' -> builder.append('\u2029');
+                case 'x', 'u', 'U' -> {
+                    int digits = escape == 'x' ? 2 : escape == 'u' ? 4 : 8;
+                    if (i + digits >= text.length()) {
+                        throw new IOException("Malformed escape in double-quoted value: " + text);
+                    }
+                    try {
+                        builder.appendCodePoint(Integer.parseInt(text.substring(i + 1, i + 1 + digits), 16));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Malformed escape in double-quoted value: " + text);
+                    }
+                    i += digits;
+                }
+                default -> throw new IOException("Malformed escape in double-quoted value: " + text);
+            }
+        }
+        throw new IOException("Malformed double-quoted value: " + text);
+    }
+
+    private static long parseLong(String scalar) {
+        if (scalar == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(scalar);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the colon that separates a mapping key from its value, skipping quoted keys.
+     */
+    private static int findMappingColon(String content) {
+        int i = 0;
+        if (!content.isEmpty() && (content.charAt(0) == '\'' || content.charAt(0) == '"')) {
+            char quote = content.charAt(0);
+            i = 1;
+            while (i < content.length()) {
+                if (content.charAt(i) == quote) {
+                    if (quote == '\'' && i + 1 < content.length() && content.charAt(i + 1) == '\'') {
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                if (quote == '"' && content.charAt(i) == '\\') {
+                    i++;
+                }
+                i++;
+            }
+        }
+
+        for (; i < content.length(); i++) {
+            if (content.charAt(i) == ':' && (i + 1 == content.length() || content.charAt(i + 1) == ' ')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a trailing comment, which in YAML starts with " #" outside of quotes.
+     */
+    private static String stripComment(String line) {
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote == '"') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                // Quotes only open a scalar at its start
+                if (i == 0 || line.charAt(i - 1) == ' ') {
+                    quote = c;
+                }
+            } else if (c == '#' && (i == 0 || line.charAt(i - 1) == ' ')) {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    private static boolean isBlankOrComment(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != ' ') {
+                // Document markers only appear at the start of a line
+                return c == '#' || (i == 0 && (line.startsWith("---") || line.startsWith("...")));
+            }
+        }
+        return true;
+    }
+
+    private static int indentOf(String line) {
+        int indent = 0;
+        while (indent < line.length() && line.charAt(indent) == ' ') {
+            indent++;
+        }
+        return indent;
+    }
+}
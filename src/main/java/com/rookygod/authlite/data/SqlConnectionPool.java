@@ -0,0 +1,158 @@
+package com.rookygod.authlite.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small fixed-size JDBC connection pool for the embedded SQL backend.
+ * <p>
+ * Connections are opened up front and handed out through {@link #execute(SqlCallback)},
+ * which always returns them to the pool. Broken connections are replaced transparently.
+ */
+public class SqlConnectionPool implements AutoCloseable {
+
+    private static final long BORROW_TIMEOUT_SECONDS = 10;
+
+    private final String url;
+    private final List<String> initStatements;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> connections = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Work performed with a pooled connection.
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface SqlCallback<T> {
+
+        T execute(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Creates a pool and opens all of its connections.
+     *
+     * @param url The JDBC URL
+     * @param size The number of connections
+     * @param initStatements Statements executed on every new connection, such as pragmas
+     * @throws SQLException If a connection cannot be opened
+     */
+    public SqlConnectionPool(String url, int size, List<String> initStatements) throws SQLException {
+        this.url = url;
+        this.initStatements = initStatements;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+
+        for (int i = 0; i < Math.max(1, size); i++) {
+            Connection connection = openConnection();
+            synchronized (connections) {
+                connections.add(connection);
+            }
+            idle.add(connection);
+        }
+    }
+
+    /**
+     * Runs the callback with a pooled connection.
+     *
+     * @param callback The work to perform
+     * @param <T> The result type
+     * @return The result of the callback
+     * @throws SQLException If the pool is exhausted or the callback fails
+     */
+    public <T> T execute(SqlCallback<T> callback) throws SQLException {
+        Connection connection = borrow();
+        try {
+            return callback.execute(connection);
+        } finally {
+            release(connection);
+        }
+    }
+
+    private Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        Connection connection;
+        try {
+            connection = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        if (connection == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+
+        if (connection.isClosed()) {
+            synchronized (connections) {
+                connections.remove(connection);
+            }
+            try {
+                connection = openConnection();
+            } catch (SQLException e) {
+                // Keep the pool at its size so a later borrow can retry
+                idle.add(connection);
+                throw e;
+            }
+            synchronized (connections) {
+                connections.add(connection);
+            }
+        }
+
+        return connection;
+    }
+
+    private void release(Connection connection) {
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        }
+
+        idle.add(connection);
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : initStatements) {
+                statement.execute(sql);
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                closeQuietly(connection);
+            }
+            connections.clear();
+        }
+        idle.clear();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // The connection is being discarded either way
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.rookygod.authlite.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Account store backed by an embedded SQLite database (players.db).
+ * <p>
+ * Accounts are looked up through the primary key on the UUID and an index on the
+ * lowercased username, so single-account reads never touch the rest of the table.
+ * The SQLite JDBC driver ships with Paper and does not need to be shaded.
+ */
+public class SqliteAccountStore implements AccountStore {
+
+    private static final String TABLE = "authlite_accounts";
+
+    private static final String SELECT_COLUMNS = "SELECT uuid, username, password, last_ip, last_login FROM " + TABLE;
+    private static final String SELECT_INDEX = "SELECT uuid, username FROM " + TABLE;
+    private static final String SELECT_BY_UUID = SELECT_COLUMNS + " WHERE uuid = ?";
+    private static final String SELECT_BY_USERNAME = SELECT_COLUMNS + " WHERE username_lower = ?";
+    private static final String UPSERT = "INSERT INTO " + TABLE
+            + " (uuid, username, username_lower, password, last_ip, last_login) VALUES (?, ?, ?, ?, ?, ?)"
+            + " ON CONFLICT(uuid) DO UPDATE SET username = excluded.username,"
+            + " username_lower = excluded.username_lower, password = excluded.password,"
+            + " last_ip = excluded.last_ip, last_login = excluded.last_login";
+    private static final String DELETE = "DELETE FROM " + TABLE + " WHERE uuid = ?";
+
+    private final File databaseFile;
+    private final int poolSize;
+    private final Logger logger;
+    private SqlConnectionPool pool;
+
+    public SqliteAccountStore(File dataFolder, int poolSize, Logger logger) {
+        this.databaseFile = new File(dataFolder, "players.db");
+        this.poolSize = poolSize;
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public void open() throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("SQLite JDBC driver is not available on this server", e);
+        }
+
+        databaseFile.getParentFile().mkdirs();
+
+        try {
+            pool = new SqlConnectionPool("jdbc:sqlite:" + databaseFile.getAbsolutePath(), poolSize, List.of(
+                    "PRAGMA journal_mode=WAL",
+                    "PRAGMA synchronous=NORMAL",
+                    "PRAGMA busy_timeout=5000"));
+
+            pool.execute(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                            + "uuid TEXT NOT NULL PRIMARY KEY, "
+                            + "username TEXT NOT NULL, "
+                            + "username_lower TEXT NOT NULL, "
+                            + "password TEXT NOT NULL, "
+                            + "last_ip TEXT NOT NULL DEFAULT '', "
+                            + "last_login INTEGER NOT NULL DEFAULT 0)");
+                    statement.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_username ON "
+                            + TABLE + " (username_lower)");
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not open " + databaseFile.getName(), e);
+        }
+
+        logger.info("Opened SQLite account database " + databaseFile.getName());
+    }
+
+    @Override
+    public void loadAll(Consumer<PlayerData> consumer) throws IOException {
+        try {
+            pool.execute(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.setFetchSize(1000);
+                    try (ResultSet resultSet = statement.executeQuery(SELECT_COLUMNS)) {
+                        while (resultSet.next()) {
+                            PlayerData playerData = readRow(resultSet);
+                            if (playerData != null) {
+                                consumer.accept(playerData);
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not load accounts from " + databaseFile.getName(), e);
+        }
+    }
+
+    @Override
+    public void loadIndex(BiConsumer<UUID, String> consumer) throws IOException {
+        try {
+            pool.execute(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.setFetchSize(1000);
+                    try (ResultSet resultSet = statement.executeQuery(SELECT_INDEX)) {
+                        while (resultSet.next()) {
+                            String uuidString = resultSet.getString(1);
+                            try {
+                                consumer.accept(UUID.fromString(uuidString), resultSet.getString(2));
+                            } catch (IllegalArgumentException e) {
+                                logger.warning("Invalid UUID in " + databaseFile.getName() + ": " + uuidString);
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not load account index from " + databaseFile.getName(), e);
+        }
+    }
+
+    @Override
+    public PlayerData load(UUID uuid) throws IOException {
+        return queryOne(SELECT_BY_UUID, uuid.toString());
+    }
+
+    @Override
+    public PlayerData loadByUsername(String username) throws IOException {
+        return queryOne(SELECT_BY_USERNAME, username.toLowerCase());
+    }
+
+    @Override
+    public void saveAll(Map<UUID, PlayerData> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        try {
+            pool.execute(connection -> {
+                connection.setAutoCommit(false);
+                try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+                     PreparedStatement delete = connection.prepareStatement(DELETE)) {
+                    for (Map.Entry<UUID, PlayerData> entry : changes.entrySet()) {
+                        PlayerData playerData = entry.getValue();
+                        if (playerData == null) {
+                            delete.setString(1, entry.getKey().toString());
+                            delete.addBatch();
+                            continue;
+                        }
+
+                        upsert.setString(1, entry.getKey().toString());
+                        upsert.setString(2, playerData.getUsername());
+                        upsert.setString(3, playerData.getUsername().toLowerCase());
+                        upsert.setString(4, playerData.getPassword());
+                        upsert.setString(5, playerData.getLastIp() != null ? playerData.getLastIp() : "");
+                        upsert.setLong(6, playerData.getLastLogin());
+                        upsert.addBatch();
+                    }
+
+                    upsert.executeBatch();
+                    delete.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not save " + changes.size() + " accounts to " + databaseFile.getName(), e);
+        }
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return false;
+    }
+
+    @Override
+    public void compact() throws IOException {
+        try {
+            pool.execute(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA optimize");
+                    statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not checkpoint " + databaseFile.getName(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private PlayerData queryOne(String sql, String key) throws IOException {
+        try {
+            return pool.execute(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, key);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        return resultSet.next() ? readRow(resultSet) : null;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not load account " + key + " from " + databaseFile.getName(), e);
+        }
+    }
+
+    private PlayerData readRow(ResultSet resultSet) throws SQLException {
+        String uuidString = resultSet.getString(1);
+        try {
+            return new PlayerData(UUID.fromString(uuidString), resultSet.getString(2), resultSet.getString(3),
+                    resultSet.getString(4), resultSet.getLong(5));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid UUID in " + databaseFile.getName() + ": " + uuidString);
+            return null;
+        }
+    }
+}
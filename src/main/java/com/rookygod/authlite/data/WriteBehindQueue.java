@@ -0,0 +1,254 @@
+package com.rookygod.authlite.data;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves account writes off the calling thread.
+ * <p>
+ * Changes are buffered per UUID, so repeated updates to the same account between two
+ * flushes (for example last-login and last-ip on join) collapse into a single record.
+ * One writer thread flushes the buffer to the {@link AccountStore} whenever it reaches
+ * the configured batch size or the flush interval elapses, and {@link #close()} drains
+ * whatever is left before returning. A queue can be told to hold its writes until an
+ * earlier queue for the same store has drained, so writes never overtake older ones.
+ */
+public class WriteBehindQueue {
+
+    private final AccountStore store;
+    private final Logger logger;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Thread writerThread;
+    private final CompletableFuture<?> startAfter;
+
+    // Guarded by "this"; a null value records a removal
+    private Map<UUID, PlayerData> pending = new HashMap<>();
+    // The batch being written by the writer thread, guarded by "this"
+    private Map<UUID, PlayerData> flushing = Collections.emptyMap();
+    private boolean running = true;
+
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    public WriteBehindQueue(AccountStore store, Logger logger, int batchSize, long flushIntervalMillis) {
+        this(store, logger, batchSize, flushIntervalMillis, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Creates a queue that buffers writes but only starts flushing them once another
+     * future completes.
+     *
+     * @param store The store to write to
+     * @param logger The logger to report failed writes to
+     * @param batchSize The number of pending accounts that triggers a flush
+     * @param flushIntervalMillis The longest time a write waits before it is flushed
+     * @param startAfter The future to wait for, such as the close of the previous queue
+     */
+    public WriteBehindQueue(AccountStore store, Logger logger, int batchSize, long flushIntervalMillis,
+                            CompletableFuture<?> startAfter) {
+        this.store = store;
+        this.startAfter = startAfter;
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+
+        this.writerThread = new Thread(this::run, "AuthLite-Writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the current state of an account. The data is copied, so the caller may
+     * keep mutating the original.
+     *
+     * @param playerData The account to write
+     */
+    public void enqueuePut(PlayerData playerData) {
+        enqueue(playerData.getUuid(), playerData.copy());
+    }
+
+    /**
+     * Queues the removal of an account, replacing any pending write for it.
+     *
+     * @param uuid The UUID of the removed account
+     */
+    public void enqueueDelete(UUID uuid) {
+        enqueue(uuid, null);
+    }
+
+    private synchronized void enqueue(UUID uuid, PlayerData playerData) {
+        if (!running) {
+            throw new IllegalStateException("Write-behind queue has been closed");
+        }
+
+        if (pending.containsKey(uuid)) {
+            coalesced.incrementAndGet();
+        }
+        pending.put(uuid, playerData);
+
+        if (pending.size() >= batchSize) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gets the write waiting for an account, including one that is being flushed right
+     * now. Reads that miss the cache must check this first, since the store has not seen
+     * these writes yet.
+     *
+     * @param uuid The UUID of the account
+     * @param result Receives a copy of the pending account, or null for a pending removal
+     * @return True if a write is pending, false if the store is up to date
+     */
+    public synchronized boolean getPending(UUID uuid, PlayerData[] result) {
+        PlayerData playerData;
+        if (pending.containsKey(uuid)) {
+            playerData = pending.get(uuid);
+        } else if (flushing.containsKey(uuid)) {
+            playerData = flushing.get(uuid);
+        } else {
+            return false;
+        }
+
+        result[0] = playerData != null ? playerData.copy() : null;
+        return true;
+    }
+
+    /**
+     * Stops accepting writes, flushes everything still pending and waits for the
+     * writer thread to finish.
+     */
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notifyAll();
+        }
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            startAfter.join();
+        } catch (RuntimeException e) {
+            // The previous queue failed to drain, which it has already logged
+        }
+
+        while (true) {
+            Map<UUID, PlayerData> batch;
+            boolean stopping;
+
+            synchronized (this) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (running && pending.size() < batchSize) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        // Only close() stops the writer, so pending writes are never dropped
+                    }
+                }
+
+                batch = pending;
+                flushing = batch;
+                pending = new HashMap<>();
+                stopping = !running;
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+
+            synchronized (this) {
+                flushing = Collections.emptyMap();
+            }
+
+            if (stopping) {
+                return;
+            }
+        }
+    }
+
+    private void flush(Map<UUID, PlayerData> batch) {
+        long start = System.nanoTime();
+
+        try {
+            store.saveAll(batch);
+            written.addAndGet(batch.size());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not write " + batch.size() + " account changes to " + store.getName() + " storage", e);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        totalFlushNanos.addAndGet(elapsed);
+        flushes.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of distinct accounts waiting to be written.
+     *
+     * @return The queue depth
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of changes that were merged into an already pending write.
+     *
+     * @return The number of coalesced changes
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * Gets the duration of the most recent flush.
+     *
+     * @return The flush latency in milliseconds
+     */
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    /**
+     * Gets the average duration of all flushes so far.
+     *
+     * @return The average flush latency in milliseconds
+     */
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0 : totalFlushNanos.get() / (count * 1_000_000.0);
+    }
+}
@@ -0,0 +1,441 @@
+package com.rookygod.authlite.data;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Account store backed by players.yml and an {@link AccountJournal}.
+ * <p>
+ * players.yml is an immutable snapshot; every change since the last snapshot lives in
+ * the journal and in a small in-memory overlay. Compaction merges the snapshot with the
+ * overlay into a new players.yml, which is swapped in atomically.
+ * <p>
+ * Every snapshot is also written to players.dat in the {@link BinarySnapshot} format,
+ * which is read instead of players.yml on startup and serves single lookups in lazy
+ * mode. YAML is only parsed when players.dat is missing or older than players.yml.
+ */
+public class YamlAccountStore implements AccountStore {
+
+    private final File playersFile;
+    private final AccountJournal journal;
+    private final BinarySnapshot binarySnapshot;
+    private final Logger logger;
+    private volatile int compactionThreshold;
+    private final Object compactionLock = new Object();
+
+    // Changes since the last snapshot, guarded by "this"; a null value records a removal
+    private Map<UUID, PlayerData> overlay = new HashMap<>();
+    // Changes being folded into a snapshot by a running (or failed) compaction
+    private Map<UUID, PlayerData> compacting;
+    // Snapshot contents, only built once random access is needed
+    private Map<UUID, PlayerData> snapshotIndex;
+    private Map<String, UUID> snapshotUsernames;
+    // Whether players.dat holds the current snapshot
+    private volatile boolean binaryReady;
+
+    public YamlAccountStore(File dataFolder, boolean fsync, int compactionThreshold, Logger logger) {
+        this.playersFile = new File(dataFolder, "players.yml");
+        this.journal = new AccountJournal(new File(dataFolder, "players.journal"), fsync, logger);
+        this.binarySnapshot = new BinarySnapshot(new File(dataFolder, "players.dat"));
+        this.logger = logger;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public void open() throws IOException {
+        // Create players.yml file if it doesn't exist
+        if (!playersFile.exists()) {
+            playersFile.getParentFile().mkdirs();
+            playersFile.createNewFile();
+        }
+
+        binaryReady = binarySnapshot.isFreshFor(playersFile);
+
+        // Replay mutations journaled since the last snapshot
+        int replayed = journal.open(new AccountJournal.Visitor() {
+            @Override
+            public void put(PlayerData playerData) {
+                overlay.put(playerData.getUuid(), playerData);
+            }
+
+            @Override
+            public void delete(UUID uuid) {
+                overlay.put(uuid, null);
+            }
+        });
+
+        if (replayed > 0) {
+            logger.info("Replayed " + replayed + " journaled account changes");
+        }
+    }
+
+    @Override
+    public void loadAll(Consumer<PlayerData> consumer) throws IOException {
+        synchronized (compactionLock) {
+            Map<UUID, PlayerData> changes = pendingChanges();
+
+            readSnapshot(playerData -> {
+                if (!changes.containsKey(playerData.getUuid())) {
+                    consumer.accept(playerData);
+                }
+            });
+
+            for (PlayerData playerData : changes.values()) {
+                if (playerData != null) {
+                    consumer.accept(playerData.copy());
+                }
+            }
+        }
+    }
+
+    @Override
+    public PlayerData load(UUID uuid) throws IOException {
+        synchronized (this) {
+            if (overlay.containsKey(uuid)) {
+                return copyOf(overlay.get(uuid));
+            }
+            if (compacting != null && compacting.containsKey(uuid)) {
+                return copyOf(compacting.get(uuid));
+            }
+        }
+
+        if (binaryReady) {
+            try {
+                return binarySnapshot.find(uuid);
+            } catch (IOException e) {
+                binaryUnavailable(e);
+            }
+        }
+
+        ensureSnapshotIndex();
+
+        synchronized (this) {
+            return copyOf(snapshotIndex.get(uuid));
+        }
+    }
+
+    @Override
+    public PlayerData loadByUsername(String username) throws IOException {
+        synchronized (this) {
+            PlayerData changed = findByUsername(overlay, username);
+            if (changed == null && compacting != null) {
+                changed = findByUsername(compacting, username);
+            }
+            if (changed != null) {
+                return changed.copy();
+            }
+        }
+
+        UUID uuid = null;
+        if (binaryReady) {
+            try {
+                PlayerData playerData = binarySnapshot.findByUsername(username);
+                uuid = playerData != null ? playerData.getUuid() : null;
+            } catch (IOException e) {
+                binaryUnavailable(e);
+            }
+        }
+
+        if (!binaryReady) {
+            ensureSnapshotIndex();
+
+            synchronized (this) {
+                uuid = snapshotUsernames.get(username.toLowerCase());
+            }
+        }
+
+        // Resolve through load() so a later change or removal of that UUID wins
+        return uuid != null ? load(uuid) : null;
+    }
+
+    @Override
+    public synchronized void saveAll(Map<UUID, PlayerData> changes) throws IOException {
+        journal.appendAll(changes);
+        overlay.putAll(changes);
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return journal.getRecordCount() >= compactionThreshold;
+    }
+
+    @Override
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            Map<UUID, PlayerData> changes;
+
+            synchronized (this) {
+                journal.rotate();
+
+                // Fold in the changes of a compaction that failed after rotating
+                if (compacting != null) {
+                    compacting.putAll(overlay);
+                } else {
+                    compacting = overlay;
+                }
+                overlay = new HashMap<>();
+                changes = compacting;
+            }
+
+            List<PlayerData> records = new ArrayList<>();
+            readSnapshot(playerData -> {
+                if (!changes.containsKey(playerData.getUuid())) {
+                    records.add(playerData);
+                }
+            });
+            for (PlayerData playerData : changes.values()) {
+                if (playerData != null) {
+                    records.add(playerData);
+                }
+            }
+
+            writeYamlSnapshot(records);
+            journal.discardRotated();
+            writeBinarySnapshot(records);
+
+            synchronized (this) {
+                if (snapshotIndex != null) {
+                    applyToIndex(changes);
+                }
+                compacting = null;
+            }
+        }
+    }
+
+    /**
+     * Applies changed settings without reopening the store, which a reload cannot do
+     * while the previous state is still writing to the same files.
+     *
+     * @param fsync Whether journal appends are forced to disk
+     * @param compactionThreshold The journal record count that triggers compaction
+     */
+    public void configure(boolean fsync, int compactionThreshold) {
+        journal.setFsync(fsync);
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+        binarySnapshot.closeLookups();
+    }
+
+    /**
+     * Rewrites players.dat from players.yml, for example after players.yml was edited by hand.
+     *
+     * @return The number of accounts converted
+     * @throws IOException If either file cannot be read or written
+     */
+    public int convertToBinary() throws IOException {
+        synchronized (compactionLock) {
+            List<PlayerData> records = readYamlSnapshot();
+
+            binarySnapshot.write(records, playersFile);
+            binaryReady = true;
+            return records.size();
+        }
+    }
+
+    /**
+     * Rewrites players.yml from players.dat, for example after players.yml was lost or damaged.
+     *
+     * @return The number of accounts converted
+     * @throws IOException If either file cannot be read or written
+     */
+    public int convertToYaml() throws IOException {
+        synchronized (compactionLock) {
+            if (!binarySnapshot.getFile().exists()) {
+                throw new IOException(binarySnapshot.getFile().getName() + " does not exist");
+            }
+
+            List<PlayerData> records = new ArrayList<>();
+            binarySnapshot.read(records::add);
+
+            writeYamlSnapshot(records);
+            binarySnapshot.write(records, playersFile);
+            binaryReady = true;
+
+            // The YAML index no longer matches players.yml, so rebuild it if it is needed again
+            synchronized (this) {
+                snapshotIndex = null;
+                snapshotUsernames = null;
+            }
+            return records.size();
+        }
+    }
+
+    private synchronized Map<UUID, PlayerData> pendingChanges() {
+        Map<UUID, PlayerData> changes = new HashMap<>();
+        if (compacting != null) {
+            changes.putAll(compacting);
+        }
+        changes.putAll(overlay);
+        return changes;
+    }
+
+    private void ensureSnapshotIndex() throws IOException {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                if (snapshotIndex != null) {
+                    return;
+                }
+            }
+
+            Map<UUID, PlayerData> index = new HashMap<>();
+            Map<String, UUID> usernames = new HashMap<>();
+            readSnapshot(playerData -> {
+                index.put(playerData.getUuid(), playerData);
+                usernames.put(playerData.getUsername().toLowerCase(), playerData.getUuid());
+            });
+
+            synchronized (this) {
+                snapshotIndex = index;
+                snapshotUsernames = usernames;
+            }
+        }
+    }
+
+    private void applyToIndex(Map<UUID, PlayerData> changes) {
+        for (Map.Entry<UUID, PlayerData> entry : changes.entrySet()) {
+            PlayerData previous = entry.getValue() != null
+                    ? snapshotIndex.put(entry.getKey(), entry.getValue())
+                    : snapshotIndex.remove(entry.getKey());
+            if (previous != null) {
+                snapshotUsernames.remove(previous.getUsername().toLowerCase());
+            }
+            if (entry.getValue() != null) {
+                snapshotUsernames.put(entry.getValue().getUsername().toLowerCase(), entry.getKey());
+            }
+        }
+    }
+
+    private void readSnapshot(Consumer<PlayerData> consumer) throws IOException {
+        if (binaryReady) {
+            try {
+                binarySnapshot.read(consumer);
+                return;
+            } catch (IOException e) {
+                binaryUnavailable(e);
+            }
+        }
+
+        // Fall back to players.yml and write players.dat for the next start
+        List<PlayerData> records = readYamlSnapshot();
+        writeBinarySnapshot(records);
+        records.forEach(consumer);
+    }
+
+    private List<PlayerData> readYamlSnapshot() throws IOException {
+        List<PlayerData> records = new ArrayList<>();
+        try {
+            new PlayersYamlReader(logger).read(playersFile, records::add);
+        } catch (IOException e) {
+            // The streaming reader only understands what Bukkit writes; let the full parser handle the rest
+            logger.warning("Could not stream players.yml, parsing it in full instead: " + e.getMessage());
+            records.clear();
+            readYamlConfiguration(records::add);
+        }
+        return records;
+    }
+
+    private void readYamlConfiguration(Consumer<PlayerData> consumer) {
+        FileConfiguration playersConfig = YamlConfiguration.loadConfiguration(playersFile);
+
+        ConfigurationSection playersSection = playersConfig.getConfigurationSection("players");
+        if (playersSection == null) {
+            return;
+        }
+
+        List<String> invalid = new ArrayList<>();
+        for (String uuidString : playersSection.getKeys(false)) {
+            try {
+                UUID uuid = UUID.fromString(uuidString);
+                ConfigurationSection playerSection = playersSection.getConfigurationSection(uuidString);
+
+                if (playerSection != null) {
+                    String username = playerSection.getString("username");
+                    String password = playerSection.getString("password");
+                    String lastIp = playerSection.getString("last-ip", "");
+                    long lastLogin = playerSection.getLong("last-login", 0);
+
+                    consumer.accept(new PlayerData(uuid, username, password, lastIp, lastLogin));
+                }
+            } catch (IllegalArgumentException e) {
+                invalid.add(uuidString);
+            }
+        }
+
+        if (!invalid.isEmpty()) {
+            logger.warning("Skipped " + invalid.size() + " entries with invalid UUIDs in players.yml (e.g. "
+                    + String.join(", ", invalid.subList(0, Math.min(5, invalid.size()))) + ")");
+        }
+    }
+
+    private void writeYamlSnapshot(Collection<PlayerData> records) throws IOException {
+        FileConfiguration snapshot = new YamlConfiguration();
+        for (PlayerData playerData : records) {
+            writeEntry(snapshot, playerData);
+        }
+
+        // Write next to the live file and swap atomically, so a crash never leaves a half-written players.yml
+        File tempFile = new File(playersFile.getParentFile(), playersFile.getName() + ".tmp");
+        snapshot.save(tempFile);
+        Files.move(tempFile.toPath(), playersFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeBinarySnapshot(Collection<PlayerData> records) {
+        // players.dat is only a cache of players.yml, so failing to write it is not fatal
+        try {
+            binarySnapshot.write(records, playersFile);
+            binaryReady = true;
+        } catch (IOException e) {
+            binaryUnavailable(e);
+        }
+    }
+
+    private void binaryUnavailable(IOException e) {
+        binaryReady = false;
+        logger.warning("Could not use " + binarySnapshot.getFile().getName() + ", falling back to players.yml: " + e.getMessage());
+    }
+
+    private static void writeEntry(FileConfiguration snapshot, PlayerData playerData) {
+        String path = "players." + playerData.getUuid().toString();
+        snapshot.set(path + ".username", playerData.getUsername());
+        snapshot.set(path + ".password", playerData.getPassword());
+        snapshot.set(path + ".last-ip", playerData.getLastIp());
+        snapshot.set(path + ".last-login", playerData.getLastLogin());
+    }
+
+    private static PlayerData findByUsername(Map<UUID, PlayerData> changes, String username) {
+        for (PlayerData playerData : changes.values()) {
+            if (playerData != null && playerData.getUsername().equalsIgnoreCase(username)) {
+                return playerData;
+            }
+        }
+        return null;
+    }
+
+    private static PlayerData copyOf(PlayerData playerData) {
+        return playerData != null ? playerData.copy() : null;
+    }
+}
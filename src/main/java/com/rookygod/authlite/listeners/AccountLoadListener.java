@@ -0,0 +1,51 @@
+package com.rookygod.authlite.listeners;
+
+import com.rookygod.authlite.AuthLite;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Listener responsible for loading accounts while players connect and
+ * keeping them cached while they are online.
+ */
+public class AccountLoadListener implements Listener {
+
+    private final AuthLite plugin;
+
+    public AccountLoadListener(AuthLite plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Loads the account and checks the session off the main thread before the player joins
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        plugin.getDataManager().preparePlayer(event.getUniqueId());
+        plugin.getSessionManager().prepareSession(event.getUniqueId(), event.getAddress());
+    }
+
+    /**
+     * Pins the account in the cache for as long as the player is online
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getDataManager().pinPlayer(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Lets the account expire from the cache once the player has left
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getDataManager().unpinPlayer(event.getPlayer().getUniqueId());
+    }
+}
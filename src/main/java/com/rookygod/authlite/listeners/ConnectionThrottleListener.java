@@ -0,0 +1,35 @@
+package com.rookygod.authlite.listeners;
+
+import com.rookygod.authlite.AuthLite;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+
+/**
+ * Listener responsible for turning away connections over the connection
+ * limits before any account is loaded or any world is joined.
+ */
+public class ConnectionThrottleListener implements Listener {
+
+    private final AuthLite plugin;
+
+    public ConnectionThrottleListener(AuthLite plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Refuses the connection if its address, subnet or the server has too many recent connections
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        if (!plugin.getConnectionThrottle().tryConnect(event.getUniqueId(), event.getAddress())) {
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                    plugin.getMessageManager().getMessage("security.throttled"));
+        }
+    }
+}
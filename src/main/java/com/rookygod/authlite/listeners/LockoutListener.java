@@ -0,0 +1,42 @@
+package com.rookygod.authlite.listeners;
+
+import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.utils.MessageUtils;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Listener responsible for refusing connections of locked out accounts and
+ * addresses before the player is created.
+ */
+public class LockoutListener implements Listener {
+
+    private final AuthLite plugin;
+
+    public LockoutListener(AuthLite plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Refuses the connection while its account or address is locked out
+     */
+    @EventHandler(priority = EventPriority.LOW)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        long remaining = plugin.getLockoutManager().getRemainingMillis(event.getUniqueId(), event.getAddress());
+        if (remaining > 0) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("time", MessageUtils.formatDuration(remaining));
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                    plugin.getMessageManager().getMessage("login.locked_out", placeholders));
+        }
+    }
+}
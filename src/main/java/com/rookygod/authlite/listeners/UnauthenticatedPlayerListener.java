@@ -0,0 +1,132 @@
+package com.rookygod.authlite.listeners;
+
+import com.rookygod.authlite.AuthLite;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.*;
+
+/**
+ * Listener responsible for blocking the actions of players who are not logged in.
+ * <p>
+ * These are the most frequent events on a server, so the listener is only registered
+ * while at least one player online is not logged in (see
+ * {@link com.rookygod.authlite.protection.ProtectionManager#updateListener()}).
+ */
+public class UnauthenticatedPlayerListener implements Listener {
+
+    private final AuthLite plugin;
+    
+    public UnauthenticatedPlayerListener(AuthLite plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        // Only block movement if the player changes block position
+        if (event.getFrom().getBlockX() == event.getTo().getBlockX() &&
+                event.getFrom().getBlockY() == event.getTo().getBlockY() &&
+                event.getFrom().getBlockZ() == event.getTo().getBlockZ()) {
+            return;
+        }
+        
+        if (plugin.getLimboManager().keepInBounds(event.getPlayer(), event.getTo())) {
+            return;
+        }
+        
+        if (plugin.getProtectionManager().shouldBlockMovement(event.getPlayer())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerChat(AsyncPlayerChatEvent event) {
+        if (plugin.getProtectionManager().shouldBlockChat(event.getPlayer())) {
+            event.setCancelled(true);
+            plugin.getProtectionManager().sendAuthenticationMessage(event.getPlayer());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        String command = event.getMessage().split(" ")[0].toLowerCase();
+        
+        if (plugin.getProtectionManager().shouldBlockCommand(event.getPlayer(), command)) {
+            event.setCancelled(true);
+            // Send command blocked message and then the appropriate authentication message
+            plugin.getMessageManager().sendMessage(event.getPlayer(), "protection.command_blocked");
+            plugin.getProtectionManager().sendAuthenticationMessage(event.getPlayer());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        if (plugin.getProtectionManager().shouldBlockInteraction(event.getPlayer())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
+        if (plugin.getProtectionManager().shouldBlockInteraction(event.getPlayer())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onBlockBreak(BlockBreakEvent event) {
+        if (plugin.getProtectionManager().shouldBlockInteraction(event.getPlayer())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        if (plugin.getProtectionManager().shouldBlockInteraction(event.getPlayer())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onEntityDamage(EntityDamageEvent event) {
+        if (event.getEntity() instanceof Player player) {
+            if (plugin.getProtectionManager().shouldBlockDamage(player)) {
+                event.setCancelled(true);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
+        if (event.getDamager() instanceof Player player) {
+            if (plugin.getProtectionManager().shouldBlockDamage(player)) {
+                event.setCancelled(true);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        if (event.getPlayer() instanceof Player player) {
+            if (plugin.getProtectionManager().shouldBlockInventory(player)) {
+                event.setCancelled(true);
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (event.getWhoClicked() instanceof Player player) {
+            if (plugin.getProtectionManager().shouldBlockInventory(player)) {
+                event.setCancelled(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.rookygod.authlite.protection;
+
+import com.rookygod.authlite.AuthLite;
+import net.kyori.adventure.util.TriState;
+import org.bukkit.Difficulty;
+import org.bukkit.GameRule;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
+import org.bukkit.generator.ChunkGenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Parks players who are not logged in in an empty world, and returns them to where they
+ * were once they log in.
+ * <p>
+ * The limbo world has no terrain, mobs, weather or random ticks and keeps no spawn
+ * chunks loaded, so holding a join wave there costs almost nothing. Players may move
+ * freely (instead of having every move cancelled and corrected), flying so they do not
+ * fall, and are put back on the spawn if they leave the few chunks around it. Players
+ * are returned before they leave the server, so no one is ever saved in limbo.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class LimboManager {
+
+    private static final double SPAWN_Y = 64;
+    // Distance from the spawn a player may move before being put back
+    private static final double MAX_DISTANCE = 16;
+
+    /**
+     * Where a player was and whether they could fly before they entered limbo.
+     */
+    private static final class ReturnPoint {
+
+        private final Location location;
+        private final boolean allowFlight;
+        private final boolean flying;
+
+        private ReturnPoint(Location location, boolean allowFlight, boolean flying) {
+            this.location = location;
+            this.allowFlight = allowFlight;
+            this.flying = flying;
+        }
+    }
+
+    /**
+     * Generates nothing but air.
+     */
+    private static final class VoidGenerator extends ChunkGenerator {
+
+        @Override
+        public boolean shouldGenerateNoise() {
+            return false;
+        }
+
+        @Override
+        public boolean shouldGenerateSurface() {
+            return false;
+        }
+
+        @Override
+        public boolean shouldGenerateCaves() {
+            return false;
+        }
+
+        @Override
+        public boolean shouldGenerateDecorations() {
+            return false;
+        }
+
+        @Override
+        public boolean shouldGenerateMobs() {
+            return false;
+        }
+
+        @Override
+        public boolean shouldGenerateStructures() {
+            return false;
+        }
+
+        @Override
+        public Location getFixedSpawnLocation(World world, Random random) {
+            return new Location(world, 0.5, SPAWN_Y, 0.5);
+        }
+    }
+
+    private final AuthLite plugin;
+    private final Map<UUID, ReturnPoint> returnPoints = new HashMap<>();
+    private World world;
+
+    public LimboManager(AuthLite plugin) {
+        this.plugin = plugin;
+        applyConfig();
+    }
+
+    /**
+     * Loads the limbo world if limbo is enabled, creating it on first use. Players
+     * already in limbo stay there until they log in, even if it was disabled.
+     */
+    public void applyConfig() {
+        if (!plugin.getConfigManager().isLimboEnabled()) {
+            return;
+        }
+
+        String name = plugin.getConfigManager().getLimboWorld();
+        if (world != null && world.getName().equals(name)) {
+            return;
+        }
+
+        World limbo = plugin.getServer().getWorld(name);
+        if (limbo == null) {
+            limbo = new WorldCreator(name)
+                    .environment(World.Environment.NORMAL)
+                    .generator(new VoidGenerator())
+                    .generateStructures(false)
+                    .keepSpawnLoaded(TriState.FALSE)
+                    .createWorld();
+        }
+        if (limbo == null) {
+            plugin.getLogger().warning("Could not create the limbo world " + name + ", players will wait in their own world");
+            return;
+        }
+
+        limbo.setSpawnLocation(0, (int) SPAWN_Y, 0);
+        limbo.setAutoSave(false);
+        limbo.setDifficulty(Difficulty.PEACEFUL);
+        limbo.setSpawnFlags(false, false);
+        limbo.setGameRule(GameRule.SPAWN_CHUNK_RADIUS, 0);
+        limbo.setGameRule(GameRule.RANDOM_TICK_SPEED, 0);
+        limbo.setGameRule(GameRule.DO_MOB_SPAWNING, false);
+        limbo.setGameRule(GameRule.DO_PATROL_SPAWNING, false);
+        limbo.setGameRule(GameRule.DO_TRADER_SPAWNING, false);
+        limbo.setGameRule(GameRule.DO_DAYLIGHT_CYCLE, false);
+        limbo.setGameRule(GameRule.DO_WEATHER_CYCLE, false);
+        limbo.setGameRule(GameRule.DO_FIRE_TICK, false);
+        limbo.setGameRule(GameRule.ANNOUNCE_ADVANCEMENTS, false);
+        limbo.setTime(6000);
+        limbo.setStorm(false);
+        limbo.setThundering(false);
+        world = limbo;
+    }
+
+    /**
+     * Moves a player into limbo, remembering where they were.
+     *
+     * @param player The player who is not logged in
+     */
+    public void enter(Player player) {
+        if (world == null || returnPoints.containsKey(player.getUniqueId())) {
+            return;
+        }
+
+        Location location = player.getLocation();
+        if (location.getWorld() == world) {
+            // Left in limbo by a crash, so the real location is unknown
+            location = plugin.getServer().getWorlds().get(0).getSpawnLocation();
+        }
+        returnPoints.put(player.getUniqueId(), new ReturnPoint(location, player.getAllowFlight(), player.isFlying()));
+
+        player.teleport(getSpawn());
+        player.setAllowFlight(true);
+        player.setFlying(true);
+    }
+
+    /**
+     * Returns a player from limbo to where they were before.
+     *
+     * @param player The player
+     */
+    public void leave(Player player) {
+        ReturnPoint point = returnPoints.remove(player.getUniqueId());
+        if (point == null) {
+            return;
+        }
+
+        player.teleport(point.location.isWorldLoaded() ? point.location
+                : plugin.getServer().getWorlds().get(0).getSpawnLocation());
+        player.setAllowFlight(point.allowFlight);
+        player.setFlying(point.flying);
+    }
+
+    /**
+     * Puts a player in limbo back on the spawn once they strayed too far from it or
+     * stopped flying and fell.
+     *
+     * @param player The player who moved
+     * @param to Where the player moved to
+     * @return True if the player was put back
+     */
+    public boolean keepInBounds(Player player, Location to) {
+        if (to.getWorld() != world || !returnPoints.containsKey(player.getUniqueId())) {
+            return false;
+        }
+
+        if (Math.abs(to.getX()) <= MAX_DISTANCE && Math.abs(to.getZ()) <= MAX_DISTANCE
+                && Math.abs(to.getY() - SPAWN_Y) <= MAX_DISTANCE) {
+            return false;
+        }
+
+        player.teleport(getSpawn());
+        player.setFlying(true);
+        return true;
+    }
+
+    /**
+     * Checks whether players can be sent to limbo.
+     *
+     * @return True if limbo is enabled and its world is loaded
+     */
+    public boolean isAvailable() {
+        return world != null && plugin.getConfigManager().isLimboEnabled();
+    }
+
+    public boolean isInLimbo(Player player) {
+        return returnPoints.containsKey(player.getUniqueId());
+    }
+
+    /**
+     * Returns every player still in limbo, so none is saved there.
+     */
+    public void shutdown() {
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            leave(player);
+        }
+        returnPoints.clear();
+    }
+
+    private Location getSpawn() {
+        return new Location(world, 0.5, SPAWN_Y, 0.5);
+    }
+}
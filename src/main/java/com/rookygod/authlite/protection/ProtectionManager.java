@@ -1,34 +1,117 @@
 package com.rookygod.authlite.protection;
 
 import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.config.ConfigManager;
+import com.rookygod.authlite.listeners.UnauthenticatedPlayerListener;
+import com.rookygod.authlite.session.AuthState;
+import com.rookygod.authlite.utils.TimerWheel;
 import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Decides which actions of players who are not logged in are blocked.
+ * <p>
+ * Protection depends only on a player's {@link AuthState} and the configuration, so it
+ * is computed once per state into a bitmask whenever the configuration is applied.
+ * Every check is then a state lookup, an array read and a bit test, which keeps hot
+ * handlers such as {@code PlayerMoveEvent} free of config reads and allocations.
+ * <p>
+ * Those handlers are only needed while someone is not logged in, so their listener is
+ * registered when the first such player joins and unregistered once everyone online
+ * has logged in, which keeps AuthLite out of the hot event paths the rest of the time.
+ * <p>
+ * Protection is removed, and the login timeout and reminder cancelled, by
+ * {@link com.rookygod.authlite.session.SessionManager} as soon as a player becomes
+ * authenticated, whether through a command, a registration or the API.
+ */
 public class ProtectionManager {
 
+    public static final int BLOCK_MOVEMENT = 1;
+    public static final int BLOCK_CHAT = 1 << 1;
+    public static final int BLOCK_COMMANDS = 1 << 2;
+    public static final int BLOCK_INTERACTION = 1 << 3;
+    public static final int BLOCK_DAMAGE = 1 << 4;
+    public static final int BLOCK_INVENTORY = 1 << 5;
+    public static final int TELEPORT_TO_SPAWN = 1 << 6;
+    public static final int HIDE_FROM_PLAYER_LIST = 1 << 7;
+    public static final int BLIND_EFFECT = 1 << 8;
+    public static final int SEND_TO_LIMBO = 1 << 9;
+
     private final AuthLite plugin;
+    // Protection of each state by ordinal, plus one for players without a state
+    private volatile int[] stateMasks;
+    private final UnauthenticatedPlayerListener listener;
+    private boolean listenerRegistered;
+    // Deadlines on the plugin's ticker, only used on the main thread
+    private final Map<UUID, TimerWheel.Timeout> loginTimeouts = new HashMap<>();
+    private final Map<UUID, TimerWheel.Timeout> reminders = new HashMap<>();
     
     public ProtectionManager(AuthLite plugin) {
         this.plugin = plugin;
+        this.listener = new UnauthenticatedPlayerListener(plugin);
+        applyConfig();
+    }
+    
+    /**
+     * Computes the protection of every state from the configuration.
+     */
+    public void applyConfig() {
+        ConfigManager config = plugin.getConfigManager();
+        int protection = (config.isBlockMovement() ? BLOCK_MOVEMENT : 0)
+                | (config.isBlockChat() ? BLOCK_CHAT : 0)
+                | (config.isBlockCommands() ? BLOCK_COMMANDS : 0)
+                | (config.isBlockInteraction() ? BLOCK_INTERACTION : 0)
+                | (config.isBlockDamage() ? BLOCK_DAMAGE : 0)
+                | (config.isBlockInventory() ? BLOCK_INVENTORY : 0)
+                | (config.isTeleportToSpawn() ? TELEPORT_TO_SPAWN : 0)
+                | (config.isHideFromPlayerList() ? HIDE_FROM_PLAYER_LIST : 0)
+                | (config.isBlindEffect() ? BLIND_EFFECT : 0);
+        
+        // Players in limbo may move, and the limbo spawn replaces the world spawn
+        if (plugin.getLimboManager().isAvailable()) {
+            protection = (protection & ~(BLOCK_MOVEMENT | TELEPORT_TO_SPAWN)) | SEND_TO_LIMBO;
+        }
+        
+        int[] masks = new int[AuthState.values().length + 1];
+        Arrays.fill(masks, protection);
+        masks[AuthState.AUTHENTICATED.ordinal()] = 0;
+        stateMasks = masks;
+    }
+    
+    /**
+     * Gets the protection of a player.
+     *
+     * @param player The player
+     * @return The bitmask of the BLOCK_* and other protection flags that apply
+     */
+    public int getProtection(Player player) {
+        AuthState state = plugin.getSessionManager().getState(player);
+        // Most players are logged in, and nothing applies to them
+        if (state == AuthState.AUTHENTICATED) {
+            return 0;
+        }
+        int[] masks = stateMasks;
+        return masks[state != null ? state.ordinal() : masks.length - 1];
     }
     
     public boolean shouldBlockMovement(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlockMovement();
+        return (getProtection(player) & BLOCK_MOVEMENT) != 0;
     }
     
     public boolean shouldBlockChat(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlockChat();
+        return (getProtection(player) & BLOCK_CHAT) != 0;
     }
     
     public boolean shouldBlockCommand(Player player, String command) {
-        if (plugin.getSessionManager().isAuthenticated(player)) {
-            return false;
-        }
-        
-        if (!plugin.getConfigManager().isBlockCommands()) {
+        if ((getProtection(player) & BLOCK_COMMANDS) == 0) {
             return false;
         }
         
@@ -44,27 +127,57 @@ public class ProtectionManager {
     }
     
     public boolean shouldBlockInteraction(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlockInteraction();
+        return (getProtection(player) & BLOCK_INTERACTION) != 0;
     }
     
     public boolean shouldBlockDamage(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlockDamage();
+        return (getProtection(player) & BLOCK_DAMAGE) != 0;
     }
     
     public boolean shouldBlockInventory(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlockInventory();
+        return (getProtection(player) & BLOCK_INVENTORY) != 0;
     }
     
     public boolean shouldTeleportToSpawn(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isTeleportToSpawn();
+        return (getProtection(player) & TELEPORT_TO_SPAWN) != 0;
     }
     
     public boolean shouldHideFromPlayerList(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isHideFromPlayerList();
+        return (getProtection(player) & HIDE_FROM_PLAYER_LIST) != 0;
     }
     
     public boolean shouldApplyBlindEffect(Player player) {
-        return !plugin.getSessionManager().isAuthenticated(player) && plugin.getConfigManager().isBlindEffect();
+        return (getProtection(player) & BLIND_EFFECT) != 0;
+    }
+    
+    public boolean shouldSendToLimbo(Player player) {
+        return (getProtection(player) & SEND_TO_LIMBO) != 0;
+    }
+    
+    /**
+     * Registers the listener of players who are not logged in if any are online, and
+     * unregisters it otherwise. Called after every change of a player's state.
+     */
+    public void updateListener() {
+        if (!plugin.getServer().isPrimaryThread()) {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, this::updateListener);
+            }
+            return;
+        }
+        
+        boolean needed = plugin.getSessionManager().hasUnauthenticatedPlayers();
+        if (needed && !listenerRegistered) {
+            plugin.getServer().getPluginManager().registerEvents(listener, plugin);
+            listenerRegistered = true;
+        } else if (!needed && listenerRegistered) {
+            HandlerList.unregisterAll(listener);
+            listenerRegistered = false;
+        }
+    }
+    
+    public boolean isListenerRegistered() {
+        return listenerRegistered;
     }
     
     public void applyProtection(Player player) {
@@ -75,13 +188,13 @@ public class ProtectionManager {
         
         // Hide from player list if enabled
         if (shouldHideFromPlayerList(player)) {
-            for (Player onlinePlayer : plugin.getServer().getOnlinePlayers()) {
-                onlinePlayer.hidePlayer(plugin, player);
-            }
+            plugin.getVisibilityManager().hide(player);
         }
         
-        // Teleport to spawn if enabled
-        if (shouldTeleportToSpawn(player)) {
+        // Send to limbo or teleport to spawn if enabled
+        if (shouldSendToLimbo(player)) {
+            plugin.getLimboManager().enter(player);
+        } else if (shouldTeleportToSpawn(player)) {
             player.teleport(player.getWorld().getSpawnLocation());
         }
         
@@ -105,17 +218,118 @@ public class ProtectionManager {
         }
     }
     
+    /**
+     * Kicks or warns the player once the login timeout has passed, unless they logged in.
+     *
+     * @param player The player who joined
+     */
+    public void startLoginTimeout(Player player) {
+        if (plugin.getConfigManager().getLoginTimeout() <= 0) {
+            return;
+        }
+        
+        TimerWheel.Timeout timeout = plugin.getTicker().schedule(() -> {
+            loginTimeouts.remove(player.getUniqueId());
+            
+            // Check if player is still online and not authenticated
+            if (player.isOnline() && !plugin.getSessionManager().isAuthenticated(player)) {
+                if (plugin.getConfigManager().isKickOnTimeout()) {
+                    player.kickPlayer(plugin.getMessageManager().getMessage("login.timeout"));
+                } else {
+                    plugin.getMessageManager().sendMessage(player, "login.timeout");
+                }
+            }
+        }, System.currentTimeMillis() + plugin.getConfigManager().getLoginTimeout() * 1000L);
+        
+        replaceTimeout(loginTimeouts, player.getUniqueId(), timeout);
+    }
+    
+    /**
+     * Starts reminding the player to login or register, every reminder interval
+     * 
+     * @param player The player to remind
+     */
+    public void startReminder(Player player) {
+        // Only start if reminder interval is greater than 0
+        int reminderInterval = plugin.getConfigManager().getReminderInterval();
+        if (reminderInterval <= 0) {
+            return;
+        }
+        
+        UUID uuid = player.getUniqueId();
+        long interval = reminderInterval * 1000L;
+        
+        // The reminder moves its own timeout to the next interval until the player logs in
+        TimerWheel.Timeout[] reminder = new TimerWheel.Timeout[1];
+        reminder[0] = plugin.getTicker().schedule(() -> {
+            // A replaced reminder may still run in the tick it was replaced
+            if (reminders.get(uuid) != reminder[0]) {
+                return;
+            }
+            
+            // Only send reminder if player is still online and not authenticated
+            if (player.isOnline() && !plugin.getSessionManager().isAuthenticated(player)) {
+                sendAuthenticationMessage(player);
+                plugin.getTicker().reschedule(reminder[0], System.currentTimeMillis() + interval);
+            } else {
+                reminders.remove(uuid);
+            }
+        }, System.currentTimeMillis() + interval);
+        
+        // Replace any existing reminder for this player
+        replaceTimeout(reminders, uuid, reminder[0]);
+    }
+    
+    private static void replaceTimeout(Map<UUID, TimerWheel.Timeout> timeouts, UUID uuid, TimerWheel.Timeout timeout) {
+        TimerWheel.Timeout previous = timeouts.put(uuid, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+    
+    /**
+     * Cancels the login timeout and reminder of a player.
+     *
+     * @param uuid The UUID of the player
+     */
+    public void cancelTimeouts(UUID uuid) {
+        TimerWheel.Timeout loginTimeout = loginTimeouts.remove(uuid);
+        if (loginTimeout != null) {
+            loginTimeout.cancel();
+        }
+        
+        TimerWheel.Timeout reminder = reminders.remove(uuid);
+        if (reminder != null) {
+            reminder.cancel();
+        }
+    }
+    
+    /**
+     * Lifts every protection of a player who became authenticated: the login timeout and
+     * reminder, blindness, the tab-list hide and limbo. May be called from any thread.
+     *
+     * @param player The player
+     */
     public void removeProtection(Player player) {
+        if (!plugin.getServer().isPrimaryThread()) {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, () -> removeProtection(player));
+            }
+            return;
+        }
+        
+        // Cancel login timeout and reminder
+        cancelTimeouts(player.getUniqueId());
+        
         // Remove blindness effect if it was applied
         if (player.hasPotionEffect(PotionEffectType.BLINDNESS)) {
             player.removePotionEffect(PotionEffectType.BLINDNESS);
         }
         
         // Show player in player list if they were hidden
-        if (plugin.getConfigManager().isHideFromPlayerList()) {
-            for (Player onlinePlayer : plugin.getServer().getOnlinePlayers()) {
-                onlinePlayer.showPlayer(plugin, player);
-            }
-        }
+        plugin.getVisibilityManager().show(player);
+        
+        // Return from limbo if the player was sent there
+        plugin.getLimboManager().leave(player);
     }
 }
@@ -0,0 +1,198 @@
+package com.rookygod.authlite.protection;
+
+import com.rookygod.authlite.AuthLite;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Hides players who are not logged in from everyone else, for
+ * protection.hide-from-player-list.
+ * <p>
+ * A player who joins is hidden from everyone else, and everyone hidden is hidden from
+ * them, right away in the join handler, so no one sees a player who is not logged in
+ * even for a tick. Every later hide or show costs one packet per player online, so
+ * those are not applied right away but collected and applied once per tick on the
+ * plugin's ticker. A player who is hidden and shown again within a tick costs
+ * nothing. Players who were hidden when they left are shown again when they return
+ * logged in.
+ * <p>
+ * Hides are always sent, even to players who already cannot see the player, since
+ * another plugin (such as a vanish plugin) may be the one hiding them and will show
+ * them again on its own.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class VisibilityManager {
+
+    private final AuthLite plugin;
+    // Players who should be hidden
+    private final Set<UUID> hidden = new HashSet<>();
+    // Players whose visibility changed since the last flush, and how many times
+    private final Map<UUID, Integer> changes = new HashMap<>();
+    // Players who joined since the last flush
+    private final Set<UUID> joined = new LinkedHashSet<>();
+    private boolean flushScheduled;
+
+    private long sentCount;
+    private long savedCount;
+
+    public VisibilityManager(AuthLite plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Hides a player from everyone else, right away if they joined this tick and from
+     * the next tick on otherwise.
+     *
+     * @param player The player who is not logged in
+     */
+    public void hide(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (!hidden.add(uuid)) {
+            return;
+        }
+
+        if (joined.contains(uuid) && !changes.containsKey(uuid)) {
+            sentCount += apply(player, true, plugin.getServer().getOnlinePlayers());
+        } else {
+            queue(uuid);
+        }
+    }
+
+    /**
+     * Shows a hidden player to everyone else from the next tick on.
+     *
+     * @param player The player who logged in
+     */
+    public void show(Player player) {
+        if (hidden.remove(player.getUniqueId())) {
+            queue(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Hides the hidden players from a player who joined, right away. Must be called
+     * in the join handler, before the player may be hidden themselves.
+     *
+     * @param player The player who joined
+     */
+    public void playerJoined(Player player) {
+        for (UUID hiddenUuid : hidden) {
+            Player target = plugin.getServer().getPlayer(hiddenUuid);
+            if (target != null && target != player) {
+                player.hidePlayer(plugin, target);
+                sentCount++;
+            }
+        }
+
+        joined.add(player.getUniqueId());
+        scheduleFlush();
+    }
+
+    /**
+     * Forgets a player who left. The players who could not see them keep them hidden
+     * until they return.
+     *
+     * @param player The player who left
+     */
+    public void playerQuit(Player player) {
+        UUID uuid = player.getUniqueId();
+        hidden.remove(uuid);
+        changes.remove(uuid);
+        joined.remove(uuid);
+    }
+
+    private void queue(UUID uuid) {
+        changes.merge(uuid, 1, Integer::sum);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            plugin.getTicker().schedule(this::flush, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Applies the changes since the last flush.
+     */
+    private void flush() {
+        flushScheduled = false;
+        Collection<? extends Player> online = plugin.getServer().getOnlinePlayers();
+        int viewers = Math.max(0, online.size() - 1);
+
+        for (Map.Entry<UUID, Integer> change : changes.entrySet()) {
+            Player target = plugin.getServer().getPlayer(change.getKey());
+            int sent = target != null ? apply(target, hidden.contains(change.getKey()), online) : 0;
+            sentCount += sent;
+            // Without batching, every change would have been sent to every player
+            savedCount += (long) change.getValue() * viewers - sent;
+        }
+
+        for (UUID uuid : joined) {
+            Player player = plugin.getServer().getPlayer(uuid);
+            // Show a player who was hidden when they left, unless they are hidden again
+            if (player != null && !hidden.contains(uuid) && !changes.containsKey(uuid)) {
+                sentCount += apply(player, false, online);
+            }
+        }
+
+        changes.clear();
+        joined.clear();
+    }
+
+    /**
+     * Hides a player from everyone else, or shows them to everyone who cannot see them.
+     *
+     * @return The number of players the player was hidden from or shown to
+     */
+    private int apply(Player target, boolean hide, Collection<? extends Player> online) {
+        int sent = 0;
+        for (Player viewer : online) {
+            // Only our own hide is lifted by a show, so a player who is seen needs none
+            if (viewer == target || (!hide && viewer.canSee(target))) {
+                continue;
+            }
+
+            if (hide) {
+                viewer.hidePlayer(plugin, target);
+            } else {
+                viewer.showPlayer(plugin, target);
+            }
+            sent++;
+        }
+        return sent;
+    }
+
+    public int getHiddenCount() {
+        return hidden.size();
+    }
+
+    /**
+     * Gets the number of times a player was hidden from or shown to another player.
+     *
+     * @return The number of visibility updates sent
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Gets the number of updates that applying every batched hide and show to everyone
+     * right away would have sent on top of those actually sent. Hides applied while a
+     * player joins are not batched, so they save nothing.
+     *
+     * @return The number of visibility updates saved
+     */
+    public long getSavedCount() {
+        return savedCount;
+    }
+}
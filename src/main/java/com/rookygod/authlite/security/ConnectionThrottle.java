@@ -0,0 +1,361 @@
+package com.rookygod.authlite.security;
+
+import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.config.ConfigManager;
+import com.rookygod.authlite.utils.LongPairMap;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the rate of connections per address, per subnet (/24 for IPv4, /48 for IPv6)
+ * and for the whole server, so bot waves are turned away before they join a world.
+ * <p>
+ * Every limit counts connections in a sliding window, approximated by the count of the
+ * current and the previous window weighted by how much of the previous one still
+ * overlaps. A window is a single long holding the window number and both counts: an
+ * {@link AtomicLong} per address, so counting a connection is one compare-and-set, and
+ * an entry of a {@link LongPairMap} per subnet, keyed by a primitive subnet key.
+ * <p>
+ * The global limit adapts to the usual join rate: it is a multiple of the average
+ * number of connections per window, learned only from windows that stayed under the
+ * limit so a sustained flood cannot raise the limit it is held to, and never below
+ * security.throttle.global-min. While the global limit is exceeded, the address and
+ * subnet limits are halved. Players with a valid session bypass all limits.
+ */
+public class ConnectionThrottle {
+
+    // Marks an address window that was evicted, so a concurrent connection retries with a new one
+    static final long EVICTED = Long.MIN_VALUE;
+    static final double RETRY = -1;
+    private static final long EVICTION_INTERVAL_TICKS = 20L * 60;
+    static final int MAX_COUNT = 0xFFFF;
+    // Weight of the latest window in the learned join rate
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private final AuthLite plugin;
+    private final Map<InetAddress, AtomicLong> addressWindows = new ConcurrentHashMap<>();
+    // Subnet key -> window state; counted under the map's monitor
+    private final LongPairMap subnetWindows = new LongPairMap(64);
+    private final long[] subnetValue = new long[2];
+    private final AtomicLong globalWindow = new AtomicLong();
+    private BukkitTask evictionTask;
+
+    private volatile boolean enabled;
+    private volatile long windowMillis;
+    private volatile int addressLimit;
+    private volatile int subnetLimit;
+    private volatile int globalMinimum;
+    private volatile double surgeFactor;
+
+    // Average connections per window outside of attacks, and the window it was last updated for
+    private volatile double baseline;
+    private final AtomicLong baselineWindow = new AtomicLong(-1);
+    private volatile boolean underAttack;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder addressRejections = new LongAdder();
+    private final LongAdder subnetRejections = new LongAdder();
+    private final LongAdder globalRejections = new LongAdder();
+
+    public ConnectionThrottle(AuthLite plugin) {
+        this.plugin = plugin;
+        applyConfig();
+        this.baseline = globalMinimum / Math.max(1, surgeFactor);
+
+        evictionTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                this::evictIdle, EVICTION_INTERVAL_TICKS, EVICTION_INTERVAL_TICKS);
+    }
+
+    /**
+     * Reads the throttle settings. Changing the window length starts counting afresh.
+     */
+    public void applyConfig() {
+        ConfigManager config = plugin.getConfigManager();
+        long window = Math.max(1, config.getThrottleWindow()) * 1000L;
+        if (window != windowMillis) {
+            addressWindows.clear();
+            synchronized (subnetWindows) {
+                subnetWindows.clear();
+            }
+            globalWindow.set(0);
+            baselineWindow.set(-1);
+        }
+
+        enabled = config.isThrottleEnabled();
+        windowMillis = window;
+        addressLimit = Math.max(1, config.getThrottleIpLimit());
+        subnetLimit = Math.max(1, config.getThrottleSubnetLimit());
+        globalMinimum = Math.max(1, config.getThrottleGlobalMin());
+        surgeFactor = Math.max(1, config.getThrottleSurgeFactor());
+    }
+
+    /**
+     * Counts a connection and decides whether it may go ahead. Called from
+     * {@code AsyncPlayerPreLoginEvent}, so it never blocks on anything but the session
+     * check of connections over a limit.
+     *
+     * @param uuid The UUID of the connecting player
+     * @param address The address of the connection
+     * @return True if the connection is allowed
+     */
+    public boolean tryConnect(UUID uuid, InetAddress address) {
+        if (!enabled) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        long window = now / windowMillis;
+        double overlap = 1 - (double) (now % windowMillis) / windowMillis;
+
+        double globalCount = count(globalWindow, window, overlap);
+        int globalLimit = updateBaseline(window);
+        underAttack = globalCount > globalLimit;
+        int divisor = underAttack ? 2 : 1;
+
+        LongAdder rejection = null;
+        if (countAddress(address, window, overlap) > Math.max(1, addressLimit / divisor)) {
+            rejection = addressRejections;
+        }
+        if (countSubnet(subnetKey(address), window, overlap) > Math.max(1, subnetLimit / divisor)
+                && rejection == null) {
+            rejection = subnetRejections;
+        }
+        if (underAttack && rejection == null) {
+            rejection = globalRejections;
+        }
+
+        if (rejection == null) {
+            allowed.increment();
+            return true;
+        }
+
+        // Only look the account up for connections that would be turned away
+        if (plugin.getDataManager().isRegistered(uuid)
+                && plugin.getSessionManager().hasValidSession(uuid, address)) {
+            bypassed.increment();
+            return true;
+        }
+
+        rejection.increment();
+        return false;
+    }
+
+    private static <K> AtomicLong window(Map<K, AtomicLong> windows, K key) {
+        AtomicLong window = windows.get(key);
+        if (window == null) {
+            // Only the first connection of a key allocates
+            AtomicLong created = new AtomicLong();
+            window = windows.putIfAbsent(key, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        return window;
+    }
+
+    private double countAddress(InetAddress address, long current, double overlap) {
+        while (true) {
+            AtomicLong window = window(addressWindows, address);
+            double count = count(window, current, overlap);
+            if (count != RETRY) {
+                return count;
+            }
+            addressWindows.remove(address, window);
+        }
+    }
+
+    /**
+     * Counts a connection in a window and estimates the connections of the sliding window
+     * ending now.
+     *
+     * @param window The window state: window number (32 bits), current count (16 bits) and previous count (16 bits)
+     * @param current The number of the current window
+     * @param overlap The share of the previous window that overlaps the sliding window
+     * @return The estimated number of connections, including this one, or {@link #RETRY}
+     *         if the window was evicted and must be looked up again
+     */
+    static double count(AtomicLong window, long current, double overlap) {
+        while (true) {
+            long state = window.get();
+            if (state == EVICTED) {
+                return RETRY;
+            }
+
+            long next = increment(state, current);
+            if (window.compareAndSet(state, next)) {
+                return estimate(next, overlap);
+            }
+        }
+    }
+
+    private double countSubnet(long key, long current, double overlap) {
+        synchronized (subnetWindows) {
+            long state = subnetWindows.get(key, 0, subnetValue) ? subnetValue[0] : 0;
+            long next = increment(state, current);
+            subnetWindows.put(key, 0, next, 0);
+            return estimate(next, overlap);
+        }
+    }
+
+    /**
+     * Adds a connection to a window state, rolling it over to the current window first.
+     */
+    static long increment(long state, long current) {
+        long number = state >>> 32;
+        int count = (int) (state >>> 16) & MAX_COUNT;
+        int previous = (int) state & MAX_COUNT;
+
+        if (number != (current & 0xFFFFFFFFL)) {
+            // Roll over; a window older than the previous one counts as empty
+            previous = number == ((current - 1) & 0xFFFFFFFFL) ? count : 0;
+            count = 0;
+        }
+        count = Math.min(MAX_COUNT, count + 1);
+
+        return ((current & 0xFFFFFFFFL) << 32) | ((long) count << 16) | previous;
+    }
+
+    static double estimate(long state, double overlap) {
+        return (state & MAX_COUNT) * overlap + ((state >>> 16) & MAX_COUNT);
+    }
+
+    /**
+     * Learns the usual connections per window from the windows that were not over the
+     * limit, once per window. Windows over the limit are left out, otherwise every
+     * window of a flood would raise the limit by a share of the flood.
+     *
+     * @return The current global limit
+     */
+    private int updateBaseline(long window) {
+        double factor = surgeFactor;
+        int limit = (int) Math.max(globalMinimum, baseline * factor);
+
+        long learned = baselineWindow.get();
+        if (learned != window && baselineWindow.compareAndSet(learned, window) && learned >= 0) {
+            // The global window has rolled over, so its previous count is final
+            long state = globalWindow.get();
+            int previous = (state >>> 32) == (window & 0xFFFFFFFFL) ? (int) state & MAX_COUNT : 0;
+            if (previous <= limit && !underAttack) {
+                baseline += BASELINE_ALPHA * (previous - baseline);
+                limit = (int) Math.max(globalMinimum, baseline * factor);
+            }
+        }
+        return limit;
+    }
+
+    static long subnetKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return (1L << 32) | ((bytes[0] & 0xFFL) << 16) | ((bytes[1] & 0xFFL) << 8) | (bytes[2] & 0xFFL);
+        }
+
+        long prefix = 0;
+        for (int i = 0; i < 6; i++) {
+            prefix = (prefix << 8) | (bytes[i] & 0xFF);
+        }
+        return (2L << 48) | prefix;
+    }
+
+    /**
+     * Drops windows that have not counted a connection in the current or previous window.
+     */
+    private void evictIdle() {
+        long current = System.currentTimeMillis() / windowMillis;
+        for (Map.Entry<InetAddress, AtomicLong> entry : addressWindows.entrySet()) {
+            AtomicLong window = entry.getValue();
+            long state = window.get();
+            if (state != EVICTED && isIdle(state, current) && window.compareAndSet(state, EVICTED)) {
+                addressWindows.remove(entry.getKey(), window);
+            }
+        }
+
+        synchronized (subnetWindows) {
+            long[][] idle = {new long[16]};
+            int[] size = {0};
+            subnetWindows.forEach((key, keyLow, state, valueLow) -> {
+                if (isIdle(state, current)) {
+                    if (size[0] == idle[0].length) {
+                        idle[0] = Arrays.copyOf(idle[0], size[0] * 2);
+                    }
+                    idle[0][size[0]++] = key;
+                }
+            });
+            for (int i = 0; i < size[0]; i++) {
+                subnetWindows.remove(idle[0][i], 0);
+            }
+        }
+    }
+
+    static boolean isIdle(long state, long current) {
+        long number = state >>> 32;
+        return number != (current & 0xFFFFFFFFL) && number != ((current - 1) & 0xFFFFFFFFL);
+    }
+
+    public void shutdown() {
+        if (evictionTask != null) {
+            evictionTask.cancel();
+            evictionTask = null;
+        }
+    }
+
+    /**
+     * Checks whether the join rate is currently over the global limit.
+     *
+     * @return True while the server is shedding connections
+     */
+    public boolean isUnderAttack() {
+        return underAttack;
+    }
+
+    /**
+     * Gets the current global limit, learned from the usual join rate.
+     *
+     * @return The limit in connections per window
+     */
+    public int getGlobalLimit() {
+        return (int) Math.max(globalMinimum, baseline * surgeFactor);
+    }
+
+    /**
+     * Gets the number of addresses and subnets that currently have a window.
+     *
+     * @return The number of tracked windows
+     */
+    public int getTrackedCount() {
+        return addressWindows.size() + subnetWindows.size();
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    /**
+     * Gets the number of connections over a limit that were let in because the player
+     * had a valid session.
+     *
+     * @return The number of bypassed connections
+     */
+    public long getBypassedCount() {
+        return bypassed.sum();
+    }
+
+    public long getAddressRejections() {
+        return addressRejections.sum();
+    }
+
+    public long getSubnetRejections() {
+        return subnetRejections.sum();
+    }
+
+    public long getGlobalRejections() {
+        return globalRejections.sum();
+    }
+}
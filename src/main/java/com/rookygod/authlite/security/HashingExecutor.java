@@ -0,0 +1,192 @@
+package com.rookygod.authlite.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of threads that runs password hashing off the main thread.
+ * <p>
+ * Hashing is slow on purpose, so a burst of logins must not pile up unbounded work:
+ * once every thread is busy and the queue is full, new tasks fail right away with a
+ * {@link RejectedExecutionException} and the player is asked to try again. The pool
+ * keeps counters of queue depth and of the time tasks spend waiting and running.
+ */
+public class HashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<Runnable> queue;
+    private final int threads;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+
+    /**
+     * Creates the pool and starts its threads.
+     *
+     * @param threads The number of hashing threads
+     * @param queueSize The number of tasks that may wait for a thread
+     */
+    public HashingExecutor(int threads, int queueSize) {
+        this.threads = Math.max(1, threads);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS, queue, task -> {
+            Thread thread = new Thread(task, "AuthLite-Hashing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            // Keep hashing from competing with the main thread for CPU time
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Runs a task on a hashing thread.
+     *
+     * @param task The task to run
+     * @return A future completed on the hashing thread with the result of the task, or
+     *         already failed with a RejectedExecutionException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                long started = System.nanoTime();
+                T result;
+                try {
+                    result = task.get();
+                } catch (Throwable t) {
+                    record(submitted, started, System.nanoTime());
+                    future.completeExceptionally(t);
+                    return;
+                }
+
+                // Record before completing, so callers see their own task in the metrics
+                record(submitted, started, System.nanoTime());
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private void record(long submitted, long started, long finished) {
+        long latency = finished - submitted;
+        completed.incrementAndGet();
+        totalWaitNanos.addAndGet(started - submitted);
+        totalRunNanos.addAndGet(finished - started);
+        lastLatencyNanos = latency;
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Stops accepting tasks and waits briefly for queued ones to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getThreadCount() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of threads currently hashing.
+     *
+     * @return The number of busy threads
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of tasks waiting for a thread.
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Gets the number of tasks turned away because the queue was full.
+     *
+     * @return The number of rejected tasks
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Gets the average time tasks waited in the queue before a thread picked them up.
+     *
+     * @return The average wait in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = completed.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / (count * 1_000_000.0);
+    }
+
+    /**
+     * Gets the average time a task took to run once picked up.
+     *
+     * @return The average run time in milliseconds
+     */
+    public double getAverageRunMillis() {
+        long count = completed.get();
+        return count == 0 ? 0 : totalRunNanos.get() / (count * 1_000_000.0);
+    }
+
+    /**
+     * Gets the total time threads have spent running tasks since startup.
+     *
+     * @return The busy time in nanoseconds
+     */
+    public long getBusyNanos() {
+        return totalRunNanos.get();
+    }
+
+    /**
+     * Gets the time from submission to completion of the last task.
+     *
+     * @return The last latency in milliseconds
+     */
+    public double getLastLatencyMillis() {
+        return lastLatencyNanos / 1_000_000.0;
+    }
+
+    /**
+     * Gets the longest time from submission to completion of any task.
+     *
+     * @return The maximum latency in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+}
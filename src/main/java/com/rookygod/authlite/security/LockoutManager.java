@@ -0,0 +1,351 @@
+package com.rookygod.authlite.security;
+
+import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.config.ConfigManager;
+import com.rookygod.authlite.utils.AddressUtils;
+import com.rookygod.authlite.utils.LongPairMap;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Locks accounts and addresses out after repeated wrong passwords, across reconnects
+ * and restarts.
+ * <p>
+ * Every account and address with recent failures has one entry in a {@link LongPairMap}:
+ * the key is the UUID or the IPv6 (or IPv4-mapped) address, the value holds the time the
+ * lockout ends and, packed into one long, the time of the last failure, the backoff level
+ * and the failure count. Each lockout doubles the next one up to
+ * security.lockout.max-duration; every security.lockout.decay without a failure forgets
+ * the failure count and steps the backoff down, and entries that have decayed completely
+ * are dropped. Lookups are lock-free and allocate no more than the key, so they run in
+ * {@code AsyncPlayerPreLoginEvent}. Changes are written to lockouts.dat asynchronously.
+ */
+public class LockoutManager {
+
+    private static final int MAGIC = 0x414C4C4F; // "ALLO"
+    private static final int VERSION = 1;
+    private static final long FLUSH_INTERVAL_TICKS = 20L * 10;
+
+    private final AuthLite plugin;
+    private final File file;
+    private final LongPairMap accounts = new LongPairMap(64);
+    private final LongPairMap addresses = new LongPairMap(64);
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Object fileLock = new Object();
+    private BukkitTask flushTask;
+
+    private volatile boolean enabled;
+    private volatile int accountMaxAttempts;
+    private volatile int addressMaxAttempts;
+    private volatile long durationMillis;
+    private volatile long maxDurationMillis;
+    private volatile long decaySeconds;
+
+    public LockoutManager(AuthLite plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "lockouts.dat");
+        applyConfig();
+        load();
+
+        flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                this::flushChanges, FLUSH_INTERVAL_TICKS, FLUSH_INTERVAL_TICKS);
+    }
+
+    /**
+     * Reads the lockout settings. Lockouts already in place keep their end time.
+     */
+    public void applyConfig() {
+        ConfigManager config = plugin.getConfigManager();
+        enabled = config.isLockoutEnabled();
+        accountMaxAttempts = Math.max(1, config.getMaxLoginAttempts());
+        addressMaxAttempts = Math.max(1, config.getLockoutIpMaxAttempts());
+        durationMillis = Math.max(1, config.getLockoutDuration()) * 1000L;
+        maxDurationMillis = Math.max(durationMillis, config.getLockoutMaxDuration() * 1000L);
+        decaySeconds = Math.max(1, config.getLockoutDecay());
+    }
+
+    /**
+     * Gets how long a player is still locked out, by account or by address.
+     *
+     * @param player The player
+     * @return The remaining lockout in milliseconds, or 0 if the player is not locked out
+     */
+    public long getRemainingMillis(Player player) {
+        InetSocketAddress address = player.getAddress();
+        return getRemainingMillis(player.getUniqueId(), address != null ? address.getAddress() : null);
+    }
+
+    /**
+     * Gets how long a connection is still locked out, by account or by address. Cheap
+     * enough to call while players connect.
+     *
+     * @param uuid The UUID of the account
+     * @param address The address of the connection, or null if it is unknown
+     * @return The remaining lockout in milliseconds, or 0 if neither is locked out
+     */
+    public long getRemainingMillis(UUID uuid, InetAddress address) {
+        if (!enabled) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        long[] value = new long[2];
+        long remaining = 0;
+
+        if (accounts.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value)) {
+            remaining = value[0] - now;
+        }
+
+        if (address != null) {
+            byte[] bytes = address.getAddress();
+            if (addresses.get(AddressUtils.toHigh(bytes), AddressUtils.toLow(bytes), value)) {
+                remaining = Math.max(remaining, value[0] - now);
+            }
+        }
+
+        return Math.max(0, remaining);
+    }
+
+    /**
+     * Records a wrong password for the account and address of a player.
+     *
+     * @param player The player who entered a wrong password
+     * @return The lockout in milliseconds if this failure locked the player out, otherwise 0
+     */
+    public synchronized long recordFailure(Player player) {
+        if (!enabled) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        UUID uuid = player.getUniqueId();
+        long locked = recordFailure(accounts, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                accountMaxAttempts, now);
+
+        InetSocketAddress address = player.getAddress();
+        if (address != null) {
+            byte[] bytes = address.getAddress().getAddress();
+            locked = Math.max(locked, recordFailure(addresses, AddressUtils.toHigh(bytes), AddressUtils.toLow(bytes),
+                    addressMaxAttempts, now));
+        }
+
+        dirty.set(true);
+        return locked;
+    }
+
+    private long recordFailure(LongPairMap entries, long keyHigh, long keyLow, int maxAttempts, long now) {
+        long nowSeconds = now / 1000;
+        long[] value = new long[2];
+        int failures = 0;
+        int level = 0;
+
+        if (entries.get(keyHigh, keyLow, value)) {
+            long lastFailure = lastFailure(value[1]);
+            failures = failures(value[1]);
+            level = level(value[1]);
+
+            long periods = (nowSeconds - lastFailure) / decaySeconds;
+            if (periods > 0) {
+                failures = 0;
+                level = (int) Math.max(0, level - periods);
+            }
+        }
+
+        long lockedUntil = value[0];
+        long locked = 0;
+        if (++failures >= maxAttempts) {
+            level = Math.min(level + 1, 0xFFFF);
+            failures = 0;
+            locked = lockoutMillis(level);
+            lockedUntil = now + locked;
+        }
+
+        entries.put(keyHigh, keyLow, lockedUntil, pack(nowSeconds, level, failures));
+        return locked;
+    }
+
+    /**
+     * Gets the lockout for a backoff level: the base duration doubled for every level
+     * above the first, capped at the maximum duration.
+     */
+    private long lockoutMillis(int level) {
+        int shift = Math.min(level - 1, 62);
+        // Compare before shifting, so long durations cannot overflow
+        if (durationMillis > maxDurationMillis >> shift) {
+            return maxDurationMillis;
+        }
+        return durationMillis << shift;
+    }
+
+    /**
+     * Clears the failures of an account after its password was entered correctly. The
+     * address keeps its failures, since it may be guessing other accounts.
+     *
+     * @param player The player who logged in
+     */
+    public synchronized void recordSuccess(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (accounts.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Gets the number of accounts and addresses with recent failures.
+     *
+     * @return The number of tracked entries
+     */
+    public int getTrackedCount() {
+        return accounts.size() + addresses.size();
+    }
+
+    /**
+     * Stops the flush task and writes the remaining changes.
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flushChanges();
+    }
+
+    private void flushChanges() {
+        evictExpired();
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            save();
+        } catch (IOException e) {
+            dirty.set(true);
+            plugin.getLogger().log(Level.WARNING, "Could not save " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Drops entries whose lockout is over and whose failures and backoff have decayed.
+     */
+    private synchronized void evictExpired() {
+        long now = System.currentTimeMillis();
+        if (evictExpired(accounts, now) | evictExpired(addresses, now)) {
+            dirty.set(true);
+        }
+    }
+
+    private boolean evictExpired(LongPairMap entries, long now) {
+        long[][] expired = {new long[16]};
+        int[] size = {0};
+
+        entries.forEach((keyHigh, keyLow, lockedUntil, state) -> {
+            long idleSeconds = now / 1000 - lastFailure(state);
+            if (lockedUntil > now || idleSeconds < decaySeconds * Math.max(1, level(state))) {
+                return;
+            }
+
+            if (size[0] + 2 > expired[0].length) {
+                expired[0] = Arrays.copyOf(expired[0], expired[0].length * 2);
+            }
+            expired[0][size[0]++] = keyHigh;
+            expired[0][size[0]++] = keyLow;
+        });
+
+        for (int i = 0; i < size[0]; i += 2) {
+            entries.remove(expired[0][i], expired[0][i + 1]);
+        }
+        return size[0] > 0;
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file.getName() + " has an unknown format");
+            }
+            read(in, accounts);
+            read(in, addresses);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not load " + file.getName() + ", starting without lockouts", e);
+            accounts.clear();
+            addresses.clear();
+        }
+    }
+
+    private static void read(DataInputStream in, LongPairMap entries) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            entries.put(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    private void save() throws IOException {
+        synchronized (fileLock) {
+            File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                write(out, accounts);
+                write(out, addresses);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static void write(DataOutputStream out, LongPairMap entries) throws IOException {
+        // Copy first, so the map is not locked while writing
+        long[][] copy = {new long[64]};
+        int[] size = {0};
+        entries.forEach((keyHigh, keyLow, valueHigh, valueLow) -> {
+            if (size[0] + 4 > copy[0].length) {
+                copy[0] = Arrays.copyOf(copy[0], copy[0].length * 2);
+            }
+            copy[0][size[0]++] = keyHigh;
+            copy[0][size[0]++] = keyLow;
+            copy[0][size[0]++] = valueHigh;
+            copy[0][size[0]++] = valueLow;
+        });
+
+        out.writeInt(size[0] / 4);
+        for (int i = 0; i < size[0]; i++) {
+            out.writeLong(copy[0][i]);
+        }
+    }
+
+    // State layout: last failure in epoch seconds (32 bits), backoff level (16 bits), failures (16 bits)
+    private static long pack(long lastFailureSeconds, int level, int failures) {
+        return (lastFailureSeconds << 32) | ((long) (level & 0xFFFF) << 16) | (failures & 0xFFFF);
+    }
+
+    private static long lastFailure(long state) {
+        return state >>> 32;
+    }
+
+    private static int level(long state) {
+        return (int) (state >>> 16) & 0xFFFF;
+    }
+
+    private static int failures(long state) {
+        return (int) state & 0xFFFF;
+    }
+}
@@ -0,0 +1,141 @@
+package com.rookygod.authlite.security;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Hashes passwords with PBKDF2-HMAC-SHA256 and verifies them.
+ * <p>
+ * Hashes are stored as {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} with a Base64
+ * salt and hash, so the cost of every hash is known when it is verified and can be
+ * raised without invalidating existing passwords. Any other stored value is treated
+ * as a plaintext password from before hashing was introduced.
+ * <p>
+ * Hashing is slow on purpose and must not run on the main thread; see
+ * {@link HashingExecutor}.
+ */
+public class PasswordHasher {
+
+    /** Format of legacy passwords stored as plaintext */
+    public static final int FORMAT_PLAINTEXT = 0;
+    /** Format of PBKDF2-HMAC-SHA256 hashes */
+    public static final int FORMAT_PBKDF2_SHA256 = 1;
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Hashes a password with a new random salt.
+     *
+     * @param password The password to hash
+     * @param iterations The number of PBKDF2 iterations
+     * @return The encoded hash
+     */
+    public String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+
+        byte[] hash = derive(password, salt, iterations, HASH_LENGTH);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against a stored hash or legacy plaintext password.
+     *
+     * @param password The password to check
+     * @param stored The stored hash or plaintext password
+     * @return True if the password matches
+     */
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+
+        try {
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (iterations <= 0 || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(derive(password, salt, iterations, expected.length), expected);
+        } catch (IllegalArgumentException e) {
+            // Malformed iteration count or Base64
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of iterations a stored hash was made with.
+     *
+     * @param stored The stored hash or plaintext password
+     * @return The number of iterations, or 0 if the password is plaintext or malformed
+     */
+    public static int getIterations(String stored) {
+        if (!isHashed(stored)) {
+            return 0;
+        }
+
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 ? 0 : Math.max(0, Integer.parseInt(stored.substring(PREFIX.length(), end)));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the format of a stored password. The format is part of every stored value, so
+     * no record needs a separate version field.
+     *
+     * @param stored The stored hash or plaintext password
+     * @return {@link #FORMAT_PBKDF2_SHA256} or {@link #FORMAT_PLAINTEXT}
+     */
+    public static int getFormat(String stored) {
+        return isHashed(stored) ? FORMAT_PBKDF2_SHA256 : FORMAT_PLAINTEXT;
+    }
+
+    /**
+     * Checks whether a stored password is a hash rather than legacy plaintext.
+     *
+     * @param stored The stored password
+     * @return True if the password was hashed by this class
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int length) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, length * 8);
+        try {
+            // Factories are not thread-safe, and creating one is cheap next to the hash itself
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+}
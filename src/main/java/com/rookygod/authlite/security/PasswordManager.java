@@ -0,0 +1,257 @@
+package com.rookygod.authlite.security;
+
+import com.rookygod.authlite.AuthLite;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+
+/**
+ * Hashes and verifies passwords on the {@link HashingExecutor}, so login, register and
+ * password changes never spend CPU time on the main thread.
+ * <p>
+ * Unless security.hashing.iterations fixes the cost, it is calibrated on startup: every
+ * hashing thread hashes at once, like during a burst of logins, and the highest number
+ * of iterations whose 99th percentile stays within security.hashing.latency-budget is
+ * used for new hashes.
+ */
+public class PasswordManager {
+
+    // Used until calibration finishes, or if it fails
+    private static final int DEFAULT_ITERATIONS = 310_000;
+    private static final int PROBE_ITERATIONS = 10_000;
+    private static final int SAMPLES_PER_THREAD = 12;
+    private static final int CALIBRATION_ROUNDS = 3;
+    // Calibrated costs vary a little between restarts; only rehash beyond this relative difference
+    private static final double REHASH_TOLERANCE = 0.2;
+
+    private final AuthLite plugin;
+    private final PasswordHasher hasher = new PasswordHasher();
+    private final HashingExecutor executor;
+    private volatile int calibratedIterations;
+    private volatile int calibratedBudget;
+
+    public PasswordManager(AuthLite plugin) {
+        this.plugin = plugin;
+
+        int threads = plugin.getConfigManager().getHashThreads();
+        if (threads <= 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        this.executor = new HashingExecutor(threads, plugin.getConfigManager().getHashQueueSize());
+
+        // The server is not ticking yet, so startup can wait for the calibration
+        if (plugin.getConfigManager().getHashIterations() <= 0) {
+            calibrate(plugin.getConfigManager().getHashLatencyBudget());
+        }
+    }
+
+    /**
+     * Applies reloaded settings. If the cost is automatic and was not calibrated for the
+     * configured budget yet, it is calibrated off the main thread while the previous
+     * cost stays in use.
+     *
+     * @return A future completed once the cost matches the settings
+     */
+    public CompletableFuture<Void> applyConfig() {
+        int budget = plugin.getConfigManager().getHashLatencyBudget();
+        if (plugin.getConfigManager().getHashIterations() > 0 || (calibratedIterations > 0 && calibratedBudget == budget)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.runAsync(() -> calibrate(budget),
+                task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task));
+    }
+
+    /**
+     * Finds the highest number of iterations whose 99th percentile hash time, with every
+     * hashing thread busy, stays within a budget, and uses it for new hashes.
+     *
+     * @param budgetMillis The latency budget in milliseconds
+     */
+    private void calibrate(int budgetMillis) {
+        long budget = Math.max(1, budgetMillis) * 1_000_000L;
+        int threads = executor.getThreadCount();
+
+        try {
+            // Warm up, then estimate the cost per iteration from a short run
+            measure(threads, 2, PROBE_ITERATIONS / 10);
+            long probe = percentile(measure(threads, 2, PROBE_ITERATIONS), 0.99);
+            int iterations = scale(PROBE_ITERATIONS, budget, probe);
+
+            // Check the estimate under load and scale down while it is over budget
+            long p99 = 0;
+            for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+                p99 = percentile(measure(threads, SAMPLES_PER_THREAD, iterations), 0.99);
+                if (p99 <= budget) {
+                    break;
+                }
+                iterations = scale(iterations, budget * 95 / 100, p99);
+            }
+
+            // Round to keep the value readable, and never go below the configured floor
+            iterations = Math.max(plugin.getConfigManager().getHashMinIterations(), iterations / 1000 * 1000);
+            calibratedIterations = iterations;
+            calibratedBudget = budgetMillis;
+
+            plugin.getLogger().info(String.format("Calibrated password hashing to %d iterations (p99 %.1fms of %dms budget on %d threads)",
+                    iterations, p99 / 1_000_000.0, budgetMillis, threads));
+        } catch (CompletionException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not calibrate password hashing, using "
+                    + getIterations() + " iterations", e.getCause());
+        }
+    }
+
+    /**
+     * Hashes on every hashing thread at once and records how long each hash took.
+     *
+     * @return The duration of every hash in nanoseconds
+     */
+    private long[] measure(int threads, int samplesPerThread, int iterations) {
+        List<CompletableFuture<long[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(executor.submit(() -> {
+                long[] durations = new long[samplesPerThread];
+                for (int sample = 0; sample < samplesPerThread; sample++) {
+                    long start = System.nanoTime();
+                    hasher.hash("calibration", iterations);
+                    durations[sample] = System.nanoTime() - start;
+                }
+                return durations;
+            }));
+        }
+
+        long[] durations = new long[threads * samplesPerThread];
+        for (int i = 0; i < threads; i++) {
+            System.arraycopy(tasks.get(i).join(), 0, durations, i * samplesPerThread, samplesPerThread);
+        }
+        return durations;
+    }
+
+    private static long percentile(long[] durations, double percentile) {
+        long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    private static int scale(int iterations, long budget, long measured) {
+        double scaled = (double) iterations * budget / Math.max(1, measured);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, scaled));
+    }
+
+    /**
+     * Hashes a password on a hashing thread.
+     *
+     * @param password The password to hash
+     * @return A future completed on the hashing thread with the encoded hash
+     */
+    public CompletableFuture<String> hash(String password) {
+        int iterations = getIterations();
+        return executor.submit(() -> hasher.hash(password, iterations));
+    }
+
+    /**
+     * Checks a password against a stored hash on a hashing thread.
+     *
+     * @param password The password to check
+     * @param stored The stored hash or legacy plaintext password
+     * @return A future completed on the hashing thread with true if the password matches
+     */
+    public CompletableFuture<Boolean> verify(String password, String stored) {
+        return executor.submit(() -> hasher.verify(password, stored));
+    }
+
+    /**
+     * Hashes a password on the calling thread. Only for API callers that cannot wait
+     * for a future; never call this on the main thread.
+     *
+     * @param password The password to hash
+     * @return The encoded hash
+     */
+    public String hashNow(String password) {
+        return hasher.hash(password, getIterations());
+    }
+
+    /**
+     * Checks a password on the calling thread. Only for API callers that cannot wait
+     * for a future; never call this on the main thread.
+     *
+     * @param password The password to check
+     * @param stored The stored hash or legacy plaintext password
+     * @return True if the password matches
+     */
+    public boolean verifyNow(String password, String stored) {
+        return hasher.verify(password, stored);
+    }
+
+    /**
+     * Checks whether a stored password should be hashed again with the current cost.
+     * Calibrated costs only trigger a rehash when they differ by more than a fifth, so
+     * measurement noise between restarts does not rehash every account.
+     *
+     * @param stored The stored hash or legacy plaintext password
+     * @return True if the password is plaintext or uses a different cost
+     */
+    public boolean needsRehash(String stored) {
+        int storedIterations = PasswordHasher.getIterations(stored);
+        int iterations = getIterations();
+        if (storedIterations <= 0) {
+            return true;
+        }
+
+        if (plugin.getConfigManager().getHashIterations() > 0) {
+            return storedIterations != iterations;
+        }
+        return Math.abs(storedIterations - iterations) > iterations * REHASH_TOLERANCE;
+    }
+
+    /**
+     * Gets the number of iterations new hashes use: the configured value, or the
+     * calibrated one if the cost is automatic.
+     *
+     * @return The number of PBKDF2 iterations
+     */
+    public int getIterations() {
+        int configured = plugin.getConfigManager().getHashIterations();
+        if (configured > 0) {
+            return configured;
+        }
+        return calibratedIterations > 0 ? calibratedIterations : DEFAULT_ITERATIONS;
+    }
+
+    public HashingExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Tells the sender that a hashing task failed: the server is busy if the queue was
+     * full, otherwise the error is logged.
+     *
+     * @param sender The sender whose command failed
+     * @param error The error the hashing future completed with
+     */
+    public void sendFailure(CommandSender sender, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        boolean busy = cause instanceof RejectedExecutionException;
+        if (!busy) {
+            plugin.getLogger().log(Level.SEVERE, "Could not hash the password of " + sender.getName(), cause);
+        }
+
+        if (sender instanceof Player player) {
+            plugin.getMessageManager().sendMessage(player, busy ? "security.busy" : "security.error");
+        } else {
+            sender.sendMessage(busy ? "The server is busy, please try again in a moment" : "Something went wrong, please try again");
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
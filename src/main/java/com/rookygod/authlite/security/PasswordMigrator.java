@@ -0,0 +1,315 @@
+package com.rookygod.authlite.security;
+
+import com.rookygod.authlite.AuthLite;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Hashes passwords that are still stored as plaintext in the background.
+ * <p>
+ * One thread scans the accounts for plaintext passwords, then upgrades them in small
+ * batches on the {@link HashingExecutor}. Logins go first: upgrades are handed to the
+ * pool one at a time and only while no login is queued for a hashing thread, so the
+ * migration never fills the bounded queue, and after each batch the thread sleeps long
+ * enough to keep the hashing time spent below security.migration.cpu-budget of the
+ * pool. Every stored password carries its format (see {@link PasswordHasher#getFormat(String)}),
+ * so an interrupted migration resumes by scanning again and skipping what is hashed;
+ * the totals are kept in password-migration.yml so progress survives restarts.
+ */
+public class PasswordMigrator {
+
+    private static final long IDLE_WAIT_MILLIS = 50;
+    private static final long RETRY_WAIT_MILLIS = 1000;
+
+    public enum Status {
+        IDLE, SCANNING, RUNNING, DONE
+    }
+
+    private final AuthLite plugin;
+    private final File progressFile;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile Status status = Status.IDLE;
+
+    // Progress of the current run
+    private final AtomicLong migrated = new AtomicLong();
+    private volatile long remaining;
+    private volatile long runStartedNanos;
+    private volatile long runFinishedNanos;
+
+    // Persisted progress
+    private long previouslyMigrated;
+    private boolean completed;
+    // Set by restart() while a run is in progress, so it scans again before completing
+    private boolean rescan;
+
+    public PasswordMigrator(AuthLite plugin) {
+        this.plugin = plugin;
+        this.progressFile = new File(plugin.getDataFolder(), "password-migration.yml");
+        loadProgress();
+    }
+
+    /**
+     * Starts migrating in the background, unless it is disabled or already complete.
+     */
+    public synchronized void start() {
+        if (thread != null || completed || !plugin.getConfigManager().isMigrationEnabled()) {
+            return;
+        }
+
+        running = true;
+        rescan = false;
+        thread = new Thread(this::run, "AuthLite-Migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts migrating again, for example after plaintext accounts were imported.
+     */
+    public synchronized void restart() {
+        completed = false;
+        if (thread == null) {
+            start();
+        } else {
+            rescan = true;
+        }
+    }
+
+    /**
+     * Stops migrating and saves the progress. Upgrades already handed to the hashing pool
+     * may still complete.
+     */
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+            running = false;
+        }
+
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            do {
+                migrateAll();
+            } while (running && !complete());
+
+            if (running) {
+                runFinishedNanos = System.nanoTime();
+                status = Status.DONE;
+                saveProgress();
+
+                if (migrated.get() > 0) {
+                    plugin.getLogger().info("Hashed " + migrated.get() + " plaintext passwords");
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not scan accounts for plaintext passwords", e);
+        } catch (InterruptedException e) {
+            // Stopped
+            saveProgress();
+        } finally {
+            if (status != Status.DONE) {
+                status = Status.IDLE;
+            }
+            synchronized (this) {
+                thread = null;
+                // Restarted after the last scan was marked complete
+                if (rescan && running) {
+                    start();
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the migration complete, unless it was restarted during the run.
+     *
+     * @return True if it is complete, false if the accounts have to be scanned again
+     */
+    private synchronized boolean complete() {
+        if (rescan) {
+            rescan = false;
+            return false;
+        }
+        completed = true;
+        return true;
+    }
+
+    private void migrateAll() throws IOException, InterruptedException {
+        status = Status.SCANNING;
+        long[] accounts = scan();
+        remaining = accounts.length / 2;
+        // Keep the passwords hashed by an earlier run in the total
+        synchronized (this) {
+            previouslyMigrated += migrated.getAndSet(0);
+        }
+        runStartedNanos = System.nanoTime();
+        runFinishedNanos = 0;
+
+        if (remaining > 0) {
+            plugin.getLogger().info("Hashing " + remaining + " plaintext passwords in the background...");
+        }
+
+        status = Status.RUNNING;
+        int batchSize = Math.max(1, plugin.getConfigManager().getMigrationBatchSize());
+        for (int start = 0; start < accounts.length && running; start += batchSize * 2) {
+            migrateBatch(Arrays.copyOfRange(accounts, start, Math.min(accounts.length, start + batchSize * 2)));
+            saveProgress();
+        }
+    }
+
+    /**
+     * Collects the UUIDs of accounts with a plaintext password.
+     *
+     * @return The most and least significant bits of every UUID, in pairs
+     */
+    private long[] scan() throws IOException {
+        long[][] uuids = {new long[1024]};
+        int[] size = {0};
+
+        plugin.getDataManager().forEachAccount(playerData -> {
+            if (PasswordHasher.getFormat(playerData.getPassword()) != PasswordHasher.FORMAT_PLAINTEXT) {
+                return;
+            }
+
+            if (size[0] + 2 > uuids[0].length) {
+                uuids[0] = Arrays.copyOf(uuids[0], uuids[0].length * 2);
+            }
+            UUID uuid = playerData.getUuid();
+            uuids[0][size[0]++] = uuid.getMostSignificantBits();
+            uuids[0][size[0]++] = uuid.getLeastSignificantBits();
+        });
+
+        return Arrays.copyOf(uuids[0], size[0]);
+    }
+
+    /**
+     * Upgrades a batch of accounts one at a time, retrying the ones the hashing pool
+     * turned away, then sleeps to stay within the CPU budget.
+     */
+    private void migrateBatch(long[] batch) throws InterruptedException {
+        HashingExecutor executor = plugin.getPasswordManager().getExecutor();
+        long startedNanos = System.nanoTime();
+        long busyBefore = executor.getBusyNanos();
+
+        for (int i = 0; i < batch.length && running; i += 2) {
+            UUID uuid = new UUID(batch[i], batch[i + 1]);
+            while (running) {
+                // Let logins waiting for a hashing thread go first
+                while (executor.getQueueDepth() > 0) {
+                    Thread.sleep(IDLE_WAIT_MILLIS);
+                }
+
+                try {
+                    if (plugin.getDataManager().upgradePassword(uuid).get()) {
+                        migrated.incrementAndGet();
+                    }
+                    remaining--;
+                    break;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RejectedExecutionException
+                            || cause != null && cause.getCause() instanceof RejectedExecutionException) {
+                        Thread.sleep(RETRY_WAIT_MILLIS);
+                    } else {
+                        plugin.getLogger().log(Level.WARNING, "Could not hash the password of account " + uuid, cause);
+                        remaining--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Sleep until the hashing time of this batch is within the budget of the pool
+        double budget = Math.min(1, Math.max(0.01, plugin.getConfigManager().getMigrationCpuBudget()));
+        long busy = executor.getBusyNanos() - busyBefore;
+        long elapsed = System.nanoTime() - startedNanos;
+        long pause = (long) (busy / (budget * executor.getThreadCount())) - elapsed;
+        if (pause > 0) {
+            TimeUnit.NANOSECONDS.sleep(pause);
+        }
+    }
+
+    private synchronized void loadProgress() {
+        if (!progressFile.exists()) {
+            return;
+        }
+
+        YamlConfiguration progress = YamlConfiguration.loadConfiguration(progressFile);
+        previouslyMigrated = progress.getLong("migrated", 0);
+        completed = progress.getBoolean("completed", false);
+        if (completed) {
+            status = Status.DONE;
+        }
+    }
+
+    private synchronized void saveProgress() {
+        YamlConfiguration progress = new YamlConfiguration();
+        progress.set("migrated", previouslyMigrated + migrated.get());
+        progress.set("completed", completed);
+
+        try {
+            progress.save(progressFile);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save password migration progress", e);
+        }
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the number of passwords hashed by the migration, across restarts.
+     *
+     * @return The number of migrated passwords
+     */
+    public synchronized long getMigratedCount() {
+        return previouslyMigrated + migrated.get();
+    }
+
+    /**
+     * Gets the number of plaintext passwords the current run has still to hash.
+     *
+     * @return The number of remaining passwords
+     */
+    public long getRemainingCount() {
+        return Math.max(0, remaining);
+    }
+
+    /**
+     * Gets the average number of passwords hashed per second by the current run.
+     *
+     * @return The throughput in passwords per second
+     */
+    public double getThroughput() {
+        if (runStartedNanos == 0) {
+            return 0;
+        }
+        long end = runFinishedNanos != 0 ? runFinishedNanos : System.nanoTime();
+        double seconds = (end - runStartedNanos) / 1_000_000_000.0;
+        return seconds > 0 ? migrated.get() / seconds : 0;
+    }
+}
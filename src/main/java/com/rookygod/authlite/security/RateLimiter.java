@@ -0,0 +1,216 @@
+package com.rookygod.authlite.security;
+
+import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.config.ConfigManager;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets that limit password checks per IP address, per account and for the
+ * whole server, checked before any hashing or disk write.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will be full
+ * again (the generic cell rate algorithm, equivalent to a token bucket). Taking a token
+ * is one compare-and-set, and looking up a bucket uses the address and UUID objects the
+ * player already has, so a rejected attempt neither locks nor allocates. Buckets that
+ * have refilled are evicted periodically.
+ */
+public class RateLimiter {
+
+    // Marks a bucket that was evicted, so a concurrent attempt retries with a new one
+    static final long EVICTED = Long.MIN_VALUE;
+    private static final long EVICTION_INTERVAL_TICKS = 20L * 60;
+
+    static final int ALLOWED = 1;
+    static final int DENIED = 0;
+    static final int RETRY = -1;
+
+    private final AuthLite plugin;
+    private final Map<InetAddress, AtomicLong> addressBuckets = new ConcurrentHashMap<>();
+    private final Map<UUID, AtomicLong> accountBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong globalBucket = new AtomicLong(System.nanoTime());
+    private BukkitTask evictionTask;
+
+    private volatile Limit addressLimit;
+    private volatile Limit accountLimit;
+    private volatile Limit globalLimit;
+
+    private final LongAdder addressRejections = new LongAdder();
+    private final LongAdder accountRejections = new LongAdder();
+    private final LongAdder globalRejections = new LongAdder();
+
+    /**
+     * The refill rate and burst size of one kind of bucket.
+     */
+    static final class Limit {
+
+        // Time for one token to refill
+        final long intervalNanos;
+        // How far ahead of now a bucket may be scheduled before it counts as empty
+        final long toleranceNanos;
+
+        Limit(double tokensPerSecond, int burst) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+            this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        }
+    }
+
+    public RateLimiter(AuthLite plugin) {
+        this.plugin = plugin;
+        applyConfig();
+
+        evictionTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin,
+                this::evictIdle, EVICTION_INTERVAL_TICKS, EVICTION_INTERVAL_TICKS);
+    }
+
+    /**
+     * Reads the limits from the configuration. Existing buckets keep their state.
+     */
+    public void applyConfig() {
+        ConfigManager config = plugin.getConfigManager();
+        addressLimit = createLimit(config.getRateLimitIpPerMinute() / 60.0, config.getRateLimitIpBurst());
+        accountLimit = createLimit(config.getRateLimitAccountPerMinute() / 60.0, config.getRateLimitAccountBurst());
+        globalLimit = createLimit(config.getRateLimitGlobalPerSecond(), config.getRateLimitGlobalBurst());
+    }
+
+    private static Limit createLimit(double tokensPerSecond, int burst) {
+        return tokensPerSecond > 0 ? new Limit(tokensPerSecond, burst) : null;
+    }
+
+    /**
+     * Takes a token for a password check of a player from their address bucket, their
+     * account bucket and the global bucket, in that order, so a flood from one address
+     * is turned away before it can drain the budget of everyone else.
+     *
+     * @param player The player whose password is about to be checked
+     * @return True if the check may go ahead, false if a limit was reached
+     */
+    public boolean tryAcquire(Player player) {
+        long now = System.nanoTime();
+
+        Limit limit = addressLimit;
+        InetSocketAddress address = player.getAddress();
+        if (limit != null && address != null && !tryAcquire(addressBuckets, address.getAddress(), limit, now)) {
+            addressRejections.increment();
+            return false;
+        }
+
+        limit = accountLimit;
+        if (limit != null && !tryAcquire(accountBuckets, player.getUniqueId(), limit, now)) {
+            accountRejections.increment();
+            return false;
+        }
+
+        limit = globalLimit;
+        if (limit != null && !tryAcquire(globalBucket, limit, now)) {
+            globalRejections.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private static <K> boolean tryAcquire(Map<K, AtomicLong> buckets, K key, Limit limit, long now) {
+        while (true) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                // Only the first attempt of a key allocates
+                AtomicLong created = new AtomicLong(now);
+                bucket = buckets.putIfAbsent(key, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+
+            int result = take(bucket, limit, now);
+            if (result != RETRY) {
+                return result == ALLOWED;
+            }
+            buckets.remove(key, bucket);
+        }
+    }
+
+    private static boolean tryAcquire(AtomicLong bucket, Limit limit, long now) {
+        return take(bucket, limit, now) == ALLOWED;
+    }
+
+    /**
+     * Takes a token from a bucket.
+     *
+     * @return {@link #ALLOWED}, {@link #DENIED} if the bucket is empty, or {@link #RETRY}
+     *         if the bucket was evicted and must be looked up again
+     */
+    static int take(AtomicLong bucket, Limit limit, long now) {
+        while (true) {
+            long full = bucket.get();
+            if (full == EVICTED) {
+                return RETRY;
+            }
+
+            // A bucket full in the past is full now; every token moves the moment it is full again
+            long start = full - now > 0 ? full : now;
+            if (start - now > limit.toleranceNanos) {
+                return DENIED;
+            }
+            if (bucket.compareAndSet(full, start + limit.intervalNanos)) {
+                return ALLOWED;
+            }
+        }
+    }
+
+    /**
+     * Drops buckets that have refilled completely, since they behave exactly like a
+     * missing one.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        evictIdle(addressBuckets, now);
+        evictIdle(accountBuckets, now);
+    }
+
+    private static <K> void evictIdle(Map<K, AtomicLong> buckets, long now) {
+        for (Map.Entry<K, AtomicLong> entry : buckets.entrySet()) {
+            AtomicLong bucket = entry.getValue();
+            long full = bucket.get();
+            if (full != EVICTED && full - now <= 0 && bucket.compareAndSet(full, EVICTED)) {
+                buckets.remove(entry.getKey(), bucket);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (evictionTask != null) {
+            evictionTask.cancel();
+            evictionTask = null;
+        }
+    }
+
+    /**
+     * Gets the number of addresses and accounts that currently have a bucket.
+     *
+     * @return The number of tracked buckets
+     */
+    public int getTrackedCount() {
+        return addressBuckets.size() + accountBuckets.size();
+    }
+
+    public long getAddressRejections() {
+        return addressRejections.sum();
+    }
+
+    public long getAccountRejections() {
+        return accountRejections.sum();
+    }
+
+    public long getGlobalRejections() {
+        return globalRejections.sum();
+    }
+}
@@ -0,0 +1,19 @@
+package com.rookygod.authlite.session;
+
+/**
+ * Authentication state of an online player.
+ */
+public enum AuthState {
+
+    /** The player has no account and must register */
+    UNREGISTERED,
+
+    /** The player has an account and must log in */
+    PENDING_LOGIN,
+
+    /** The player has logged in, registered or resumed a session */
+    AUTHENTICATED,
+
+    /** The player entered too many wrong passwords and may not log in until the lockout ends */
+    LOCKED
+}
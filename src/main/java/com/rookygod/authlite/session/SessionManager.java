@@ -1,78 +1,440 @@
 package com.rookygod.authlite.session;
 
 import com.rookygod.authlite.AuthLite;
-import com.rookygod.authlite.data.PlayerData;
+import com.rookygod.authlite.utils.AddressUtils;
+import com.rookygod.authlite.utils.MessageUtils;
+import com.rookygod.authlite.utils.PrefixTrie;
+import com.rookygod.authlite.utils.Ticker;
 import org.bukkit.entity.Player;
 
-import java.time.Instant;
-import java.util.HashSet;
-import java.util.Set;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Keeps the {@link AuthState} of every online player.
+ * <p>
+ * Protection checks run on the main thread as well as on chat threads, so the states
+ * live in a {@link ConcurrentHashMap} and every check is a single lock-free read. Each
+ * transition replaces the state only if it still is the expected one, so two commands
+ * racing each other (such as two logins completing at once) cannot both succeed.
+ * <p>
+ * Logging in or registering starts a session in the {@link SessionStore}. Sessions are
+ * checked while the player connects, and a valid one is resumed when they join. Every
+ * session deadline lives on the plugin's {@link Ticker}, which removes expired sessions,
+ * moves deadlines when session.sliding extends a session and sends the optional notice
+ * before a session expires.
+ */
 public class SessionManager {
 
     private final AuthLite plugin;
-    private final Set<UUID> authenticatedPlayers = new HashSet<>();
+    private final Map<UUID, AuthState> states = new ConcurrentHashMap<>();
+    // Players online who are not AUTHENTICATED, kept in step with every transition
+    private final AtomicInteger unauthenticated = new AtomicInteger();
+    // Tokens of the sessions found valid while players were connecting
+    private final Map<UUID, Long> pendingResumes = new ConcurrentHashMap<>();
+    private final SessionStore sessionStore;
+    
+    // Address matching, compiled from the configuration
+    private volatile PrefixTrie trustedNetworks = PrefixTrie.empty();
+    private volatile int ipv4Prefix;
+    private volatile int ipv6Prefix;
     
     public SessionManager(AuthLite plugin) {
         this.plugin = plugin;
+        this.sessionStore = new SessionStore(plugin);
+        applyConfig();
+        sessionStore.forEach(this::scheduleExpiry);
+    }
+    
+    /**
+     * Compiles the session address settings: the prefix lengths compared for IPv4 and
+     * IPv6, and the trusted networks.
+     */
+    public void applyConfig() {
+        List<String> networks = plugin.getConfigManager().getSessionTrustedNetworks();
+        long[] highs = new long[networks.size()];
+        long[] lows = new long[networks.size()];
+        int[] lengths = new int[networks.size()];
+        int count = 0;
+        
+        for (String network : networks) {
+            int slash = network.indexOf('/');
+            byte[] address = AddressUtils.parseLiteral((slash >= 0 ? network.substring(0, slash) : network).trim());
+            int length = -1;
+            if (address != null) {
+                int maxLength = address.length * 8;
+                try {
+                    length = slash >= 0 ? Integer.parseInt(network.substring(slash + 1).trim()) : maxLength;
+                } catch (NumberFormatException e) {
+                    length = -1;
+                }
+                length = length >= 0 && length <= maxLength ? length : -1;
+            }
+            
+            if (length < 0) {
+                plugin.getLogger().warning("Ignoring invalid trusted network: " + network);
+                continue;
+            }
+            
+            highs[count] = AddressUtils.toHigh(address);
+            lows[count] = AddressUtils.toLow(address);
+            lengths[count] = address.length == 4 ? AddressUtils.mappedPrefix(length) : length;
+            count++;
+        }
+        
+        trustedNetworks = PrefixTrie.compile(Arrays.copyOf(highs, count), Arrays.copyOf(lows, count), Arrays.copyOf(lengths, count));
+        ipv4Prefix = AddressUtils.mappedPrefix(plugin.getConfigManager().getSessionIpv4Prefix());
+        ipv6Prefix = Math.max(0, Math.min(128, plugin.getConfigManager().getSessionIpv6Prefix()));
+    }
+    
+    /**
+     * Checks whether a player connects from an address that may resume a session: one
+     * that shares the configured prefix with the address the session was created from,
+     * or one that falls under a trusted network entry together with it. With nested
+     * entries, any entry containing both addresses counts, not only the most specific.
+     *
+     * @param sessionAddress The address the session was created from
+     * @param address The address the player connects from
+     * @return True if the address matches
+     */
+    private boolean matchesAddress(byte[] sessionAddress, InetAddress address) {
+        if (address == null || sessionAddress.length == 0) {
+            return false;
+        }
+        
+        byte[] current = address.getAddress();
+        if (current.length != sessionAddress.length) {
+            return false;
+        }
+        
+        long sessionHigh = AddressUtils.toHigh(sessionAddress);
+        long sessionLow = AddressUtils.toLow(sessionAddress);
+        long high = AddressUtils.toHigh(current);
+        long low = AddressUtils.toLow(current);
+        if (AddressUtils.matchesPrefix(sessionHigh, sessionLow, high, low, current.length == 4 ? ipv4Prefix : ipv6Prefix)) {
+            return true;
+        }
+        
+        PrefixTrie networks = trustedNetworks;
+        return networks.size() > 0 && networks.containsBoth(high, low, sessionHigh, sessionLow);
+    }
+    
+    /**
+     * Puts the deadlines of a session on the ticker: its removal, and the notice
+     * before it expires if enabled.
+     */
+    private void scheduleExpiry(UUID uuid, SessionStore.Session session) {
+        session.expiry = plugin.getTicker().schedule(() -> sessionStore.expire(uuid, session), session.getExpiresAt());
+        
+        // Extended sessions cannot run out while the player is online
+        long lead = plugin.getConfigManager().getSessionExpiryNotice() * 60_000L;
+        if (lead > 0 && !plugin.getConfigManager().isSessionSliding()) {
+            session.notice = plugin.getTicker().schedule(() -> sendExpiryNotice(uuid, session), session.getExpiresAt() - lead);
+        }
+    }
+    
+    private void sendExpiryNotice(UUID uuid, SessionStore.Session session) {
+        Player player = plugin.getServer().getPlayer(uuid);
+        if (player == null || !isAuthenticated(player)) {
+            return;
+        }
+        
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("time", MessageUtils.formatDuration(session.getExpiresAt() - System.currentTimeMillis()));
+        plugin.getMessageManager().sendMessage(player, "session.expiring", placeholders);
+    }
+    
+    /**
+     * Extends the session of a player to last from now, if session.sliding is enabled.
+     */
+    private void extendSession(Player player) {
+        if (!plugin.getConfigManager().isEnableSessions() || !plugin.getConfigManager().isSessionSliding()) {
+            return;
+        }
+        
+        SessionStore.Session session = sessionStore.touch(player.getUniqueId(), getSessionDuration());
+        if (session != null) {
+            scheduleExpiry(player.getUniqueId(), session);
+        }
+    }
+    
+    private long getSessionDuration() {
+        return plugin.getConfigManager().getSessionTimeout() * 60_000L;
+    }
+    
+    /**
+     * Sets the state of a player who joined: locked out, waiting to log in or waiting
+     * to register.
+     *
+     * @param player The player who joined
+     * @return The initial state
+     */
+    public AuthState startSession(Player player) {
+        AuthState state;
+        if (!plugin.getDataManager().isRegistered(player.getUniqueId())) {
+            state = AuthState.UNREGISTERED;
+        } else if (plugin.getLockoutManager().getRemainingMillis(player) > 0) {
+            state = AuthState.LOCKED;
+        } else {
+            state = AuthState.PENDING_LOGIN;
+        }
+        
+        AuthState previous = states.put(player.getUniqueId(), state);
+        if (previous == null || previous == AuthState.AUTHENTICATED) {
+            unauthenticated.incrementAndGet();
+        }
+        plugin.getProtectionManager().updateListener();
+        return state;
+    }
+    
+    /**
+     * Forgets the state of a player who left.
+     *
+     * @param player The player who left
+     */
+    public void endSession(Player player) {
+        // Leaving is the last activity of a logged in player
+        if (isAuthenticated(player)) {
+            extendSession(player);
+        }
+        
+        AuthState previous = states.remove(player.getUniqueId());
+        if (previous != null && previous != AuthState.AUTHENTICATED) {
+            unauthenticated.decrementAndGet();
+        }
+        pendingResumes.remove(player.getUniqueId());
+        plugin.getProtectionManager().updateListener();
+    }
+    
+    /**
+     * Checks the session of a connecting player, so it can be resumed once they join.
+     * Only reads the session store, never the account.
+     *
+     * @param uuid The UUID of the player
+     * @param address The address the player connects from
+     */
+    public void prepareSession(UUID uuid, InetAddress address) {
+        SessionStore.Session session = hasValidSession(uuid, address) ? sessionStore.get(uuid) : null;
+        if (session != null) {
+            pendingResumes.put(uuid, session.getToken());
+        } else {
+            pendingResumes.remove(uuid);
+        }
+    }
+    
+    /**
+     * Authenticates a player who joined with the session checked while they connected,
+     * if it was not ended or replaced meanwhile.
+     *
+     * @param player The player who joined
+     * @return True if the session was resumed
+     */
+    public boolean resumeSession(Player player) {
+        UUID uuid = player.getUniqueId();
+        Long token = pendingResumes.remove(uuid);
+        if (token == null) {
+            return false;
+        }
+        
+        SessionStore.Session session = sessionStore.get(uuid);
+        if (session == null || session.getToken() != token
+                || !states.replace(uuid, AuthState.PENDING_LOGIN, AuthState.AUTHENTICATED)) {
+            return false;
+        }
+        unauthenticated.decrementAndGet();
+        
+        extendSession(player);
+        plugin.getProtectionManager().updateListener();
+        return true;
+    }
+    
+    /**
+     * Gets the state of a player.
+     *
+     * @param player The player
+     * @return The state, or null if the player is not online
+     */
+    public AuthState getState(Player player) {
+        return states.get(player.getUniqueId());
     }
     
     public boolean isAuthenticated(Player player) {
-        return authenticatedPlayers.contains(player.getUniqueId());
+        return states.get(player.getUniqueId()) == AuthState.AUTHENTICATED;
+    }
+    
+    /**
+     * Checks whether any player online is not logged in.
+     *
+     * @return True if a player is waiting to log in, waiting to register or locked out
+     */
+    public boolean hasUnauthenticatedPlayers() {
+        return unauthenticated.get() > 0;
+    }
+    
+    /**
+     * Authenticates a player who logged in or registered, and starts a new session.
+     *
+     * @param player The player
+     * @return True if the player was waiting to log in or register, false if they are
+     *         already authenticated, locked out or offline
+     */
+    public boolean authenticatePlayer(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (!states.replace(uuid, AuthState.PENDING_LOGIN, AuthState.AUTHENTICATED)
+                && !states.replace(uuid, AuthState.UNREGISTERED, AuthState.AUTHENTICATED)) {
+            return false;
+        }
+        unauthenticated.decrementAndGet();
+        
+        if (plugin.getConfigManager().isEnableSessions()) {
+            InetSocketAddress address = player.getAddress();
+            SessionStore.Session session = sessionStore.create(uuid, address != null ? address.getAddress() : null,
+                    getSessionDuration());
+            scheduleExpiry(uuid, session);
+        }
+        
+        // Whatever authenticated the player (command, registration or API), lift the protection
+        plugin.getProtectionManager().removeProtection(player);
+        plugin.getProtectionManager().updateListener();
+        return true;
+    }
+    
+    /**
+     * Logs a player out.
+     *
+     * @param player The player
+     * @return True if the player was authenticated
+     */
+    public boolean deauthenticatePlayer(Player player) {
+        if (!states.replace(player.getUniqueId(), AuthState.AUTHENTICATED, AuthState.PENDING_LOGIN)) {
+            return false;
+        }
+        unauthenticated.incrementAndGet();
+        
+        // Logging out ends the session
+        sessionStore.remove(player.getUniqueId());
+        plugin.getProtectionManager().updateListener();
+        return true;
+    }
+    
+    /**
+     * Marks an online player as registered by someone else, so they have to log in.
+     *
+     * @param player The player
+     * @return True if the player was waiting to register
+     */
+    public boolean registerPlayer(Player player) {
+        return states.replace(player.getUniqueId(), AuthState.UNREGISTERED, AuthState.PENDING_LOGIN);
+    }
+    
+    /**
+     * Marks an online player whose account was removed, whatever their state was.
+     *
+     * @param player The player
+     */
+    public void unregisterPlayer(Player player) {
+        UUID uuid = player.getUniqueId();
+        // Replace whatever the state is, noting whether the player was authenticated
+        AuthState previous;
+        do {
+            previous = states.get(uuid);
+        } while (previous != null && !states.replace(uuid, previous, AuthState.UNREGISTERED));
+        if (previous == AuthState.AUTHENTICATED) {
+            unauthenticated.incrementAndGet();
+        }
+        
+        sessionStore.remove(uuid);
+        plugin.getProtectionManager().updateListener();
     }
     
-    public void authenticatePlayer(Player player) {
-        authenticatedPlayers.add(player.getUniqueId());
+    /**
+     * Ends the session of a player, online or not.
+     *
+     * @param uuid The UUID of the player
+     */
+    public void invalidateSession(UUID uuid) {
+        sessionStore.remove(uuid);
     }
     
-    public void deauthenticatePlayer(Player player) {
-        authenticatedPlayers.remove(player.getUniqueId());
+    /**
+     * Locks a player out after too many wrong passwords.
+     *
+     * @param player The player
+     * @return True if the player was waiting to log in
+     */
+    public boolean lockPlayer(Player player) {
+        return states.replace(player.getUniqueId(), AuthState.PENDING_LOGIN, AuthState.LOCKED);
+    }
+    
+    /**
+     * Lets a player whose lockout has ended log in again.
+     *
+     * @param player The player
+     * @return True if the player was locked out
+     */
+    public boolean unlockPlayer(Player player) {
+        return states.replace(player.getUniqueId(), AuthState.LOCKED, AuthState.PENDING_LOGIN);
     }
     
     public void clearSessions() {
-        authenticatedPlayers.clear();
+        states.clear();
+        unauthenticated.set(0);
+        pendingResumes.clear();
+    }
+    
+    /**
+     * Saves the sessions, so players can resume them after a restart.
+     */
+    public void shutdown() {
+        sessionStore.close();
+    }
+    
+    public SessionStore getSessionStore() {
+        return sessionStore;
     }
     
     public boolean hasValidSession(Player player) {
+        InetSocketAddress address = player.getAddress();
+        return hasValidSession(player.getUniqueId(), address != null ? address.getAddress() : null);
+    }
+    
+    /**
+     * Checks whether a connecting player may resume their session, before the player
+     * has joined. Only reads the session store, never the account.
+     *
+     * @param uuid The UUID of the player
+     * @param address The address the player connects from
+     * @return True if sessions are enabled and the player's session is still valid
+     */
+    public boolean hasValidSession(UUID uuid, InetAddress address) {
         // Check if sessions are enabled
         if (!plugin.getConfigManager().isEnableSessions()) {
             return false;
         }
         
         // Check if player is registered
-        if (!plugin.getDataManager().isRegistered(player.getUniqueId())) {
-            return false;
-        }
-        
-        // Get player data
-        PlayerData playerData = plugin.getDataManager().getPlayerData(player.getUniqueId());
-        
-        // Check if player has a last login time
-        if (playerData.getLastLogin() == 0) {
+        if (!plugin.getDataManager().isRegistered(uuid)) {
             return false;
         }
         
-        // Check if session has expired
-        long sessionTimeoutSeconds = plugin.getConfigManager().getSessionTimeout() * 60L; // Convert minutes to seconds
-        long currentTime = Instant.now().getEpochSecond();
-        long lastLoginTime = playerData.getLastLogin();
-        
-        if (currentTime - lastLoginTime > sessionTimeoutSeconds) {
+        // Check if the player has a session that has not expired
+        SessionStore.Session session = sessionStore.get(uuid);
+        if (session == null) {
             return false;
         }
         
         // Check if IP matches
-        if (plugin.getConfigManager().isSessionCheckIP()) {
-            String lastIp = playerData.getLastIp();
-            String currentIp = player.getAddress().getAddress().getHostAddress();
-            
-            if (!lastIp.equals(currentIp)) {
-                return false;
-            }
+        if (plugin.getConfigManager().isSessionCheckIP() && !matchesAddress(session.getAddress(), address)) {
+            return false;
         }
         
         return true;
     }
 }
-
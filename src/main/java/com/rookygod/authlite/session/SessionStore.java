@@ -0,0 +1,382 @@
+package com.rookygod.authlite.session;
+
+import com.rookygod.authlite.AuthLite;
+import com.rookygod.authlite.utils.TimerWheel;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Sessions of players who logged in, kept apart from the accounts so they can be
+ * checked while players connect, without loading an account.
+ * <p>
+ * All sessions are held in memory and loaded eagerly on startup. Changes are appended to
+ * sessions.log off the main thread, using the framing of the account journal:
+ * {@code [int length][int crc32][payload]}, where a torn record ends the replay. Once
+ * the log holds more than twice as many records as there are sessions, it is rewritten
+ * with only the live sessions. Expired sessions are removed by {@link SessionManager}
+ * through {@link #expire(UUID, Session)} when their deadline on the plugin's ticker passes.
+ */
+public class SessionStore {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int MAX_RECORD_LENGTH = 64;
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
+    /**
+     * A session: a random token identifying it, the address it was created from and the
+     * time it expires.
+     */
+    public static final class Session {
+
+        private final long token;
+        private final byte[] address;
+        private final long expiresAt;
+        // Deadlines on the plugin's ticker, set by the session manager
+        TimerWheel.Timeout expiry;
+        TimerWheel.Timeout notice;
+
+        Session(long token, byte[] address, long expiresAt) {
+            this.token = token;
+            this.address = address;
+            this.expiresAt = expiresAt;
+        }
+
+        private void cancelTimers() {
+            if (expiry != null) {
+                expiry.cancel();
+            }
+            if (notice != null) {
+                notice.cancel();
+            }
+        }
+
+        public long getToken() {
+            return token;
+        }
+
+        /**
+         * Gets the address the session was created from. The array must not be modified.
+         *
+         * @return The 4 or 16 address bytes, or none if the address was unknown
+         */
+        byte[] getAddress() {
+            return address;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    private final AuthLite plugin;
+    private final File file;
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private FileChannel channel;
+    private int recordCount;
+
+    public SessionStore(AuthLite plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "sessions.log");
+        load();
+    }
+
+    /**
+     * Gets the session of a player, unless it has expired.
+     *
+     * @param uuid The UUID of the player
+     * @return The session, or null if the player has none
+     */
+    public Session get(UUID uuid) {
+        Session session = sessions.get(uuid);
+        return session != null && session.expiresAt > System.currentTimeMillis() ? session : null;
+    }
+
+    /**
+     * Starts a new session for a player, replacing any previous one.
+     *
+     * @param uuid The UUID of the player
+     * @param address The address the player logged in from
+     * @param durationMillis How long the session lasts
+     * @return The new session
+     */
+    public Session create(UUID uuid, InetAddress address, long durationMillis) {
+        Session session = new Session(random.nextLong(), address != null ? address.getAddress() : new byte[0],
+                System.currentTimeMillis() + durationMillis);
+        replace(uuid, session);
+        return session;
+    }
+
+    /**
+     * Extends a session to last from now, keeping its token.
+     *
+     * @param uuid The UUID of the player
+     * @param durationMillis How long the session lasts from now
+     * @return The extended session, or null if the player has none
+     */
+    public Session touch(UUID uuid, long durationMillis) {
+        Session current = get(uuid);
+        if (current == null) {
+            return null;
+        }
+
+        Session session = new Session(current.token, current.address, System.currentTimeMillis() + durationMillis);
+        replace(uuid, session);
+        return session;
+    }
+
+    private void replace(UUID uuid, Session session) {
+        Session previous = sessions.put(uuid, session);
+        if (previous != null) {
+            previous.cancelTimers();
+        }
+        scheduleWrite(uuid);
+    }
+
+    /**
+     * Ends the session of a player.
+     *
+     * @param uuid The UUID of the player
+     */
+    public void remove(UUID uuid) {
+        Session session = sessions.remove(uuid);
+        if (session != null) {
+            session.cancelTimers();
+            scheduleWrite(uuid);
+        }
+    }
+
+    /**
+     * Removes a session that has expired, unless it was replaced meanwhile.
+     *
+     * @param uuid The UUID of the player
+     * @param session The expired session
+     */
+    public void expire(UUID uuid, Session session) {
+        if (sessions.remove(uuid, session)) {
+            session.cancelTimers();
+            scheduleWrite(uuid);
+        }
+    }
+
+    /**
+     * Visits every session, including ones that expired but were not removed yet.
+     *
+     * @param visitor The visitor receiving the UUID and session of every player
+     */
+    public void forEach(BiConsumer<UUID, Session> visitor) {
+        sessions.forEach(visitor);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private void scheduleWrite(UUID uuid) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> write(uuid));
+    }
+
+    /**
+     * Appends the current session of a player. Writing whatever is current rather than
+     * the change that scheduled the write keeps the log right even if writes of the same
+     * player run out of order.
+     */
+    private synchronized void write(UUID uuid) {
+        if (channel == null) {
+            plugin.getLogger().warning("Could not save the session of " + uuid + ", the session log is not open");
+            return;
+        }
+
+        try {
+            append(channel, List.of(encode(uuid, sessions.get(uuid))));
+            recordCount++;
+            if (recordCount > Math.max(MIN_COMPACT_RECORDS, sessions.size() * 2)) {
+                compact();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save the session of " + uuid, e);
+        }
+    }
+
+    private static void append(FileChannel target, List<byte[]> payloads) throws IOException {
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += 8 + payload.length;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer records = ByteBuffer.allocate(size);
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            records.putInt(payload.length);
+            records.putInt((int) crc.getValue());
+            records.put(payload);
+        }
+        records.flip();
+
+        while (records.hasRemaining()) {
+            target.write(records);
+        }
+    }
+
+    private static byte[] encode(UUID uuid, Session session) {
+        if (session == null) {
+            ByteBuffer payload = ByteBuffer.allocate(17);
+            payload.put(OP_REMOVE);
+            payload.putLong(uuid.getMostSignificantBits());
+            payload.putLong(uuid.getLeastSignificantBits());
+            return payload.array();
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(34 + session.address.length);
+        payload.put(OP_PUT);
+        payload.putLong(uuid.getMostSignificantBits());
+        payload.putLong(uuid.getLeastSignificantBits());
+        payload.putLong(session.token);
+        payload.putLong(session.expiresAt);
+        payload.put((byte) session.address.length);
+        payload.put(session.address);
+        return payload.array();
+    }
+
+    /**
+     * Rewrites the log with only the live sessions and swaps it in atomically. The old
+     * log stays open for appends until the new one has replaced it, so a failed
+     * compaction leaves the old log in use.
+     */
+    private synchronized void compact() throws IOException {
+        // Leave out expired sessions, their removal is already due on the timer wheel
+        long now = System.currentTimeMillis();
+        List<byte[]> payloads = new ArrayList<>(sessions.size());
+        for (Map.Entry<UUID, Session> entry : sessions.entrySet()) {
+            if (entry.getValue().expiresAt > now) {
+                payloads.add(encode(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        // The channel writing the new log keeps appending to it once it is moved in place
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            append(out, payloads);
+            out.force(true);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            out.close();
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+
+        FileChannel previous = channel;
+        channel = out;
+        recordCount = payloads.size();
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException ignored) {
+                // The old log has been replaced, nothing is written to it anymore
+            }
+        }
+    }
+
+    private synchronized void load() {
+        try {
+            if (file.exists()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    replay(in);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            sessions.values().removeIf(session -> session.expiresAt <= now);
+            // Start from a compact log, which also drops a torn record at the tail
+            compact();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not load sessions, players have to log in again", e);
+        }
+    }
+
+    private void replay(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source));
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            byte[] payload;
+            int checksum;
+            try {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                checksum = in.readInt();
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            byte op = record.get();
+            UUID uuid = new UUID(record.getLong(), record.getLong());
+            if (op == OP_PUT) {
+                long token = record.getLong();
+                long expiresAt = record.getLong();
+                byte[] address = new byte[record.get()];
+                record.get(address);
+                sessions.put(uuid, new Session(token, address, expiresAt));
+            } else if (op == OP_REMOVE) {
+                sessions.remove(uuid);
+            }
+        }
+    }
+
+    /**
+     * Writes the current sessions and closes the log.
+     */
+    public synchronized void close() {
+        try {
+            compact();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save sessions", e);
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing left to do with a channel that cannot be closed while shutting down
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.rookygod.authlite.utils;
+
+import java.util.Arrays;
+
+public class AddressUtils {
+
+    // Prefix of IPv4-mapped IPv6 addresses in the low half
+    private static final long IPV4_MAPPED = 0xFFFFL << 32;
+
+    /**
+     * Parse an IP address in the form written by {@code InetAddress.getHostAddress()},
+     * without ever resolving a host name.
+     * Only addresses that {@link #format(byte[])} turns back into the same text are
+     * accepted, so storing the bytes instead of the text never changes an address.
+     *
+     * @param address The address to parse
+     * @return The 4 or 16 address bytes, or null if the text is not such an address
+     */
+    public static byte[] parse(String address) {
+        byte[] bytes = address.indexOf(':') >= 0 ? parseIpv6(address) : parseIpv4(address);
+        return bytes != null && format(bytes).equals(address) ? bytes : null;
+    }
+
+    /**
+     * Parse an IP address literal as written by people, such as in the configuration:
+     * IPv4, or IPv6 with optional {@code ::} compression and an optional IPv4 tail.
+     * Never resolves a host name.
+     *
+     * @param address The address to parse
+     * @return The 4 or 16 address bytes, or null if the text is not an address
+     */
+    public static byte[] parseLiteral(String address) {
+        if (address.indexOf(':') < 0) {
+            return parseIpv4(address);
+        }
+
+        int compressed = address.indexOf("::");
+        if (compressed >= 0 && address.indexOf("::", compressed + 1) >= 0) {
+            return null;
+        }
+
+        int[] head = parseGroups(compressed >= 0 ? address.substring(0, compressed) : address, compressed < 0);
+        int[] tail = compressed >= 0 ? parseGroups(address.substring(compressed + 2), true) : new int[0];
+        if (head == null || tail == null) {
+            return null;
+        }
+        if (compressed < 0 ? head.length != 8 : head.length + tail.length > 7) {
+            return null;
+        }
+
+        // The compressed groups in between stay zero
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < head.length; i++) {
+            bytes[i * 2] = (byte) (head[i] >>> 8);
+            bytes[i * 2 + 1] = (byte) head[i];
+        }
+        for (int i = 0; i < tail.length; i++) {
+            int group = 8 - tail.length + i;
+            bytes[group * 2] = (byte) (tail[i] >>> 8);
+            bytes[group * 2 + 1] = (byte) tail[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Format IP address bytes the way {@code InetAddress.getHostAddress()} does.
+     *
+     * @param address The 4 or 16 address bytes
+     * @return The address as text
+     */
+    public static String format(byte[] address) {
+        StringBuilder builder = new StringBuilder(address.length == 4 ? 15 : 39);
+        if (address.length == 4) {
+            for (int i = 0; i < 4; i++) {
+                if (i > 0) {
+                    builder.append('.');
+                }
+                builder.append(address[i] & 0xFF);
+            }
+        } else {
+            for (int i = 0; i < 16; i += 2) {
+                if (i > 0) {
+                    builder.append(':');
+                }
+                builder.append(Integer.toHexString(((address[i] & 0xFF) << 8) | (address[i + 1] & 0xFF)));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Pack IPv4 address bytes into an int.
+     *
+     * @param address The 4 address bytes
+     * @return The packed address
+     */
+    public static int toInt(byte[] address) {
+        return ((address[0] & 0xFF) << 24) | ((address[1] & 0xFF) << 16) | ((address[2] & 0xFF) << 8) | (address[3] & 0xFF);
+    }
+
+    /**
+     * Unpack an IPv4 address packed by {@link #toInt(byte[])}.
+     *
+     * @param address The packed address
+     * @return The 4 address bytes
+     */
+    public static byte[] fromInt(int address) {
+        return new byte[] {(byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address};
+    }
+
+    /**
+     * Get the high 64 bits of an address as an IPv6 address, where IPv4 addresses are
+     * mapped to {@code ::ffff:a.b.c.d}.
+     *
+     * @param address The 4 or 16 address bytes
+     * @return The high half of the address
+     */
+    public static long toHigh(byte[] address) {
+        return address.length == 4 ? 0 : toLong(address, 0);
+    }
+
+    /**
+     * Get the low 64 bits of an address as an IPv6 address, where IPv4 addresses are
+     * mapped to {@code ::ffff:a.b.c.d}.
+     *
+     * @param address The 4 or 16 address bytes
+     * @return The low half of the address
+     */
+    public static long toLow(byte[] address) {
+        return address.length == 4 ? IPV4_MAPPED | (toInt(address) & 0xFFFFFFFFL) : toLong(address, 8);
+    }
+
+    /**
+     * Get the prefix length of an IPv4 prefix within the IPv6 addresses of
+     * {@link #toHigh(byte[])} and {@link #toLow(byte[])}.
+     *
+     * @param ipv4Prefix The IPv4 prefix length (0 - 32)
+     * @return The IPv6 prefix length (96 - 128)
+     */
+    public static int mappedPrefix(int ipv4Prefix) {
+        return 96 + Math.max(0, Math.min(32, ipv4Prefix));
+    }
+
+    /**
+     * Check whether two packed addresses share a prefix.
+     *
+     * @param aHigh The high half of the first address
+     * @param aLow The low half of the first address
+     * @param bHigh The high half of the second address
+     * @param bLow The low half of the second address
+     * @param bits The prefix length (0 - 128)
+     * @return True if the first bits of both addresses are equal
+     */
+    public static boolean matchesPrefix(long aHigh, long aLow, long bHigh, long bLow, int bits) {
+        if (bits <= 0) {
+            return true;
+        }
+        if (bits <= 64) {
+            return ((aHigh ^ bHigh) & (-1L << (64 - bits))) == 0;
+        }
+        if (aHigh != bHigh) {
+            return false;
+        }
+        return bits >= 128 ? aLow == bLow : ((aLow ^ bLow) & (-1L << (128 - bits))) == 0;
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int[] parseGroups(String part, boolean ipv4Tail) {
+        if (part.isEmpty()) {
+            return new int[0];
+        }
+
+        String[] fields = part.split(":", -1);
+        int[] groups = new int[fields.length + 1];
+        int count = 0;
+        for (int i = 0; i < fields.length; i++) {
+            String field = fields[i];
+            if (ipv4Tail && i == fields.length - 1 && field.indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(field);
+                if (ipv4 == null) {
+                    return null;
+                }
+                groups[count++] = ((ipv4[0] & 0xFF) << 8) | (ipv4[1] & 0xFF);
+                groups[count++] = ((ipv4[2] & 0xFF) << 8) | (ipv4[3] & 0xFF);
+                continue;
+            }
+
+            if (field.isEmpty() || field.length() > 4) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < field.length(); j++) {
+                int digit = Character.digit(field.charAt(j), 16);
+                if (digit < 0) {
+                    return null;
+                }
+                value = (value << 4) | digit;
+            }
+            groups[count++] = value;
+        }
+        return Arrays.copyOf(groups, count);
+    }
+
+    private static byte[] parseIpv4(String address) {
+        byte[] bytes = new byte[4];
+        int part = 0;
+        int value = -1;
+
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '.') {
+                if (value < 0 || part == 3) {
+                    return null;
+                }
+                bytes[part++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+
+        if (value < 0 || part != 3) {
+            return null;
+        }
+        bytes[3] = (byte) value;
+        return bytes;
+    }
+
+    private static byte[] parseIpv6(String address) {
+        byte[] bytes = new byte[16];
+        int group = 0;
+        int value = -1;
+
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == ':') {
+                if (value < 0 || group == 7) {
+                    return null;
+                }
+                bytes[group * 2] = (byte) (value >>> 8);
+                bytes[group * 2 + 1] = (byte) value;
+                group++;
+                value = -1;
+            } else {
+                int digit = Character.digit(c, 16);
+                if (digit < 0) {
+                    return null;
+                }
+                value = (value < 0 ? 0 : value << 4) | digit;
+                if (value > 0xFFFF) {
+                    return null;
+                }
+            }
+        }
+
+        if (value < 0 || group != 7) {
+            return null;
+        }
+        bytes[14] = (byte) (value >>> 8);
+        bytes[15] = (byte) value;
+        return bytes;
+    }
+}
@@ -0,0 +1,391 @@
+package com.rookygod.authlite.utils;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash map from a pair of longs to a pair of longs, such as a UUID to a
+ * UUID, stored in a single primitive array.
+ * <p>
+ * Each slot takes four consecutive longs (key high, key low, value high, value low), so
+ * an entry costs 32 bytes divided by the load factor and creates no objects. Collisions
+ * are resolved by linear probing and removals shift later entries back instead of
+ * leaving tombstones. The all-zero key marks free slots and is stored outside the table.
+ * <p>
+ * Reads are lock-free: they run under an optimistic {@link StampedLock} stamp and only
+ * fall back to a read lock if a write happened meanwhile. Writes are serialized.
+ */
+public class LongPairMap {
+
+    private static final int SLOT_SIZE = 4;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private long zeroValueHigh;
+    private long zeroValueLow;
+
+    /**
+     * Receives the entries of a map.
+     */
+    public interface Visitor {
+
+        void visit(long keyHigh, long keyLow, long valueHigh, long valueLow);
+    }
+
+    /**
+     * Turns a value into an object, such as {@code UUID::new}.
+     */
+    public interface ValueMapper<T> {
+
+        T map(long valueHigh, long valueLow);
+    }
+
+    public LongPairMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Check whether a key is present.
+     *
+     * @param keyHigh The high half of the key
+     * @param keyLow The low half of the key
+     * @return True if the key is present
+     */
+    public boolean containsKey(long keyHigh, long keyLow) {
+        long stamp = lock.tryOptimisticRead();
+        boolean found = find(table, keyHigh, keyLow) >= 0 || (keyHigh == 0 && keyLow == 0 && hasZeroKey);
+        if (lock.validate(stamp)) {
+            return found;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return find(table, keyHigh, keyLow) >= 0 || (keyHigh == 0 && keyLow == 0 && hasZeroKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param keyHigh The high half of the key
+     * @param keyLow The low half of the key
+     * @param value An array of at least two longs receiving the high and low half of the value
+     * @return True if the key is present, false if it is not and the array was left untouched
+     */
+    public boolean get(long keyHigh, long keyLow, long[] value) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long[] current = table;
+            int slot = find(current, keyHigh, keyLow);
+            boolean zeroKey = keyHigh == 0 && keyLow == 0 && hasZeroKey;
+            long high = slot >= 0 ? current[slot + 2] : zeroValueHigh;
+            long low = slot >= 0 ? current[slot + 3] : zeroValueLow;
+
+            if (lock.validate(stamp)) {
+                if (slot < 0 && !zeroKey) {
+                    return false;
+                }
+                value[0] = high;
+                value[1] = low;
+                return true;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            if (keyHigh == 0 && keyLow == 0) {
+                if (!hasZeroKey) {
+                    return false;
+                }
+                value[0] = zeroValueHigh;
+                value[1] = zeroValueLow;
+                return true;
+            }
+
+            int slot = find(table, keyHigh, keyLow);
+            if (slot < 0) {
+                return false;
+            }
+            value[0] = table[slot + 2];
+            value[1] = table[slot + 3];
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the value of a key as an object. With a mapper that captures nothing, such as
+     * {@code UUID::new}, nothing but the returned object is allocated.
+     *
+     * @param keyHigh The high half of the key
+     * @param keyLow The low half of the key
+     * @param mapper The mapper creating the object from both halves of the value
+     * @return The mapped value, or null if the key is not present
+     */
+    public <T> T get(long keyHigh, long keyLow, ValueMapper<T> mapper) {
+        boolean found;
+        long high;
+        long low;
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long[] current = table;
+            int slot = find(current, keyHigh, keyLow);
+            found = slot >= 0 || (keyHigh == 0 && keyLow == 0 && hasZeroKey);
+            high = slot >= 0 ? current[slot + 2] : zeroValueHigh;
+            low = slot >= 0 ? current[slot + 3] : zeroValueLow;
+
+            if (lock.validate(stamp)) {
+                return found ? mapper.map(high, low) : null;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            int slot = find(table, keyHigh, keyLow);
+            found = slot >= 0 || (keyHigh == 0 && keyLow == 0 && hasZeroKey);
+            high = slot >= 0 ? table[slot + 2] : zeroValueHigh;
+            low = slot >= 0 ? table[slot + 3] : zeroValueLow;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return found ? mapper.map(high, low) : null;
+    }
+
+    /**
+     * Associate a value with a key, replacing any previous value.
+     *
+     * @param keyHigh The high half of the key
+     * @param keyLow The low half of the key
+     * @param valueHigh The high half of the value
+     * @param valueLow The low half of the value
+     * @return True if the key was not present before
+     */
+    public boolean put(long keyHigh, long keyLow, long valueHigh, long valueLow) {
+        long stamp = lock.writeLock();
+        try {
+            if (keyHigh == 0 && keyLow == 0) {
+                boolean added = !hasZeroKey;
+                hasZeroKey = true;
+                zeroValueHigh = valueHigh;
+                zeroValueLow = valueLow;
+                if (added) {
+                    size++;
+                }
+                return added;
+            }
+
+            int slot = slotFor(keyHigh, keyLow, mask);
+            while (table[slot] != 0 || table[slot + 1] != 0) {
+                if (table[slot] == keyHigh && table[slot + 1] == keyLow) {
+                    table[slot + 2] = valueHigh;
+                    table[slot + 3] = valueLow;
+                    return false;
+                }
+                slot = (slot + SLOT_SIZE) & mask;
+            }
+
+            table[slot + 2] = valueHigh;
+            table[slot + 3] = valueLow;
+            table[slot] = keyHigh;
+            table[slot + 1] = keyLow;
+
+            if (++size > resizeAt) {
+                resize(table.length / SLOT_SIZE * 2);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param keyHigh The high half of the key
+     * @param keyLow The low half of the key
+     * @return True if the key was present
+     */
+    public boolean remove(long keyHigh, long keyLow) {
+        long stamp = lock.writeLock();
+        try {
+            if (keyHigh == 0 && keyLow == 0) {
+                if (!hasZeroKey) {
+                    return false;
+                }
+                hasZeroKey = false;
+                size--;
+                return true;
+            }
+
+            int slot = find(table, keyHigh, keyLow);
+            if (slot < 0) {
+                return false;
+            }
+
+            shiftBack(slot);
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Visit every entry under a read lock. The visitor must not modify this map.
+     *
+     * @param visitor The visitor receiving every entry
+     */
+    public void forEach(Visitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            if (hasZeroKey) {
+                visitor.visit(0, 0, zeroValueHigh, zeroValueLow);
+            }
+
+            for (int slot = 0; slot < table.length; slot += SLOT_SIZE) {
+                if (table[slot] != 0 || table[slot + 1] != 0) {
+                    visitor.visit(table[slot], table[slot + 1], table[slot + 2], table[slot + 3]);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            allocate(capacityFor(0));
+            hasZeroKey = false;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Estimate the heap used by this map.
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateMemory() {
+        long stamp = lock.readLock();
+        try {
+            return 16 + (long) table.length * Long.BYTES;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int find(long[] table, long keyHigh, long keyLow) {
+        if (keyHigh == 0 && keyLow == 0) {
+            return -1;
+        }
+
+        // Derive the mask from the array itself, an optimistic reader may see a newer mask field
+        int mask = table.length - 1;
+
+        // Bound the probe, a concurrent write may leave an optimistic reader looking at a full table
+        int slot = slotFor(keyHigh, keyLow, mask);
+        for (int probes = 0; probes <= mask; probes += SLOT_SIZE) {
+            long high = table[slot];
+            long low = table[slot + 1];
+            if (high == keyHigh && low == keyLow) {
+                return slot;
+            }
+            if (high == 0 && low == 0) {
+                return -1;
+            }
+            slot = (slot + SLOT_SIZE) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the entry at a slot by moving later entries of the same probe sequence back.
+     */
+    private void shiftBack(int slot) {
+        int next = slot;
+        while (true) {
+            next = (next + SLOT_SIZE) & mask;
+            long high = table[next];
+            long low = table[next + 1];
+            if (high == 0 && low == 0) {
+                break;
+            }
+
+            // Move the entry unless its home slot lies cyclically between the free slot and itself
+            int home = slotFor(high, low, mask);
+            boolean between = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!between) {
+                System.arraycopy(table, next, table, slot, SLOT_SIZE);
+                slot = next;
+            }
+        }
+
+        table[slot] = 0;
+        table[slot + 1] = 0;
+        table[slot + 2] = 0;
+        table[slot + 3] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+
+        for (int i = 0; i < old.length; i += SLOT_SIZE) {
+            if (old[i] == 0 && old[i + 1] == 0) {
+                continue;
+            }
+
+            int slot = slotFor(old[i], old[i + 1], mask);
+            while (table[slot] != 0 || table[slot + 1] != 0) {
+                slot = (slot + SLOT_SIZE) & mask;
+            }
+            System.arraycopy(old, i, table, slot, SLOT_SIZE);
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * SLOT_SIZE];
+        mask = table.length - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slotFor(long keyHigh, long keyLow, int mask) {
+        // Finalizer of MurmurHash3 over both halves
+        long hash = keyHigh * 0x9E3779B97F4A7C15L ^ keyLow;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return ((int) hash * SLOT_SIZE) & mask;
+    }
+}
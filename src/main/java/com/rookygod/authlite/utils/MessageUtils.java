@@ -37,5 +37,24 @@ public class MessageUtils {
         
         return result;
     }
+    
+    /**
+     * Format a duration for players, such as "1h 5m" or "42s".
+     *
+     * @param millis The duration in milliseconds
+     * @return The duration rounded up to whole seconds, with at most two units
+     */
+    public static String formatDuration(long millis) {
+        long seconds = Math.max(1, (millis + 999) / 1000);
+        long hours = seconds / 3600;
+        long minutes = seconds % 3600 / 60;
+        
+        if (hours > 0) {
+            return minutes > 0 ? hours + "h " + minutes + "m" : hours + "h";
+        }
+        if (minutes > 0) {
+            return seconds % 60 > 0 ? minutes + "m " + seconds % 60 + "s" : minutes + "m";
+        }
+        return seconds + "s";
+    }
 }
-
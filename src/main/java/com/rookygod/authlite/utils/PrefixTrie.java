@@ -0,0 +1,134 @@
+package com.rookygod.authlite.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary trie of address prefixes over 128-bit keys, for longest-prefix matching of IPv6
+ * and IPv4-mapped addresses (see {@link AddressUtils#toHigh(byte[])}).
+ * <p>
+ * The trie is compiled once from a list of prefixes into two int arrays: the children of
+ * every node, and the prefix that ends at every node. A lookup walks one bit per level,
+ * reading a single array element per step, and allocates nothing. A compiled trie is
+ * immutable and can be shared between threads.
+ */
+public class PrefixTrie {
+
+    private static final PrefixTrie EMPTY = compile(new long[0], new long[0], new int[0]);
+
+    // Node n has its children at 2n (bit 0) and 2n + 1 (bit 1); 0 means no child
+    private final int[] children;
+    // Index of the prefix ending at each node, or -1
+    private final int[] prefixes;
+    private final int size;
+
+    private PrefixTrie(int[] children, int[] prefixes, int size) {
+        this.children = children;
+        this.prefixes = prefixes;
+        this.size = size;
+    }
+
+    public static PrefixTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compile a trie from a list of prefixes. If the same prefix is listed twice, the
+     * later one wins.
+     *
+     * @param highs The high halves of the prefixes
+     * @param lows The low halves of the prefixes
+     * @param lengths The lengths of the prefixes in bits (0 - 128)
+     * @return The compiled trie, whose lookups return indexes into these arrays
+     */
+    public static PrefixTrie compile(long[] highs, long[] lows, int[] lengths) {
+        int[] children = new int[64];
+        int[] prefixes = new int[32];
+        Arrays.fill(prefixes, -1);
+        int nodes = 1;
+
+        for (int i = 0; i < lengths.length; i++) {
+            int length = Math.max(0, Math.min(128, lengths[i]));
+            int node = 0;
+            for (int bit = 0; bit < length; bit++) {
+                int child = node * 2 + bit(highs[i], lows[i], bit);
+                if (children[child] == 0) {
+                    if (nodes == prefixes.length) {
+                        children = Arrays.copyOf(children, children.length * 2);
+                        prefixes = Arrays.copyOf(prefixes, prefixes.length * 2);
+                        Arrays.fill(prefixes, nodes, prefixes.length, -1);
+                    }
+                    children[child] = nodes++;
+                }
+                node = children[child];
+            }
+            prefixes[node] = i;
+        }
+
+        return new PrefixTrie(Arrays.copyOf(children, nodes * 2), Arrays.copyOf(prefixes, nodes), lengths.length);
+    }
+
+    /**
+     * Find the longest prefix containing an address.
+     *
+     * @param high The high half of the address
+     * @param low The low half of the address
+     * @return The index of the longest matching prefix, or -1 if none matches
+     */
+    public int find(long high, long low) {
+        int node = 0;
+        int match = prefixes[0];
+        for (int bit = 0; bit < 128; bit++) {
+            node = children[node * 2 + bit(high, low, bit)];
+            if (node == 0) {
+                break;
+            }
+            if (prefixes[node] >= 0) {
+                match = prefixes[node];
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Check whether two addresses both fall under one of the prefixes. Unlike comparing
+     * the results of {@link #find(long, long)}, this also matches addresses whose longest
+     * prefixes differ but are nested in a shorter common one.
+     *
+     * @param high The high half of the first address
+     * @param low The low half of the first address
+     * @param otherHigh The high half of the second address
+     * @param otherLow The low half of the second address
+     * @return True if a prefix contains both addresses
+     */
+    public boolean containsBoth(long high, long low, long otherHigh, long otherLow) {
+        // Only the path both addresses share can hold a prefix containing both
+        int node = 0;
+        for (int bit = 0; bit < 128; bit++) {
+            if (prefixes[node] >= 0) {
+                return true;
+            }
+            int next = bit(high, low, bit);
+            if (next != bit(otherHigh, otherLow, bit)) {
+                return false;
+            }
+            node = children[node * 2 + next];
+            if (node == 0) {
+                return false;
+            }
+        }
+        return prefixes[node] >= 0;
+    }
+
+    /**
+     * Get the number of prefixes the trie was compiled from.
+     *
+     * @return The number of prefixes
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int bit(long high, long low, int bit) {
+        return bit < 64 ? (int) (high >>> (63 - bit)) & 1 : (int) (low >>> (127 - bit)) & 1;
+    }
+}
@@ -0,0 +1,70 @@
+package com.rookygod.authlite.utils;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * The one repeating task of the plugin, running the deadlines of every player on a
+ * shared {@link TimerWheel}: login timeouts, reminders, prompts after unregistering and
+ * session expiries.
+ * <p>
+ * A join wave adds entries to the wheel instead of tasks to the Bukkit scheduler, and
+ * logging in or leaving cancels them in O(1). The wheel is advanced once per server
+ * tick on the main thread, so tasks run on the main thread, at most one tick late.
+ * Tasks that repeat reschedule their own timeout.
+ */
+public class Ticker {
+
+    // One server tick per bucket, so a revolution covers almost seven minutes
+    private static final int WHEEL_SIZE = 8192;
+    private static final long TICK_MILLIS = 50;
+
+    private final TimerWheel wheel;
+    private BukkitTask task;
+
+    public Ticker(Plugin plugin) {
+        this.wheel = new TimerWheel(WHEEL_SIZE, TICK_MILLIS, System.currentTimeMillis());
+        this.task = plugin.getServer().getScheduler().runTaskTimer(plugin,
+                () -> wheel.advance(System.currentTimeMillis()), 1L, 1L);
+    }
+
+    /**
+     * Schedules a task on the main thread.
+     *
+     * @param task The task to run
+     * @param deadline The time in milliseconds after which the task runs
+     * @return The timeout, to cancel or move the task
+     */
+    public TimerWheel.Timeout schedule(Runnable task, long deadline) {
+        return wheel.schedule(task, deadline);
+    }
+
+    /**
+     * Moves a timeout to a new deadline, or schedules it again if it already ran.
+     *
+     * @param timeout The timeout to move
+     * @param deadline The new time in milliseconds after which the task runs
+     */
+    public void reschedule(TimerWheel.Timeout timeout, long deadline) {
+        wheel.reschedule(timeout, deadline);
+    }
+
+    /**
+     * Gets the number of pending deadlines.
+     *
+     * @return The number of scheduled timeouts
+     */
+    public int size() {
+        return wheel.size();
+    }
+
+    /**
+     * Stops the ticker. Pending timeouts never run.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.rookygod.authlite.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel for large numbers of deadlines that are mostly cancelled or moved
+ * before they are due, such as session expiries.
+ * <p>
+ * The wheel is a ring of buckets, each covering one tick. A timeout goes into the bucket
+ * of its deadline tick modulo the ring size and is linked into that bucket's list, so
+ * scheduling, cancelling and rescheduling are O(1). {@link #advance(long)} visits the
+ * buckets of the ticks that have passed and runs the timeouts that are due; timeouts
+ * more than one revolution away stay in their bucket until their round comes.
+ * <p>
+ * All methods are thread-safe. Tasks run on the thread calling {@link #advance(long)},
+ * outside of the wheel's lock, so they may schedule or cancel timeouts themselves.
+ */
+public class TimerWheel {
+
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long tickMillis;
+    // The next tick whose bucket has not been visited yet
+    private long nextTick;
+    private int size;
+
+    /**
+     * A scheduled task, which can be cancelled or moved until it runs.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+        private long deadlineTick;
+        private int bucket = -1;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timeout, unless it has already run.
+         *
+         * @return True if the timeout was pending
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (bucket < 0) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+
+        /**
+         * Checks whether the timeout is still waiting to run.
+         *
+         * @return True if the timeout is pending
+         */
+        public boolean isPending() {
+            synchronized (TimerWheel.this) {
+                return bucket >= 0;
+            }
+        }
+    }
+
+    /**
+     * Creates a wheel.
+     *
+     * @param ticksPerWheel The number of buckets, rounded up to a power of two
+     * @param tickMillis The time one bucket covers; deadlines are rounded up to it
+     * @param now The current time in milliseconds
+     */
+    public TimerWheel(int ticksPerWheel, long tickMillis, long now) {
+        int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.tickMillis = Math.max(1, tickMillis);
+        this.nextTick = now / this.tickMillis + 1;
+    }
+
+    /**
+     * Schedules a task.
+     *
+     * @param task The task to run
+     * @param deadline The time in milliseconds after which the task runs
+     * @return The timeout, to cancel or move the task
+     */
+    public synchronized Timeout schedule(Runnable task, long deadline) {
+        Timeout timeout = new Timeout(task);
+        link(timeout, deadline);
+        return timeout;
+    }
+
+    /**
+     * Moves a timeout to a new deadline, or schedules it again if it already ran or was
+     * cancelled.
+     *
+     * @param timeout The timeout to move
+     * @param deadline The new time in milliseconds after which the task runs
+     */
+    public synchronized void reschedule(Timeout timeout, long deadline) {
+        if (timeout.bucket >= 0) {
+            unlink(timeout);
+        }
+        link(timeout, deadline);
+    }
+
+    /**
+     * Runs every task whose deadline has passed.
+     *
+     * @param now The current time in milliseconds
+     * @return The number of tasks that ran
+     */
+    public int advance(long now) {
+        // Most ticks run nothing, so only allocate once a task is due
+        List<Runnable> due = null;
+        synchronized (this) {
+            long currentTick = now / tickMillis;
+            // Visit every bucket at most once, even after a long pause
+            long lastTick = Math.min(currentTick, nextTick + mask);
+            for (long tick = nextTick; tick <= lastTick; tick++) {
+                Timeout timeout = buckets[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.deadlineTick <= currentTick) {
+                        unlink(timeout);
+                        if (due == null) {
+                            due = new ArrayList<>();
+                        }
+                        due.add(timeout.task);
+                    }
+                    timeout = next;
+                }
+            }
+            nextTick = Math.max(nextTick, currentTick + 1);
+        }
+
+        if (due == null) {
+            return 0;
+        }
+        for (Runnable task : due) {
+            task.run();
+        }
+        return due.size();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void link(Timeout timeout, long deadline) {
+        // Never place a timeout in a bucket that was already visited
+        timeout.deadlineTick = Math.max(nextTick, (deadline + tickMillis - 1) / tickMillis);
+        timeout.bucket = (int) (timeout.deadlineTick & mask);
+
+        Timeout head = buckets[timeout.bucket];
+        timeout.previous = null;
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+}
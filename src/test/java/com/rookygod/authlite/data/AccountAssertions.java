@@ -0,0 +1,22 @@
+package com.rookygod.authlite.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares accounts field by field, since {@link PlayerData} has no equals().
+ */
+final class AccountAssertions {
+
+    private AccountAssertions() {
+    }
+
+    static void assertSameAccount(PlayerData expected, PlayerData actual) {
+        assertNotNull(actual, "missing account " + expected.getUsername());
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getLastIp(), actual.getLastIp());
+        assertEquals(expected.getLastLogin(), actual.getLastLogin());
+    }
+}
@@ -0,0 +1,95 @@
+package com.rookygod.authlite.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountIndexTest {
+
+    private static final String LONG_NAME = "bedrock_player_with_a_long_name";
+
+    private final AccountIndex index = new AccountIndex(16);
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    @Test
+    void findsUsernamesIgnoringCase() {
+        index.add(alice, "Alice_01");
+
+        assertEquals(alice, index.get("alice_01"));
+        assertEquals(alice, index.get("ALICE_01"));
+        assertTrue(index.contains("aLiCe_01"));
+        assertTrue(index.contains(alice));
+        assertNull(index.get("alice_0"));
+        assertNull(index.get("alice_01x"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void keepsNamesThatCannotBePacked() {
+        index.add(alice, LONG_NAME);
+        index.add(bob, "Bj\u00f8rn");
+
+        assertEquals(alice, index.get(LONG_NAME.toUpperCase()));
+        assertEquals(bob, index.get("BJ\u00d8RN"));
+        assertEquals(2, index.size());
+
+        index.remove(alice);
+        assertNull(index.get(LONG_NAME));
+        assertFalse(index.contains(alice));
+        assertEquals(bob, index.get("bj\u00f8rn"));
+    }
+
+    @Test
+    void renameDropsThePreviousName() {
+        index.add(alice, "Alice");
+        index.add(alice, "Alicia");
+
+        assertNull(index.get("alice"));
+        assertEquals(alice, index.get("alicia"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void renameFromAnUnpackableName() {
+        index.add(alice, LONG_NAME);
+        index.add(alice, "Alice");
+
+        assertNull(index.get(LONG_NAME));
+        assertFalse(index.contains(LONG_NAME));
+        assertEquals(alice, index.get("alice"));
+
+        index.add(alice, LONG_NAME);
+        assertNull(index.get("alice"));
+        assertEquals(alice, index.get(LONG_NAME));
+    }
+
+    @Test
+    void renameKeepsANameTakenOverByAnotherAccount() {
+        index.add(alice, "Steve");
+        index.add(bob, "Steve");
+        index.add(alice, "Alice");
+
+        assertEquals(bob, index.get("steve"));
+        assertEquals(alice, index.get("alice"));
+
+        index.remove(alice);
+        assertEquals(bob, index.get("steve"));
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        index.add(alice, "Alice");
+        index.add(bob, LONG_NAME);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.get("alice"));
+        assertNull(index.get(LONG_NAME));
+    }
+}
@@ -0,0 +1,208 @@
+package com.rookygod.authlite.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountJournalTest {
+
+    @TempDir
+    File folder;
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID carol = UUID.randomUUID();
+
+    @Test
+    void replaysPutsAndDeletesInOrder() throws IOException {
+        AccountJournal journal = open(new LinkedHashMap<>());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash1", "203.0.113.7", 10));
+        journal.appendPut(new PlayerData(bob, "Bob", "hash2"));
+        journal.appendDelete(bob);
+        journal.appendPut(new PlayerData(alice, "Alicia", "hash3", "", 20));
+        assertEquals(4, journal.getRecordCount());
+        journal.close();
+
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        AccountJournal reopened = open(replayed);
+        assertEquals(4, reopened.getRecordCount());
+        reopened.close();
+
+        assertNull(replayed.get(bob));
+        assertTrue(replayed.containsKey(bob));
+        PlayerData playerData = replayed.get(alice);
+        assertEquals("Alicia", playerData.getUsername());
+        assertEquals("hash3", playerData.getPassword());
+        assertEquals(20, playerData.getLastLogin());
+    }
+
+    @Test
+    void dropsATornTailAndAppendsAfterTheLastRecord() throws IOException {
+        AccountJournal journal = open(new LinkedHashMap<>());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash1"));
+        journal.appendPut(new PlayerData(bob, "Bob", "hash2"));
+        journal.close();
+
+        // A crash in the middle of the next record leaves its length and part of its payload
+        File file = journalFile();
+        long valid = file.length();
+        Files.write(file.toPath(), new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        AccountJournal reopened = open(replayed);
+        assertEquals(2, replayed.size());
+        assertEquals(valid, file.length());
+
+        reopened.appendDelete(alice);
+        reopened.close();
+
+        replayed.clear();
+        open(replayed).close();
+        assertEquals(2, replayed.size());
+        assertNull(replayed.get(alice));
+        assertEquals("Bob", replayed.get(bob).getUsername());
+    }
+
+    @Test
+    void dropsACorruptLastRecord() throws IOException {
+        AccountJournal journal = open(new LinkedHashMap<>());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash1"));
+        long first = journalFile().length();
+        journal.appendPut(new PlayerData(bob, "Bob", "hash2"));
+        journal.close();
+
+        // Flip a payload byte of the second record so its checksum no longer matches
+        corrupt(first + 12);
+
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        open(replayed).close();
+        assertEquals(1, replayed.size());
+        assertTrue(replayed.containsKey(alice));
+        assertEquals(first, journalFile().length());
+        assertEquals(0, corruptCopies().length);
+    }
+
+    @Test
+    void dropsZeroesAfterTheLastRecord() throws IOException {
+        AccountJournal journal = open(new LinkedHashMap<>());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash1"));
+        journal.close();
+
+        // The file was extended, but the crash came before the record reached the disk
+        long valid = journalFile().length();
+        Files.write(journalFile().toPath(), new byte[64], StandardOpenOption.APPEND);
+
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        open(replayed).close();
+        assertEquals(1, replayed.size());
+        assertEquals(valid, journalFile().length());
+        assertEquals(0, corruptCopies().length);
+    }
+
+    @Test
+    void keepsACopyOfAJournalDamagedBeforeItsEnd() throws IOException {
+        AccountJournal journal = open(new LinkedHashMap<>());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash1"));
+        long first = journalFile().length();
+        journal.appendPut(new PlayerData(bob, "Bob", "hash2"));
+        journal.appendPut(new PlayerData(carol, "Carol", "hash3"));
+        journal.close();
+
+        corrupt(first + 12);
+        byte[] damaged = Files.readAllBytes(journalFile().toPath());
+
+        // The replay stops at the damaged record, and the records after it are kept aside
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        AccountJournal reopened = open(replayed);
+        assertEquals(1, replayed.size());
+        assertTrue(replayed.containsKey(alice));
+
+        File[] copies = corruptCopies();
+        assertEquals(1, copies.length);
+        assertArrayEquals(damaged, Files.readAllBytes(copies[0].toPath()));
+
+        // Appends continue after the last valid record
+        assertEquals(first, journalFile().length());
+        reopened.appendDelete(alice);
+        reopened.close();
+
+        replayed.clear();
+        open(replayed).close();
+        assertEquals(1, replayed.size());
+        assertNull(replayed.get(alice));
+    }
+
+    @Test
+    void replaysARotatedJournalUntilItIsDiscarded() throws IOException {
+        AccountJournal journal = open(new LinkedHashMap<>());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash1"));
+        journal.rotate();
+        assertEquals(0, journal.getRecordCount());
+        journal.appendPut(new PlayerData(alice, "Alice", "hash2"));
+        journal.close();
+
+        // A crash before the snapshot was written keeps the rotated records
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        AccountJournal reopened = open(replayed);
+        assertEquals("hash2", replayed.get(alice).getPassword());
+
+        // A second rotation appends to the records that are still waiting for a snapshot
+        reopened.appendPut(new PlayerData(bob, "Bob", "hash3"));
+        reopened.rotate();
+        reopened.discardRotated();
+        reopened.close();
+
+        replayed.clear();
+        open(replayed).close();
+        assertTrue(replayed.isEmpty());
+        assertFalse(new File(folder, "players.journal.old").exists());
+    }
+
+    private AccountJournal open(Map<UUID, PlayerData> replayed) throws IOException {
+        AccountJournal journal = new AccountJournal(journalFile(), false, Logger.getLogger(getClass().getName()));
+        journal.open(new AccountJournal.Visitor() {
+            @Override
+            public void put(PlayerData playerData) {
+                replayed.put(playerData.getUuid(), playerData);
+            }
+
+            @Override
+            public void delete(UUID uuid) {
+                replayed.put(uuid, null);
+            }
+        });
+        return journal;
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(journalFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    private File[] corruptCopies() {
+        return folder.listFiles((dir, name) -> name.startsWith("players.journal.corrupt-"));
+    }
+
+    private File journalFile() {
+        return new File(folder, "players.journal");
+    }
+}
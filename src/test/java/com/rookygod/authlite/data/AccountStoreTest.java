@@ -0,0 +1,132 @@
+package com.rookygod.authlite.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.rookygod.authlite.data.AccountAssertions.assertSameAccount;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Round trips every {@link AccountStore} backend has to pass, run against a temporary
+ * data folder.
+ */
+abstract class AccountStoreTest {
+
+    @TempDir
+    File folder;
+
+    protected final UUID alice = UUID.randomUUID();
+    protected final UUID bob = UUID.randomUUID();
+    protected final UUID carol = UUID.randomUUID();
+    private AccountStore store;
+
+    /**
+     * Creates a store on a data folder, without opening it.
+     */
+    protected abstract AccountStore createStore(File dataFolder);
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void putAndRemoveSurviveAReload() throws IOException {
+        PlayerData first = new PlayerData(alice, "Alice", "$hash$1", "203.0.113.7", 1000);
+        PlayerData second = new PlayerData(bob, "Bob", "$hash$2", "2001:db8::1", 2000);
+        reopen().saveAll(changes(first, second));
+
+        assertSameAccount(first, store.load(alice));
+        assertSameAccount(second, store.loadByUsername("BOB"));
+
+        store.saveAll(removal(bob));
+        assertNull(store.load(bob));
+
+        reopen();
+        assertSameAccount(first, store.load(alice));
+        assertNull(store.load(bob));
+        assertNull(store.loadByUsername("bob"));
+        assertEquals(1, loadAll().size());
+    }
+
+    @Test
+    void updatesReplaceTheStoredAccount() throws IOException {
+        reopen().saveAll(changes(new PlayerData(alice, "Alice", "$hash$1")));
+        PlayerData changed = new PlayerData(alice, "Alice", "$hash$2", "198.51.100.1", 3000);
+        store.saveAll(changes(changed));
+
+        reopen();
+        assertSameAccount(changed, store.load(alice));
+        assertEquals(1, loadAll().size());
+    }
+
+    @Test
+    void renameReleasesThePreviousUsername() throws IOException {
+        reopen().saveAll(changes(new PlayerData(alice, "Alice", "$hash$1")));
+        PlayerData renamed = new PlayerData(alice, "Alicia", "$hash$1");
+        store.saveAll(changes(renamed));
+
+        assertNull(store.loadByUsername("alice"));
+        assertSameAccount(renamed, store.loadByUsername("ALICIA"));
+
+        reopen();
+        assertNull(store.loadByUsername("alice"));
+        assertSameAccount(renamed, store.loadByUsername("alicia"));
+    }
+
+    @Test
+    void loadIndexListsEveryAccount() throws IOException {
+        reopen().saveAll(changes(new PlayerData(alice, "Alice", "$hash$1"), new PlayerData(bob, "Bob", "$hash$2"),
+                new PlayerData(carol, "Carol", "$hash$3")));
+        store.saveAll(removal(carol));
+
+        Map<UUID, String> index = new HashMap<>();
+        reopen().loadIndex(index::put);
+        assertEquals(Map.of(alice, "Alice", bob, "Bob"), index);
+    }
+
+    /**
+     * Closes the current store, if any, and opens a new one on the same folder.
+     */
+    protected AccountStore reopen() throws IOException {
+        closeStore();
+        store = createStore(folder);
+        store.open();
+        return store;
+    }
+
+    protected AccountStore store() {
+        return store;
+    }
+
+    protected Map<UUID, PlayerData> loadAll() throws IOException {
+        Map<UUID, PlayerData> accounts = new HashMap<>();
+        store.loadAll(playerData -> accounts.put(playerData.getUuid(), playerData));
+        return accounts;
+    }
+
+    protected static Map<UUID, PlayerData> changes(PlayerData... accounts) {
+        Map<UUID, PlayerData> changes = new LinkedHashMap<>();
+        for (PlayerData playerData : accounts) {
+            changes.put(playerData.getUuid(), playerData);
+        }
+        return changes;
+    }
+
+    protected static Map<UUID, PlayerData> removal(UUID uuid) {
+        Map<UUID, PlayerData> changes = new HashMap<>();
+        changes.put(uuid, null);
+        return changes;
+    }
+}
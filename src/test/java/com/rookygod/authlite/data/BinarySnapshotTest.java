@@ -0,0 +1,128 @@
+package com.rookygod.authlite.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static com.rookygod.authlite.data.AccountAssertions.assertSameAccount;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinarySnapshotTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void readsBackEveryRecord() throws IOException {
+        List<PlayerData> records = records(100);
+        BinarySnapshot snapshot = write(records);
+
+        List<PlayerData> read = new ArrayList<>();
+        assertEquals(100, snapshot.read(read::add));
+        for (int i = 0; i < records.size(); i++) {
+            assertSameAccount(records.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    void findsSingleRecordsByUuidAndUsername() throws IOException {
+        List<PlayerData> records = records(100);
+        BinarySnapshot snapshot = write(records);
+
+        for (PlayerData playerData : records) {
+            assertSameAccount(playerData, snapshot.find(playerData.getUuid()));
+            assertSameAccount(playerData, snapshot.findByUsername(playerData.getUsername().toUpperCase()));
+        }
+        assertNull(snapshot.find(UUID.randomUUID()));
+        assertNull(snapshot.findByUsername("nobody"));
+        snapshot.closeLookups();
+    }
+
+    @Test
+    void findsUsernamesIgnoringCaseInAnyLocale() throws IOException {
+        Locale previous = Locale.getDefault();
+        // Turkish lowercases "I" to a dotless i
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            PlayerData irmak = new PlayerData(UUID.randomUUID(), "Irmak", "hash1");
+            PlayerData oyvind = new PlayerData(UUID.randomUUID(), "\u00d8yvind", "hash2");
+            BinarySnapshot snapshot = write(List.of(irmak, oyvind));
+
+            assertSameAccount(irmak, snapshot.findByUsername("irmak"));
+            assertSameAccount(irmak, snapshot.findByUsername("IRMAK"));
+            assertSameAccount(oyvind, snapshot.findByUsername("\u00f8YVIND"));
+            snapshot.closeLookups();
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void anEmptySnapshotHasNoRecords() throws IOException {
+        BinarySnapshot snapshot = write(new ArrayList<>());
+
+        assertEquals(0, snapshot.read(playerData -> { }));
+        assertNull(snapshot.find(UUID.randomUUID()));
+        assertNull(snapshot.findByUsername("nobody"));
+        snapshot.closeLookups();
+    }
+
+    @Test
+    void becomesStaleWhenTheSourceChanges() throws IOException {
+        BinarySnapshot snapshot = write(records(3));
+        File source = sourceFile();
+        assertTrue(snapshot.isFreshFor(source));
+
+        Files.writeString(source.toPath(), "players: {}\n# edited by hand\n");
+        assertFalse(snapshot.isFreshFor(source));
+        assertFalse(new BinarySnapshot(new File(folder, "missing.dat")).isFreshFor(source));
+    }
+
+    @Test
+    void rejectsATruncatedSnapshot() throws IOException {
+        BinarySnapshot snapshot = write(records(10));
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.getFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        List<PlayerData> read = new ArrayList<>();
+        assertThrows(IOException.class, () -> snapshot.read(read::add));
+        assertTrue(read.isEmpty());
+    }
+
+    private BinarySnapshot write(List<PlayerData> records) throws IOException {
+        File source = sourceFile();
+        if (!source.exists()) {
+            Files.writeString(source.toPath(), "players: {}\n");
+        }
+
+        BinarySnapshot snapshot = new BinarySnapshot(new File(folder, "players.dat"));
+        snapshot.write(records, source);
+        return snapshot;
+    }
+
+    private File sourceFile() {
+        return new File(folder, "players.yml");
+    }
+
+    private static List<PlayerData> records(int count) {
+        List<PlayerData> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String lastIp = i % 3 == 0 ? "" : i % 3 == 1 ? "203.0.113." + i : "2001:db8::" + i;
+            records.add(new PlayerData(UUID.randomUUID(), "Player" + i, "$hash$" + i, lastIp, 1000L * i));
+        }
+        return records;
+    }
+}
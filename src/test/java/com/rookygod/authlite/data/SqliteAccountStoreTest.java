@@ -0,0 +1,12 @@
+package com.rookygod.authlite.data;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+class SqliteAccountStoreTest extends AccountStoreTest {
+
+    @Override
+    protected AccountStore createStore(File dataFolder) {
+        return new SqliteAccountStore(dataFolder, 2, Logger.getLogger(getClass().getName()));
+    }
+}
@@ -0,0 +1,112 @@
+package com.rookygod.authlite.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+import static com.rookygod.authlite.data.AccountAssertions.assertSameAccount;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YamlAccountStoreTest extends AccountStoreTest {
+
+    @Override
+    protected AccountStore createStore(File dataFolder) {
+        return new YamlAccountStore(dataFolder, false, 1000, Logger.getLogger(getClass().getName()));
+    }
+
+    @Test
+    void compactionFoldsTheJournalIntoTheSnapshot() throws IOException {
+        PlayerData first = new PlayerData(alice, "Alice", "$hash$1", "203.0.113.7", 1000);
+        reopen().saveAll(changes(first, new PlayerData(bob, "Bob", "$hash$2")));
+        store().saveAll(removal(bob));
+        store().compact();
+
+        assertEquals(0, file("players.journal").length());
+        assertFalse(file("players.journal.old").exists());
+        assertTrue(file("players.dat").exists());
+
+        reopen();
+        assertSameAccount(first, store().load(alice));
+        assertSameAccount(first, store().loadByUsername("alice"));
+        assertNull(store().load(bob));
+
+        // players.yml alone is enough once players.dat is gone
+        store().close();
+        Files.delete(file("players.dat").toPath());
+        reopen();
+        assertSameAccount(first, store().load(alice));
+        assertEquals(1, loadAll().size());
+    }
+
+    @Test
+    void recoversFromACrashBetweenSnapshotAndJournal() throws IOException {
+        PlayerData first = new PlayerData(alice, "Alice", "$hash$1");
+        reopen().saveAll(changes(first, new PlayerData(bob, "Bob", "$hash$2")));
+        store().compact();
+
+        PlayerData changed = new PlayerData(alice, "Alicia", "$hash$3");
+        PlayerData added = new PlayerData(carol, "Carol", "$hash$4");
+        store().saveAll(changes(changed, added));
+        store().saveAll(removal(bob));
+        store().close();
+
+        File journal = file("players.journal");
+        File rotated = file("players.journal.old");
+        File binary = file("players.dat");
+        File journalBackup = file("journal.bak");
+        File binaryBackup = file("dat.bak");
+        Files.copy(journal.toPath(), journalBackup.toPath());
+        Files.copy(binary.toPath(), binaryBackup.toPath());
+
+        reopen().compact();
+        store().close();
+
+        // The crash came after players.yml was swapped in, but before the rotated journal was deleted
+        // and players.dat was rewritten
+        Files.move(journalBackup.toPath(), rotated.toPath());
+        Files.move(binaryBackup.toPath(), binary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        reopen();
+        assertSameAccount(changed, store().load(alice));
+        assertSameAccount(changed, store().loadByUsername("alicia"));
+        assertNull(store().loadByUsername("alice"));
+        assertSameAccount(added, store().load(carol));
+        assertNull(store().load(bob));
+        assertEquals(2, loadAll().size());
+
+        store().compact();
+        assertFalse(rotated.exists());
+        reopen();
+        assertSameAccount(changed, store().load(alice));
+        assertNull(store().load(bob));
+        assertEquals(2, loadAll().size());
+    }
+
+    @Test
+    void dropsATornJournalTail() throws IOException {
+        PlayerData first = new PlayerData(alice, "Alice", "$hash$1");
+        reopen().saveAll(changes(first));
+        store().close();
+
+        Files.write(file("players.journal").toPath(), new byte[] {0, 0, 0, 64, 0, 0}, StandardOpenOption.APPEND);
+
+        PlayerData second = new PlayerData(bob, "Bob", "$hash$2");
+        reopen().saveAll(changes(second));
+
+        reopen();
+        assertSameAccount(first, store().load(alice));
+        assertSameAccount(second, store().load(bob));
+    }
+
+    private File file(String name) {
+        return new File(folder, name);
+    }
+}
@@ -0,0 +1,99 @@
+package com.rookygod.authlite.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionThrottleTest {
+
+    @Test
+    void countsConnectionsWithinAWindow() {
+        long state = 0;
+        for (int i = 0; i < 5; i++) {
+            state = ConnectionThrottle.increment(state, 100);
+        }
+
+        assertEquals(5, ConnectionThrottle.estimate(state, 1), 0);
+        assertEquals(5, ConnectionThrottle.estimate(state, 0), 0);
+    }
+
+    @Test
+    void weighsThePreviousWindowByItsOverlap() {
+        long state = 0;
+        for (int i = 0; i < 10; i++) {
+            state = ConnectionThrottle.increment(state, 100);
+        }
+        state = ConnectionThrottle.increment(state, 101);
+
+        // 10 in the previous window, a quarter of which still overlaps, and 1 in the current one
+        assertEquals(3.5, ConnectionThrottle.estimate(state, 0.25), 1e-9);
+        assertEquals(11, ConnectionThrottle.estimate(state, 1), 1e-9);
+    }
+
+    @Test
+    void forgetsWindowsOlderThanThePreviousOne() {
+        long state = 0;
+        for (int i = 0; i < 10; i++) {
+            state = ConnectionThrottle.increment(state, 100);
+        }
+        state = ConnectionThrottle.increment(state, 102);
+
+        assertEquals(1, ConnectionThrottle.estimate(state, 1), 0);
+    }
+
+    @Test
+    void retriesAnEvictedWindow() {
+        AtomicLong window = new AtomicLong(ConnectionThrottle.EVICTED);
+        assertEquals(ConnectionThrottle.RETRY, ConnectionThrottle.count(window, 100, 1), 0);
+        assertEquals(ConnectionThrottle.EVICTED, window.get());
+
+        window.set(0);
+        assertEquals(1, ConnectionThrottle.count(window, 100, 1), 0);
+    }
+
+    @Test
+    void saturatesInsteadOfOverflowing() {
+        long state = 0;
+        for (int i = 0; i < ConnectionThrottle.MAX_COUNT + 10; i++) {
+            state = ConnectionThrottle.increment(state, 7);
+        }
+        assertEquals(ConnectionThrottle.MAX_COUNT, ConnectionThrottle.estimate(state, 0), 0);
+
+        state = ConnectionThrottle.increment(state, 8);
+        assertEquals(ConnectionThrottle.MAX_COUNT + 1, ConnectionThrottle.estimate(state, 1), 0);
+    }
+
+    @Test
+    void windowsIdleForTwoWindowsAreIdle() {
+        long state = ConnectionThrottle.increment(0, 100);
+
+        assertFalse(ConnectionThrottle.isIdle(state, 100));
+        assertFalse(ConnectionThrottle.isIdle(state, 101));
+        assertTrue(ConnectionThrottle.isIdle(state, 102));
+    }
+
+    @Test
+    void groupsAddressesBySubnet() throws UnknownHostException {
+        long subnet = ConnectionThrottle.subnetKey(address("203.0.113.7"));
+
+        assertEquals(subnet, ConnectionThrottle.subnetKey(address("203.0.113.250")));
+        assertNotEquals(subnet, ConnectionThrottle.subnetKey(address("203.0.114.7")));
+
+        long ipv6 = ConnectionThrottle.subnetKey(address("2001:db8:1:2::1"));
+        assertEquals(ipv6, ConnectionThrottle.subnetKey(address("2001:db8:1:ffff::1")));
+        assertNotEquals(ipv6, ConnectionThrottle.subnetKey(address("2001:db8:2::1")));
+        // An IPv6 /48 never collides with an IPv4 /24
+        assertNotEquals(ConnectionThrottle.subnetKey(address("::cb00:7107")), subnet);
+    }
+
+    private static InetAddress address(String literal) throws UnknownHostException {
+        return InetAddress.getByName(literal);
+    }
+}
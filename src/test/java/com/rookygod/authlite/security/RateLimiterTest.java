@@ -0,0 +1,73 @@
+package com.rookygod.authlite.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsABurstThenRefillsOneTokenPerInterval() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(1, 3);
+        long now = 1_000 * SECOND;
+        AtomicLong bucket = new AtomicLong(now);
+
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now));
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now));
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now));
+        assertEquals(RateLimiter.DENIED, RateLimiter.take(bucket, limit, now));
+
+        // One token back after one interval, and not before
+        assertEquals(RateLimiter.DENIED, RateLimiter.take(bucket, limit, now + SECOND - 1));
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now + SECOND));
+        assertEquals(RateLimiter.DENIED, RateLimiter.take(bucket, limit, now + SECOND));
+    }
+
+    @Test
+    void deniedAttemptsDoNotDrainTheBucket() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(2, 1);
+        long now = 0;
+        AtomicLong bucket = new AtomicLong(now);
+
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(RateLimiter.DENIED, RateLimiter.take(bucket, limit, now + i));
+        }
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now + SECOND / 2));
+    }
+
+    @Test
+    void anIdleBucketIsFullButNeverFuller() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(1, 2);
+        AtomicLong bucket = new AtomicLong(0);
+        long later = 3_600 * SECOND;
+
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, later));
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, later));
+        assertEquals(RateLimiter.DENIED, RateLimiter.take(bucket, limit, later));
+    }
+
+    @Test
+    void handlesTheNanoTimeWrapping() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(1, 1);
+        long now = Long.MAX_VALUE - SECOND / 2;
+        AtomicLong bucket = new AtomicLong(now);
+
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now));
+        assertEquals(RateLimiter.DENIED, RateLimiter.take(bucket, limit, now + SECOND / 2 + 1));
+        assertEquals(RateLimiter.ALLOWED, RateLimiter.take(bucket, limit, now + SECOND));
+    }
+
+    @Test
+    void evictedBucketsAreLookedUpAgain() {
+        RateLimiter.Limit limit = new RateLimiter.Limit(1, 1);
+        AtomicLong bucket = new AtomicLong(RateLimiter.EVICTED);
+
+        assertEquals(RateLimiter.RETRY, RateLimiter.take(bucket, limit, 0));
+    }
+}
@@ -0,0 +1,109 @@
+package com.rookygod.authlite.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongPairMapTest {
+
+    @Test
+    void putGetAndRemove() {
+        LongPairMap map = new LongPairMap(4);
+        long[] value = new long[2];
+
+        assertTrue(map.put(1, 2, 3, 4));
+        assertFalse(map.put(1, 2, 5, 6));
+        assertTrue(map.get(1, 2, value));
+        assertArrayEquals(new long[] {5, 6}, value);
+        assertEquals(1, map.size());
+
+        assertTrue(map.remove(1, 2));
+        assertFalse(map.remove(1, 2));
+        assertFalse(map.containsKey(1, 2));
+        assertFalse(map.get(1, 2, value));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void storesTheZeroKey() {
+        LongPairMap map = new LongPairMap(4);
+        long[] value = new long[2];
+
+        assertFalse(map.containsKey(0, 0));
+        map.put(0, 0, 7, 8);
+        assertTrue(map.get(0, 0, value));
+        assertArrayEquals(new long[] {7, 8}, value);
+        assertEquals(1, map.size());
+
+        map.remove(0, 0);
+        assertFalse(map.containsKey(0, 0));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void mapsValuesWithoutAScratchArray() {
+        LongPairMap map = new LongPairMap(4);
+        UUID uuid = UUID.randomUUID();
+        map.put(1, 2, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+        assertEquals(uuid, map.get(1, 2, UUID::new));
+        assertNull(map.get(2, 1, UUID::new));
+    }
+
+    @Test
+    void matchesAHashMapThroughGrowthAndRemovals() {
+        // Few distinct keys in a small range, so probe chains collide and removals shift entries back
+        LongPairMap map = new LongPairMap(2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        long[] value = new long[2];
+
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(512);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key, ~key));
+            } else {
+                long next = random.nextLong();
+                assertEquals(expected.put(key, next) == null, map.put(key, ~key, next, -next));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 512; key++) {
+            Long next = expected.get(key);
+            assertEquals(next != null, map.get(key, ~key, value));
+            if (next != null) {
+                assertArrayEquals(new long[] {next, -next}, value);
+            }
+        }
+
+        int[] visited = {0};
+        map.forEach((keyHigh, keyLow, valueHigh, valueLow) -> {
+            assertEquals(expected.get(keyHigh), Long.valueOf(valueHigh));
+            visited[0]++;
+        });
+        assertEquals(expected.size(), visited[0]);
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        LongPairMap map = new LongPairMap(4);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i, i, i);
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0, 0));
+        assertFalse(map.containsKey(50, 50));
+    }
+}
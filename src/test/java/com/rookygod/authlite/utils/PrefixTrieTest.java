@@ -0,0 +1,88 @@
+package com.rookygod.authlite.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixTrieTest {
+
+    @Test
+    void emptyTrieMatchesNothing() {
+        assertEquals(-1, PrefixTrie.empty().find(0, 0));
+        assertEquals(0, PrefixTrie.empty().size());
+    }
+
+    @Test
+    void findsTheLongestMatchingPrefix() {
+        PrefixTrie trie = compile("10.0.0.0/8", "10.1.0.0/16", "10.1.2.3/32", "2001:db8::/32");
+
+        assertEquals(0, find(trie, "10.200.0.1"));
+        assertEquals(1, find(trie, "10.1.99.1"));
+        assertEquals(2, find(trie, "10.1.2.3"));
+        assertEquals(1, find(trie, "10.1.2.4"));
+        assertEquals(3, find(trie, "2001:db8:1::1"));
+        assertEquals(-1, find(trie, "11.0.0.1"));
+        assertEquals(-1, find(trie, "2001:db9::1"));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void zeroLengthPrefixMatchesEverything() {
+        PrefixTrie trie = compile("::/0", "192.168.0.0/16");
+
+        assertEquals(1, find(trie, "192.168.1.1"));
+        assertEquals(0, find(trie, "8.8.8.8"));
+        assertEquals(0, find(trie, "::1"));
+    }
+
+    @Test
+    void laterDuplicatesWin() {
+        PrefixTrie trie = compile("10.0.0.0/8", "10.0.0.0/8");
+
+        assertEquals(1, find(trie, "10.0.0.1"));
+    }
+
+    @Test
+    void matchesAddressesUnderAnyCommonPrefix() {
+        PrefixTrie trie = compile("10.0.0.0/8", "10.1.0.0/16", "2001:db8::/32");
+
+        // Their longest prefixes differ, but both are in 10.0.0.0/8
+        assertTrue(containsBoth(trie, "10.1.2.3", "10.2.0.1"));
+        assertTrue(containsBoth(trie, "10.1.2.3", "10.1.200.1"));
+        assertTrue(containsBoth(trie, "2001:db8:1::1", "2001:db8:ffff::1"));
+        assertFalse(containsBoth(trie, "10.1.2.3", "11.1.2.3"));
+        assertFalse(containsBoth(trie, "192.168.0.1", "192.168.0.2"));
+        assertFalse(containsBoth(PrefixTrie.empty(), "10.0.0.1", "10.0.0.1"));
+        assertTrue(containsBoth(compile("10.0.0.1/32"), "10.0.0.1", "10.0.0.1"));
+        assertTrue(containsBoth(compile("::/0"), "8.8.8.8", "2001:db8::1"));
+    }
+
+    private static PrefixTrie compile(String... cidrs) {
+        long[] highs = new long[cidrs.length];
+        long[] lows = new long[cidrs.length];
+        int[] lengths = new int[cidrs.length];
+        for (int i = 0; i < cidrs.length; i++) {
+            String[] parts = cidrs[i].split("/");
+            byte[] address = AddressUtils.parseLiteral(parts[0]);
+            int length = Integer.parseInt(parts[1]);
+            highs[i] = AddressUtils.toHigh(address);
+            lows[i] = AddressUtils.toLow(address);
+            lengths[i] = address.length == 4 ? AddressUtils.mappedPrefix(length) : length;
+        }
+        return PrefixTrie.compile(highs, lows, lengths);
+    }
+
+    private static boolean containsBoth(PrefixTrie trie, String address, String other) {
+        byte[] bytes = AddressUtils.parseLiteral(address);
+        byte[] otherBytes = AddressUtils.parseLiteral(other);
+        return trie.containsBoth(AddressUtils.toHigh(bytes), AddressUtils.toLow(bytes),
+                AddressUtils.toHigh(otherBytes), AddressUtils.toLow(otherBytes));
+    }
+
+    private static int find(PrefixTrie trie, String address) {
+        byte[] bytes = AddressUtils.parseLiteral(address);
+        return trie.find(AddressUtils.toHigh(bytes), AddressUtils.toLow(bytes));
+    }
+}
@@ -0,0 +1,105 @@
+package com.rookygod.authlite.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private static final long TICK = 50;
+
+    private final TimerWheel wheel = new TimerWheel(8, TICK, 0);
+    private final List<String> ran = new ArrayList<>();
+
+    @Test
+    void runsTasksOnceTheirDeadlinePassed() {
+        wheel.schedule(() -> ran.add("a"), 120);
+        wheel.schedule(() -> ran.add("b"), 200);
+
+        assertEquals(0, wheel.advance(100));
+        assertEquals(1, wheel.advance(150));
+        assertEquals(List.of("a"), ran);
+        assertEquals(1, wheel.advance(200));
+        assertEquals(List.of("a", "b"), ran);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledTasksNeverRun() {
+        TimerWheel.Timeout timeout = wheel.schedule(() -> ran.add("a"), 100);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isPending());
+        assertEquals(0, wheel.advance(1000));
+        assertTrue(ran.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rescheduleMovesAPendingOrFinishedTimeout() {
+        TimerWheel.Timeout timeout = wheel.schedule(() -> ran.add("a"), 100);
+        wheel.reschedule(timeout, 300);
+
+        assertEquals(0, wheel.advance(250));
+        assertEquals(1, wheel.advance(300));
+
+        // A timeout that already ran is scheduled again
+        wheel.reschedule(timeout, 400);
+        assertTrue(timeout.isPending());
+        assertEquals(1, wheel.advance(400));
+        assertEquals(List.of("a", "a"), ran);
+    }
+
+    @Test
+    void keepsTimeoutsMoreThanOneRevolutionAway() {
+        // 8 buckets of 50 ms make a revolution of 400 ms
+        wheel.schedule(() -> ran.add("far"), 1000);
+
+        assertEquals(0, wheel.advance(450));
+        assertEquals(0, wheel.advance(950));
+        assertEquals(1, wheel.advance(1000));
+        assertEquals(List.of("far"), ran);
+    }
+
+    @Test
+    void catchesUpAfterALongPause() {
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(() -> ran.add("t"), i * 100L);
+        }
+
+        assertEquals(20, wheel.advance(10_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesRunOnTheNextTick() {
+        wheel.advance(500);
+        wheel.schedule(() -> ran.add("late"), 100);
+
+        assertEquals(0, wheel.advance(520));
+        assertEquals(1, wheel.advance(550));
+    }
+
+    @Test
+    void tasksMayScheduleAndCancelTimeouts() {
+        TimerWheel.Timeout[] reminder = new TimerWheel.Timeout[1];
+        reminder[0] = wheel.schedule(() -> {
+            ran.add("reminder");
+            if (ran.size() < 3) {
+                wheel.reschedule(reminder[0], (ran.size() + 1) * 100L);
+            }
+        }, 100);
+
+        for (long now = 0; now <= 1000; now += TICK) {
+            wheel.advance(now);
+        }
+        assertEquals(3, ran.size());
+        assertEquals(0, wheel.size());
+    }
+}